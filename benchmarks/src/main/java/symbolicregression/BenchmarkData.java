@@ -0,0 +1,35 @@
+package symbolicregression;
+
+import java.io.File;
+
+/**
+ * Locates the data sets used by the benchmarks. The files are looked for in the directory
+ * given by the data.dir system property, then in the working directory and its parent, so
+ * the benchmarks run from either the repository or the benchmarks module.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+final class BenchmarkData {
+	//Seed of every generator used to build benchmark states
+	static final long SEED = 1;
+
+	private BenchmarkData(){
+	}
+
+	/**
+	 * @param name the name of a data file
+	 * @return the path of the file
+	 * @throws IllegalStateException if the file cannot be found
+	 */
+	static String file(String name){
+		String[] directories = {System.getProperty("data.dir", "."), ".", ".."};
+		for(String directory : directories){
+			File file = new File(directory, name);
+			if(file.isFile()){
+				return file.getPath();
+			}
+		}
+		throw new IllegalStateException("Cannot find " + name + ", set -Ddata.dir to the directory holding it");
+	}
+}
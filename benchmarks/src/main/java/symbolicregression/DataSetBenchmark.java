@@ -0,0 +1,45 @@
+package symbolicregression;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of reading each data set and splitting it into training and test sets
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataSetBenchmark {
+	@Param({"dataset1.csv", "dataset2.csv", "dataset3.csv"})
+	public String dataset;
+
+	private String fileName;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		fileName = BenchmarkData.file(dataset);
+	}
+
+	@Benchmark
+	public DataSet construct(){
+		return new DataSet(fileName, new SplitRandom(BenchmarkData.SEED));
+	}
+}
@@ -0,0 +1,49 @@
+package symbolicregression;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of scoring a tree on the training set of each data set. The fitness cache is
+ * left off so every call scores its tree.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FitnessBenchmark {
+	/**
+	 * A population using only the variables of one of the data sets
+	 */
+	public static class Scored extends PopulationState {
+		@Param({"dataset1.csv", "dataset2.csv", "dataset3.csv"})
+		public String dataset;
+
+		public DataSet data;
+
+		@Setup(Level.Trial)
+		public void load(){
+			data = new DataSet(BenchmarkData.file(dataset), new SplitRandom(BenchmarkData.SEED));
+			generate(data.getNumberOfVariables());
+		}
+	}
+
+	@Benchmark
+	public double fitness(Scored population){
+		return population.data.fitness(population.nextTree(), false);
+	}
+}
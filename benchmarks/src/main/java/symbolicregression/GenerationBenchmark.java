@@ -0,0 +1,67 @@
+package symbolicregression;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a whole generation of an island on dataset2: selection, crossover, mutation,
+ * scoring and sorting. The island starts again from the same random population at each
+ * iteration so that iterations measure generations of the same age.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GenerationBenchmark {
+	@Param({"100", "1000"})
+	public int populationSize;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	private DataSet data;
+	private PopulationEvaluator evaluator;
+	private Island island;
+
+	@Setup(Level.Trial)
+	public void setUpTrial(){
+		data = new DataSet(BenchmarkData.file("dataset2.csv"), new SplitRandom(BenchmarkData.SEED));
+		evaluator = new PopulationEvaluator(threads);
+		data.setPool(evaluator.getPool());
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration(){
+		island = new Island(data, evaluator, new SplitRandom(BenchmarkData.SEED), populationSize);
+		island.initialize();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		evaluator.shutdown();
+	}
+
+	@Benchmark
+	public ExpressionTree evolve(){
+		island.evolve();
+		return island.getBestTree();
+	}
+}
@@ -0,0 +1,62 @@
+package symbolicregression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A population of random trees built the same way as an island's initial population.
+ * Benchmarks take the trees in turn so that no single tree's shape dominates.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+@State(Scope.Thread)
+public class PopulationState {
+	@Param({"3", "5"})
+	public int depth;
+
+	@Param({"100", "1000"})
+	public int populationSize;
+
+	public List<ExpressionTree> trees;
+	public SplitRandom random;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		//A state depending on the population may already have generated it for its own data set
+		if(trees == null){
+			generate(ExpressionTreeTester.NUMBER_OF_VARIABLES);
+		}
+	}
+
+	/**
+	 * Replaces the population with new random trees
+	 * @param numberOfVariables the number of variables the trees may use
+	 */
+	public void generate(int numberOfVariables){
+		random = new SplitRandom(BenchmarkData.SEED);
+		next = 0;
+		trees = new ArrayList<ExpressionTree>(populationSize);
+		for(int i = 0; i < populationSize; i++){
+			ExpressionTree tree = ExpressionTreeTester.generateRandomTree(depth, numberOfVariables, random);
+			tree.setStorage(ExpressionTreeTester.STORAGE);
+			trees.add(tree);
+		}
+	}
+
+	/**
+	 * @return the next tree of the population, starting again after the last
+	 */
+	public ExpressionTree nextTree(){
+		ExpressionTree tree = trees.get(next);
+		next = next + 1 == trees.size() ? 0 : next + 1;
+		return tree;
+	}
+}
@@ -0,0 +1,60 @@
+package symbolicregression;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of choosing the parents of one generation: the selection is prepared and then
+ * asked for a pair of parents for every two trees of the population, as Island.evolve does.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectionBenchmark {
+	/**
+	 * A population scored on dataset2 and the selection choosing from it
+	 */
+	public static class Parents extends PopulationState {
+		@Param({"ROULETTE", "TOURNAMENT", "LEXICASE"})
+		public Selection.Method method;
+
+		public DataSet data;
+		public Selection selection;
+
+		@Setup(Level.Trial)
+		public void score(){
+			data = new DataSet(BenchmarkData.file("dataset2.csv"), new SplitRandom(BenchmarkData.SEED));
+			generate(data.getNumberOfVariables());
+			PopulationEvaluator evaluator = new PopulationEvaluator(1);
+			evaluator.evaluate(trees, data, false);
+			evaluator.shutdown();
+			Collections.sort(trees);
+			selection = method.create();
+		}
+	}
+
+	@Benchmark
+	public void selectForCrossover(Parents parents, Blackhole blackhole){
+		parents.selection.prepare(parents.trees, parents.data, parents.random);
+		for(int i = 0; i < parents.populationSize / 2; i++){
+			blackhole.consume(ExpressionTreeTester.selectForCrossover(parents.trees, parents.selection, parents.random));
+		}
+	}
+}
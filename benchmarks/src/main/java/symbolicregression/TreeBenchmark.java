@@ -0,0 +1,84 @@
+package symbolicregression;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the operations applied to single trees: evaluation of the linked nodes,
+ * crossover, simplification and cloning
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBenchmark {
+	//Rows evaluated per call of the row by row benchmark
+	public static final int ROWS = 256;
+
+	/**
+	 * The rows of dataset2 and a map holding the variables of its first row
+	 */
+	@State(Scope.Benchmark)
+	public static class Rows {
+		public double[][] columns;
+		public HashMap<String, Double> variables = new HashMap<String, Double>();
+
+		@Setup(Level.Trial)
+		public void setUp(){
+			DataSet data = new DataSet(BenchmarkData.file("dataset2.csv"), new SplitRandom(BenchmarkData.SEED));
+			columns = data.getColumns();
+			for(int i = 0; i < columns.length; i++){
+				variables.put("x" + (i + 1), columns[i][0]);
+			}
+		}
+	}
+
+	@Benchmark
+	public double evaluateNodesByRow(PopulationState population, Rows rows){
+		ExpressionTree.ExpressionTreeNode root = population.nextTree().getRoot();
+		double sum = 0;
+		for(int row = 0; row < ROWS; row++){
+			sum += root.evaluate(rows.columns, row);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double evaluateNodesByMap(PopulationState population, Rows rows){
+		return population.nextTree().getRoot().evaluate(rows.variables);
+	}
+
+	@Benchmark
+	public ExpressionTree[] crossover(PopulationState population){
+		return population.nextTree().crossover(population.nextTree(), population.random);
+	}
+
+	@Benchmark
+	public ExpressionTree simplify(PopulationState population){
+		//Simplifying changes the tree, so a clone is simplified
+		ExpressionTree tree = population.nextTree().clone();
+		tree.simplify();
+		return tree;
+	}
+
+	@Benchmark
+	public ExpressionTree cloneTree(PopulationState population){
+		return population.nextTree().clone();
+	}
+}
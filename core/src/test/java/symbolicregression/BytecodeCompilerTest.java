@@ -0,0 +1,139 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Checks that generated classes give bit for bit the results of the programs they were
+ * generated from. Program sums with the column kernel, so the comparisons need the scalar kernel.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class BytecodeCompilerTest {
+	//Random trees checked
+	private static final int TREES = 500;
+	//Rows of the random columns, more than one block with a partial block at the end
+	private static final int ROWS = 3 * Program.BLOCK_SIZE + 17;
+	private static final int VARIABLES = 3;
+
+	private double[][] columns;
+	private double[] target;
+
+	@BeforeEach
+	public void setUp(){
+		assumeTrue(ColumnKernel.get().getName().equals("scalar"), "Sums differ from the vector kernel's");
+		SplitRandom random = new SplitRandom(1);
+		columns = new double[VARIABLES][ROWS];
+		target = new double[ROWS];
+		for(int row = 0; row < ROWS; row++){
+			for(int variable = 0; variable < VARIABLES; variable++){
+				//Small integers make divisions by 0 common
+				columns[variable][row] = row % 5 == 0 ? random.nextInt(3) - 1 : random.nextGaussian() * 10;
+			}
+			target[row] = random.nextGaussian() * 100;
+		}
+	}
+
+	@Test
+	public void randomTreesMatchTheirPrograms(){
+		SplitRandom random = new SplitRandom(2);
+		for(int i = 0; i < TREES; i++){
+			ExpressionTree tree = ExpressionTreeTester.generateRandomTree(1 + random.nextInt(6), VARIABLES, random);
+			tree.setStorage(ExpressionTree.Storage.FLAT);
+			assertSameResults(tree.getProgram());
+		}
+	}
+
+	@Test
+	public void leavesAndDivisionByZeroMatch(){
+		//A constant, a variable, -0.0, and divisions by 0 of each kind of operand
+		assertSameResults(new Program(new int[]{Program.PUSH_COEFFICIENT}, new double[]{2.5}));
+		assertSameResults(new Program(new int[]{Program.PUSH_VARIABLE}, new double[]{2}));
+		assertSameResults(new Program(new int[]{Program.PUSH_COEFFICIENT}, new double[]{-0.0}));
+		Program constant = new Program(new int[]{Program.PUSH_COEFFICIENT, Program.PUSH_COEFFICIENT, Program.DIVIDE},
+				new double[]{3, 0});
+		assertSameResults(constant);
+		double[] values = new double[ROWS];
+		BytecodeCompiler.compile(constant).evaluate(columns, 0, ROWS, values);
+		assertEquals(ColumnKernel.DIVISION_BY_ZERO, values[0], 0.0);
+		assertSameResults(new Program(new int[]{Program.PUSH_VARIABLE, Program.PUSH_COEFFICIENT, Program.DIVIDE},
+				new double[]{0, -0.0}));
+		assertSameResults(new Program(new int[]{Program.PUSH_VARIABLE, Program.PUSH_VARIABLE, Program.PUSH_VARIABLE,
+				Program.SUBTRACT, Program.DIVIDE}, new double[]{0, 1, 1}));
+	}
+
+	@Test
+	public void largeProgramsFallBackToTheInterpreter(){
+		//Each added variable generates at least six bytes in each method
+		int leaves = BytecodeCompiler.MAX_CODE_LENGTH / 6 + 1;
+		int[] opcodes = new int[2 * leaves - 1];
+		double[] operands = new double[opcodes.length];
+		opcodes[0] = Program.PUSH_VARIABLE;
+		for(int i = 1; i < leaves; i++){
+			opcodes[2 * i - 1] = Program.PUSH_VARIABLE;
+			operands[2 * i - 1] = i % VARIABLES;
+			opcodes[2 * i] = Program.ADD;
+		}
+		Program large = new Program(opcodes, operands);
+		assertSame(large, BytecodeCompiler.compile(large));
+		Program small = new Program(new int[]{Program.PUSH_VARIABLE}, new double[]{1});
+		assertNotSame(small, BytecodeCompiler.compile(small));
+	}
+
+	@Test
+	public void refusesMissingColumns(){
+		Program program = new Program(new int[]{Program.PUSH_VARIABLE}, new double[]{VARIABLES});
+		final CompiledExpression compiled = BytecodeCompiler.compile(program);
+		assertThrows(IllegalArgumentException.class, new Executable(){
+			@Override
+			public void execute(){
+				compiled.evaluate(columns, 0, ROWS, new double[ROWS]);
+			}
+		});
+		assertThrows(IllegalArgumentException.class, new Executable(){
+			@Override
+			public void execute(){
+				compiled.squaredError(columns, target, 0, ROWS);
+			}
+		});
+	}
+
+	/**
+	 * Compares the values, squared errors and moments of a program and of its class over
+	 * the whole columns and over a range starting inside the first block
+	 */
+	private void assertSameResults(Program program){
+		CompiledExpression compiled = BytecodeCompiler.compile(program);
+		assertNotSame(program, compiled);
+		for(int from : new int[]{0, 5}){
+			int length = ROWS - from;
+			double[] expected = new double[length];
+			double[] actual = new double[length];
+			program.evaluate(columns, from, ROWS, expected);
+			compiled.evaluate(columns, from, ROWS, actual);
+			for(int i = 0; i < length; i++){
+				assertBits(expected[i], actual[i]);
+			}
+			assertBits(program.squaredError(columns, target, from, ROWS), compiled.squaredError(columns, target, from, ROWS));
+			double[] expectedMoments = new double[LinearScaling.SIZE];
+			double[] actualMoments = new double[LinearScaling.SIZE];
+			program.moments(columns, target, from, ROWS, expectedMoments, 0);
+			compiled.moments(columns, target, from, ROWS, actualMoments, 0);
+			for(int i = 0; i < LinearScaling.SIZE; i++){
+				assertBits(expectedMoments[i], actualMoments[i]);
+			}
+		}
+	}
+
+	private static void assertBits(double expected, double actual){
+		assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual), expected + " but " + actual);
+	}
+}
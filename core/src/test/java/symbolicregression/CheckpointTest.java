@@ -0,0 +1,154 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a checkpoint restores the split, random number generator and islands it was
+ * saved with, and that damaged checkpoints are refused.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class CheckpointTest {
+	@TempDir
+	Path directory;
+	private DataSet data;
+	private PopulationEvaluator evaluator;
+
+	@BeforeEach
+	public void setUp(){
+		data = new DataSet(dataFile("dataset2.csv"), new SplitRandom(1));
+		evaluator = new PopulationEvaluator(1);
+	}
+
+	@AfterEach
+	public void tearDown(){
+		evaluator.shutdown();
+	}
+
+	@Test
+	public void restoresSavedRun() throws IOException, InterruptedException{
+		SplitRandom random = new SplitRandom(2);
+		Island[] islands = new Island[2];
+		for(int i = 0; i < islands.length; i++){
+			islands[i] = new Island(data, evaluator, random.split(), 20);
+			islands[i].initialize();
+			islands[i].evolve();
+			islands[i].evolve();
+		}
+		String file = save(islands, random);
+		Checkpoint.State state = Checkpoint.read(file);
+		assertArrayEquals(data.getSplit(), state.getSplit());
+		assertEquals(random.getState(), state.getRandom().getState());
+		Island[] restored = state.getIslands(new DataSet(dataFile("dataset2.csv"), state.getSplit()), evaluator);
+		assertEquals(islands.length, restored.length);
+		for(int i = 0; i < islands.length; i++){
+			assertEquals(islands[i].getGeneration(), restored[i].getGeneration());
+			assertArrayEquals(encode(islands[i]), encode(restored[i]));
+			assertSameStates(islands[i].getTrees(), restored[i].getTrees());
+			assertSameStates(islands[i].getBestSet(), restored[i].getBestSet());
+			assertEquals(ExpressionTreeTester.STORAGE, restored[i].getBestTree().getStorage());
+		}
+	}
+
+	@Test
+	public void failedWriteLeavesNoTemporaryFile() throws IOException, InterruptedException{
+		Island island = new Island(data, evaluator, new SplitRandom(4), 10);
+		island.initialize();
+		//A directory in place of the checkpoint makes the final move fail
+		Path file = directory.resolve("blocked.ckpt");
+		Files.createDirectory(file);
+		Files.createFile(file.resolve("entry"));
+		Checkpoint checkpoint = new Checkpoint(file.toString(), data);
+		checkpoint.save(new Island[]{island}, new SplitRandom(5));
+		checkpoint.close();
+		DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tmp");
+		try{
+			assertFalse(files.iterator().hasNext());
+		}
+		finally{
+			files.close();
+		}
+	}
+
+	@Test
+	public void refusesDamagedCheckpoints() throws IOException, InterruptedException{
+		SplitRandom random = new SplitRandom(3);
+		Island island = new Island(data, evaluator, random.split(), 10);
+		island.initialize();
+		String file = save(new Island[]{island}, random);
+		byte[] bytes = Files.readAllBytes(directory.resolve(file));
+		//A flipped bit fails the CRC
+		byte[] corrupt = bytes.clone();
+		corrupt[corrupt.length / 2] ^= 1;
+		assertRefused(corrupt);
+		//A truncated file fails the CRC or is too short to hold one
+		assertRefused(Arrays.copyOf(bytes, bytes.length - 1));
+		assertRefused(Arrays.copyOf(bytes, 6));
+		//A file of another kind lacks the magic number
+		byte[] other = bytes.clone();
+		other[0] = 'X';
+		assertRefused(other);
+	}
+
+	private String save(Island[] islands, SplitRandom random) throws InterruptedException{
+		String file = directory.resolve("run.ckpt").toString();
+		Checkpoint checkpoint = new Checkpoint(file, data);
+		checkpoint.save(islands, random);
+		checkpoint.close();
+		return file;
+	}
+
+	private void assertRefused(byte[] bytes) throws IOException{
+		final Path file = directory.resolve("damaged.ckpt");
+		Files.write(file, bytes);
+		assertThrows(IOException.class, new Executable(){
+			@Override
+			public void execute() throws IOException{
+				Checkpoint.read(file.toString());
+			}
+		});
+	}
+
+	private static void assertSameStates(List<ExpressionTree> expected, List<ExpressionTree> actual){
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++){
+			assertEquals(expected.get(i).getAge(), actual.get(i).getAge());
+			assertEquals(expected.get(i).isRejected(), actual.get(i).isRejected());
+			assertEquals(ExpressionTreeTester.STORAGE, actual.get(i).getStorage());
+		}
+	}
+
+	private static byte[] encode(Island island) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		island.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return the path of a data set file from the core module, where the tests run, or from the project
+	 */
+	private static String dataFile(String name){
+		File file = new File("..", name);
+		return file.exists() ? file.getPath() : name;
+	}
+}
@@ -0,0 +1,98 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a data set scored from the mapping of a columnar file gives bit for bit the
+ * fitness and subsamples of the same rows read from a CSV file into memory.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class ColumnarFileTest {
+	//Several chunks of training and test rows, each with a partial chunk at the end
+	private static final int ROWS = 5 * DataSet.CHUNK_SIZE + 123;
+	private static final int VARIABLES = 3;
+	private static final int TREES = 100;
+
+	@TempDir
+	Path directory;
+	private DataSet memory;
+	private DataSet mapped;
+
+	@BeforeEach
+	public void setUp() throws IOException{
+		SplitRandom random = new SplitRandom(1);
+		StringBuilder text = new StringBuilder("x1,x2,x3,f\n");
+		for(int row = 0; row < ROWS; row++){
+			for(int variable = 0; variable < VARIABLES; variable++){
+				text.append(random.nextGaussian() * 10).append(',');
+			}
+			text.append(random.nextGaussian() * 100).append('\n');
+		}
+		Path csv = directory.resolve("rows.csv");
+		Files.write(csv, text.toString().getBytes(StandardCharsets.ISO_8859_1));
+		Path columnar = directory.resolve("rows.col");
+		ColumnarFile.convert(csv.toString(), columnar.toString());
+		memory = new DataSet(csv.toString(), new SplitRandom(2));
+		mapped = new DataSet(columnar.toString(), memory.getSplit());
+	}
+
+	@Test
+	public void mappedRowsAreNotHeldInMemory(){
+		assertTrue(memory.isInMemory());
+		assertFalse(mapped.isInMemory());
+		assertEquals(VARIABLES, mapped.getNumberOfVariables());
+		assertEquals(memory.getTrainingSize(), mapped.getTrainingSize());
+		assertEquals(memory.getTestSize(), mapped.getTestSize());
+	}
+
+	@Test
+	public void mappedFitnessMatchesRowsInMemory(){
+		for(boolean scaled : new boolean[]{false, true}){
+			memory.setLinearScaling(scaled);
+			mapped.setLinearScaling(scaled);
+			SplitRandom random = new SplitRandom(3);
+			for(int i = 0; i < TREES; i++){
+				ExpressionTree tree = ExpressionTreeTester.generateRandomTree(1 + random.nextInt(5), VARIABLES, random);
+				assertBits(memory.fitness(tree, false), mapped.fitness(tree, false));
+				assertBits(memory.fitness(tree, true), mapped.fitness(tree, true));
+				double bound = memory.fitness(tree, false) / 2;
+				assertBits(memory.fitness(tree, bound), mapped.fitness(tree, bound));
+			}
+		}
+	}
+
+	@Test
+	public void mappedSubsamplesMatchRowsInMemory(){
+		for(int size : new int[]{1, 100, DataSet.CHUNK_SIZE + 1, memory.getTrainingSize()}){
+			DataSet expected = memory.subsample(size, new SplitRandom(4));
+			DataSet actual = mapped.subsample(size, new SplitRandom(4));
+			assertTrue(actual.isInMemory());
+			//A subsample of the whole training set in memory is the data set itself, test rows included
+			int rows = expected.getTrainingSize();
+			assertEquals(rows, actual.getTrainingSize());
+			for(int variable = 0; variable < VARIABLES; variable++){
+				assertArrayEquals(Arrays.copyOf(expected.getColumns()[variable], rows), actual.getColumns()[variable], 0.0);
+			}
+			assertArrayEquals(Arrays.copyOf(expected.getTarget(), rows), actual.getTarget(), 0.0);
+		}
+	}
+
+	private static void assertBits(double expected, double actual){
+		assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual), expected + " but " + actual);
+	}
+}
@@ -0,0 +1,111 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that CsvReader keeps the numeric rows of a file and parses values exactly as
+ * Double.parseDouble does.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class CsvReaderTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	public void readsNumericRowsAndSkipsTheRest() throws IOException{
+		String text = "x1,x2,f\r\n"
+				+ "1,2,3\r\n"
+				+ " 4 , 5.5e1 ,-6,,\n"
+				+ "7,8\n"
+				+ "9,ten,11\n"
+				+ "\n"
+				+ "0.25,+1E-3,1e300";
+		CsvReader reader = new CsvReader(write(text));
+		assertEquals(3, reader.getRows());
+		double[][] columns = reader.getColumns();
+		assertEquals(3, columns.length);
+		assertArrayEquals(new double[]{1, 4, 0.25}, Arrays.copyOf(columns[0], 3));
+		assertArrayEquals(new double[]{2, 55, 0.001}, Arrays.copyOf(columns[1], 3));
+		assertArrayEquals(new double[]{3, -6, 1e300}, Arrays.copyOf(columns[2], 3));
+	}
+
+	@Test
+	public void readsFileWithoutRows() throws IOException{
+		CsvReader reader = new CsvReader(write("x1,f\n"));
+		assertEquals(0, reader.getRows());
+	}
+
+	@Test
+	public void readsMoreRowsThanTheColumnsFirstHold() throws IOException{
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < 5000; i++){
+			text.append(i).append(',').append(i * 0.5).append('\n');
+		}
+		CsvReader reader = new CsvReader(write(text.toString()));
+		assertEquals(5000, reader.getRows());
+		assertEquals(4999, reader.getColumns()[0][4999], 0.0);
+		assertEquals(2499.5, reader.getColumns()[1][4999], 0.0);
+	}
+
+	@Test
+	public void parsesLikeDoubleParseDouble(){
+		SplitRandom random = new SplitRandom(1);
+		for(int i = 0; i < 100000; i++){
+			double value = Double.longBitsToDouble(random.nextLong());
+			if(Double.isNaN(value) || Double.isInfinite(value)){
+				continue;
+			}
+			assertParsed(Double.toString(value));
+			double scaled = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(30) - 15);
+			assertParsed(Double.toString(scaled));
+			assertParsed(String.format(Locale.ROOT, "%." + random.nextInt(17) + "f", scaled));
+			assertParsed(String.format(Locale.ROOT, "%." + random.nextInt(17) + "e", scaled));
+		}
+		assertParsed("007");
+		assertParsed("-0");
+		assertParsed("123456789012345678901234567890");
+		assertParsed("0.000000000000000000000000001");
+		assertParsed(".5");
+		assertParsed("5.");
+	}
+
+	@Test
+	public void rejectsValuesThatAreNotNumbers(){
+		for(final String text : new String[]{"", "-", "1e", "1.2.3", "x1", "1,2"}){
+			final byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+			assertThrows(NumberFormatException.class, new Executable(){
+				@Override
+				public void execute(){
+					CsvReader.parseDouble(bytes, 0, bytes.length);
+				}
+			}, text);
+		}
+	}
+
+	private static void assertParsed(String text){
+		byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+		assertEquals(Double.doubleToLongBits(Double.parseDouble(text)),
+				Double.doubleToLongBits(CsvReader.parseDouble(bytes, 0, bytes.length)), text);
+	}
+
+	private String write(String text) throws IOException{
+		Path file = directory.resolve("data.csv");
+		Files.write(file, text.getBytes(StandardCharsets.ISO_8859_1));
+		return file.toString();
+	}
+}
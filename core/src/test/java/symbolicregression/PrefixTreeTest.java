@@ -0,0 +1,100 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Checks that PrefixTree.read restores written trees and refuses input that is not a tree.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class PrefixTreeTest {
+	@Test
+	public void readsWrittenTrees() throws IOException{
+		SplitRandom random = new SplitRandom(1);
+		for(int i = 0; i < 200; i++){
+			ExpressionTree tree = ExpressionTreeTester.generateRandomTree(1 + random.nextInt(6), 3, random);
+			tree.setStorage(ExpressionTree.Storage.FLAT);
+			PrefixTree written = tree.getPrefixTree();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			written.write(new DataOutputStream(bytes));
+			PrefixTree read = PrefixTree.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+			assertEquals(written.size(), read.size());
+			for(int position = 0; position < written.size(); position++){
+				assertEquals(written.getType(position), read.getType(position));
+				assertEquals(written.getValue(position), read.getValue(position), 0.0);
+				assertEquals(written.getSubtreeSize(position), read.getSubtreeSize(position));
+			}
+		}
+	}
+
+	@Test
+	public void readsDeeplyNestedTrees() throws IOException{
+		//Every operator is the left operand of the one before it
+		int operators = Short.MAX_VALUE / 2;
+		byte[] bytes = encode(operators, operators + 1, 0);
+		PrefixTree read = PrefixTree.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+		assertEquals(2 * operators + 1, read.getSubtreeSize(0));
+		assertEquals(3, read.getSubtreeSize(operators - 1));
+		assertArrayEquals(bytes, write(read));
+	}
+
+	@Test
+	public void refusesInvalidTrees(){
+		//Too few operands for the operators
+		assertRefused(encode(Short.MAX_VALUE / 2, Short.MAX_VALUE / 2, 0));
+		//Operands left over after the root
+		assertRefused(encode(1, 3, 0));
+		//A negative variable column
+		assertRefused(encode(1, 2, -1));
+	}
+
+	/**
+	 * Encodes operators nested as left operands followed by variable leaves, the way write does
+	 */
+	private static byte[] encode(int operators, int leaves, int column){
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try{
+			out.writeInt(operators + leaves);
+			for(int i = 0; i < operators; i++){
+				out.writeByte(PrefixTree.OPERATOR);
+				out.writeByte(Operator.ADD.ordinal());
+			}
+			for(int i = 0; i < leaves; i++){
+				out.writeByte(PrefixTree.VARIABLE);
+				out.writeShort(column);
+			}
+		}
+		catch(IOException err){
+			throw new AssertionError(err);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] write(PrefixTree tree) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		tree.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	private static void assertRefused(final byte[] bytes){
+		assertThrows(IOException.class, new Executable(){
+			@Override
+			public void execute() throws IOException{
+				PrefixTree.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+			}
+		});
+	}
+}
@@ -0,0 +1,67 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that SplitRandom gives the same numbers for the same seed, however its generators
+ * are split and saved.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class SplitRandomTest {
+	@Test
+	public void sameSeedGivesSameSequence(){
+		SplitRandom first = new SplitRandom(42);
+		SplitRandom second = new SplitRandom(42);
+		for(int i = 0; i < 1000; i++){
+			assertEquals(first.nextLong(), second.nextLong());
+			assertEquals(first.nextDouble(), second.nextDouble(), 0.0);
+			assertEquals(first.nextInt(100), second.nextInt(100));
+			assertEquals(first.nextBoolean(), second.nextBoolean());
+		}
+		assertNotEquals(new SplitRandom(42).nextLong(), new SplitRandom(43).nextLong());
+	}
+
+	@Test
+	public void splitsAreDeterministicAndIndependent(){
+		SplitRandom first = new SplitRandom(7);
+		SplitRandom second = new SplitRandom(7);
+		SplitRandom firstChild = first.split();
+		SplitRandom secondChild = second.split();
+		for(int i = 0; i < 1000; i++){
+			assertEquals(firstChild.nextLong(), secondChild.nextLong());
+		}
+		//Drawing from a child does not move its parent
+		assertEquals(first.nextLong(), second.nextLong());
+		SplitRandom parent = new SplitRandom(7);
+		SplitRandom child = parent.split();
+		assertNotEquals(parent.nextLong(), child.nextLong());
+	}
+
+	@Test
+	public void stateRestoresGenerator(){
+		SplitRandom random = new SplitRandom(3);
+		for(int i = 0; i < 10; i++){
+			random.nextLong();
+		}
+		SplitRandom restored = new SplitRandom(random.getState());
+		for(int i = 0; i < 1000; i++){
+			assertEquals(random.nextLong(), restored.nextLong());
+			assertEquals(random.nextGaussian(), restored.nextGaussian(), 0.0);
+		}
+	}
+
+	@Test
+	public void nextDoubleStaysInRange(){
+		SplitRandom random = new SplitRandom(5);
+		for(int i = 0; i < 100000; i++){
+			double value = random.nextDouble();
+			assertTrue(value >= 0.0 && value < 1.0, "Out of range: " + value);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a streaming data set gives callers that read columns rows held in memory,
+ * however few training rows it has, and refuses to be read as if its own rows were.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class StreamingDataSetTest {
+	//Fewer rows than LEXICASE_CASES and OPTIMIZATION_ROWS
+	private static final int ROWS = 60;
+
+	@TempDir
+	Path directory;
+	private StreamingDataSet data;
+
+	@BeforeEach
+	public void setUp() throws IOException{
+		StringBuilder text = new StringBuilder("x1,x2,x3,f\n");
+		for(int row = 0; row < ROWS; row++){
+			text.append(row).append(',').append(row % 7).append(',').append(1).append(',').append(row * (row % 7) + 1).append('\n');
+		}
+		Path file = directory.resolve("small.csv");
+		Files.write(file, text.toString().getBytes(StandardCharsets.ISO_8859_1));
+		data = new StreamingDataSet(file.toString(), 1);
+	}
+
+	@Test
+	public void rowsAreNotReadAsIfInMemory(){
+		assertFalse(data.isInMemory());
+		assertEquals(3, data.getNumberOfVariables());
+		assertEquals(ROWS, data.getTrainingSize() + data.getTestSize());
+		assertRefused(new Executable(){
+			@Override
+			public void execute(){
+				data.getColumns();
+			}
+		});
+		assertRefused(new Executable(){
+			@Override
+			public void execute(){
+				data.getTarget();
+			}
+		});
+		assertRefused(new Executable(){
+			@Override
+			public void execute(){
+				data.fx(0);
+			}
+		});
+	}
+
+	@Test
+	public void subsampleHoldsRowsInMemory(){
+		int training = data.getTrainingSize();
+		assertTrue(training > 0 && training < ROWS);
+		DataSet all = data.subsample(ExpressionTreeTester.OPTIMIZATION_ROWS, new SplitRandom(1));
+		assertTrue(all.isInMemory());
+		assertEquals(training, all.getTrainingSize());
+		assertEquals(0, all.getTestSize());
+		double[][] columns = all.getColumns();
+		assertEquals(3, columns.length);
+		assertEquals(3, all.getNumberOfVariables());
+		for(int row = 0; row < training; row++){
+			assertEquals(columns[0][row] * columns[1][row] * columns[2][row] + 1, all.fx(row), 0.0);
+			assertTrue(data.isTraining((long) columns[0][row]));
+		}
+		DataSet some = data.subsample(training / 2, new SplitRandom(1));
+		assertEquals(training / 2, some.getTrainingSize());
+		assertEquals(training / 2, some.getTarget().length);
+	}
+
+	@Test
+	public void lexicasePreparesOnFewTrainingRows(){
+		SplitRandom random = new SplitRandom(2);
+		List<ExpressionTree> trees = new ArrayList<ExpressionTree>();
+		for(int i = 0; i < 10; i++){
+			trees.add(ExpressionTreeTester.generateRandomTree(3, 3, random));
+		}
+		PopulationEvaluator evaluator = new PopulationEvaluator(1);
+		try{
+			data.setPool(evaluator.getPool());
+			evaluator.evaluate(trees, data, false);
+			LexicaseSelection selection = new LexicaseSelection(ExpressionTreeTester.LEXICASE_CASES);
+			selection.prepare(trees, data, random);
+			assertTrue(trees.contains(selection.select(random)));
+		}
+		finally{
+			evaluator.shutdown();
+		}
+	}
+
+	@Test
+	public void passScoresTreesAndDrawsSubsample(){
+		SplitRandom random = new SplitRandom(3);
+		List<ExpressionTree> bounded = new ArrayList<ExpressionTree>();
+		List<ExpressionTree> exact = new ArrayList<ExpressionTree>();
+		for(int i = 0; i < 10; i++){
+			bounded.add(ExpressionTreeTester.generateRandomTree(3, 3, random));
+			exact.add(ExpressionTreeTester.generateRandomTree(3, 3, random));
+		}
+		PopulationEvaluator evaluator = new PopulationEvaluator(1);
+		try{
+			data.setPool(evaluator.getPool());
+			long passes = data.getPasses();
+			DataSet rows = data.evaluate(bounded, 0, exact, 20, new SplitRandom(4));
+			assertEquals(passes + 1, data.getPasses());
+			DataSet expected = data.subsample(20, new SplitRandom(4));
+			assertEquals(20, rows.getTrainingSize());
+			assertArrayEquals(expected.getTarget(), rows.getTarget(), 0.0);
+			for(ExpressionTree tree : exact){
+				assertFalse(tree.isRejected());
+				assertEquals(data.fitness(tree, false), tree.getFitness(), 0.0);
+			}
+			for(ExpressionTree tree : bounded){
+				assertTrue(tree.getFitness() == -1 || tree.getFitness() == 0 || tree.isRejected());
+			}
+		}
+		finally{
+			evaluator.shutdown();
+		}
+	}
+
+	@Test
+	public void generationReadsTheFileOnce(){
+		PopulationEvaluator evaluator = new PopulationEvaluator(2);
+		try{
+			data.setPool(evaluator.getPool());
+			Island island = new Island(data, evaluator, new SplitRandom(5), 50);
+			island.initialize();
+			for(int generation = 0; generation < 5; generation++){
+				long passes = data.getPasses();
+				island.evolve();
+				assertEquals(passes + 1, data.getPasses());
+				assertEquals(50, island.getTrees().size());
+			}
+		}
+		finally{
+			evaluator.shutdown();
+		}
+	}
+
+	private static void assertRefused(Executable executable){
+		assertThrows(UnsupportedOperationException.class, executable);
+	}
+}
@@ -0,0 +1,244 @@
+package symbolicregression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that rewritten trees evaluate the same as the trees they came from. Rows where the
+ * original tree divides by 0 are skipped, since the rewriter may remove such a division,
+ * for example by rewriting x / x to 1, and so are rows dividing by a value close enough to
+ * 0 that rounding could make it 0. The rewriter rounds coefficients, and the constants it
+ * merges, to an integer within EPSILON of them, so values are compared within a bound on
+ * how much that rounding can change them, carried up the original tree with its values.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class TermRewriterTest {
+	//Random trees checked by each test
+	private static final int TREES = 3000;
+	//Rows of the data set each tree is evaluated on
+	private static final int ROWS = 200;
+	//Allowed difference as a multiple of the bound on the change rounding makes
+	private static final double TOLERANCE = 10;
+
+	/**
+	 * The value of a subtree for one row, with what rounding can do to it
+	 */
+	private static class Value {
+		private double value;
+		//Bound on the magnitude of every term of the subtree, whatever its constant
+		private double magnitude;
+		//Bound on how much rounding constants can change the value
+		private double error;
+		//Whether a divisor is 0 or so close to 0 that the change could make it 0
+		private boolean dividesByZero;
+	}
+
+	@Test
+	public void rewrittenTreesEvaluateAsBeforeOnDataSetRows(){
+		DataSet data = new DataSet(dataFile("dataset2.csv"), new SplitRandom(1));
+		checkRandomTrees(data.getColumns(), Math.min(ROWS, data.getTrainingSize()), data.getNumberOfVariables(), 11);
+	}
+
+	@Test
+	public void rewrittenTreesEvaluateAsBeforeOnSmallIntegers(){
+		//Small integers make equal subtrees, zero differences and divisions by 0 common
+		SplitRandom random = new SplitRandom(2);
+		double[][] columns = new double[3][ROWS];
+		for(double[] column : columns){
+			for(int row = 0; row < ROWS; row++){
+				column[row] = random.nextInt(7) - 3;
+			}
+		}
+		checkRandomTrees(columns, ROWS, columns.length, 12);
+	}
+
+	@Test
+	public void rewritingNeverRaisesCost(){
+		SplitRandom random = new SplitRandom(3);
+		for(int i = 0; i < TREES; i++){
+			PrefixTree tree = randomTree(3, random);
+			PrefixTree simplified = TermRewriter.simplify(tree);
+			if(simplified != null){
+				assertTrue(TermRewriter.cost(simplified) <= TermRewriter.cost(tree));
+			}
+		}
+	}
+
+	@Test
+	public void knownRewrites(){
+		double[][] columns = {{2, -3, 0.5}, {7, 1, -4}};
+		//(x1 - x1) + x2 keeps its root an operator
+		PrefixTree tree = tree(new byte[]{PrefixTree.OPERATOR, PrefixTree.OPERATOR, PrefixTree.VARIABLE, PrefixTree.VARIABLE, PrefixTree.VARIABLE},
+				new double[]{Operator.ADD.ordinal(), Operator.SUBTRACT.ordinal(), 0, 0, 1});
+		PrefixTree simplified = TermRewriter.simplify(tree);
+		assertNotNull(simplified);
+		assertEquals(PrefixTree.OPERATOR, simplified.getType(0));
+		assertTrue(TermRewriter.cost(simplified) < TermRewriter.cost(tree));
+		assertSameValues(tree, simplified, columns, 3);
+		//x1 + 2 / (1 - 1) divides a constant by 0 below the root and is illegal
+		tree = tree(new byte[]{PrefixTree.OPERATOR, PrefixTree.VARIABLE, PrefixTree.OPERATOR, PrefixTree.COEFFICIENT,
+				PrefixTree.OPERATOR, PrefixTree.COEFFICIENT, PrefixTree.COEFFICIENT},
+				new double[]{Operator.ADD.ordinal(), 0, Operator.DIVIDE.ordinal(), 2, Operator.SUBTRACT.ordinal(), 1, 1});
+		assertNull(TermRewriter.simplify(tree));
+		//(x1 / 4) * 2 becomes a product with a folded coefficient
+		tree = tree(new byte[]{PrefixTree.OPERATOR, PrefixTree.OPERATOR, PrefixTree.VARIABLE, PrefixTree.COEFFICIENT, PrefixTree.COEFFICIENT},
+				new double[]{Operator.MULTIPLY.ordinal(), Operator.DIVIDE.ordinal(), 0, 4, 2});
+		simplified = TermRewriter.simplify(tree);
+		assertTrue(TermRewriter.cost(simplified) < TermRewriter.cost(tree));
+		assertSameValues(tree, simplified, columns, 3);
+	}
+
+	/**
+	 * Rewrites random trees and compares them with the originals on every row
+	 */
+	private static void checkRandomTrees(double[][] columns, int rows, int variables, long seed){
+		SplitRandom random = new SplitRandom(seed);
+		int compared = 0;
+		for(int i = 0; i < TREES; i++){
+			PrefixTree tree = randomTree(variables, random);
+			PrefixTree simplified = TermRewriter.simplify(tree);
+			if(simplified == null){
+				//Only a division of constants by 0 is illegal, and it divides by 0 on every row
+				assertTrue(dividesByZero(tree, columns, 0), "Illegal without dividing by 0: " + describe(tree, 0));
+				continue;
+			}
+			compared += assertSameValues(tree, simplified, columns, rows);
+		}
+		assertTrue(compared > TREES * rows / 2, "Too few rows compared: " + compared);
+	}
+
+	/**
+	 * @return the number of rows compared, those where the original does not divide by 0 or
+	 * close to it
+	 */
+	private static int assertSameValues(PrefixTree tree, PrefixTree simplified, double[][] columns, int rows){
+		double[] values = new double[rows];
+		simplified.compile().evaluate(columns, 0, rows, values);
+		int compared = 0;
+		for(int row = 0; row < rows; row++){
+			Value expected = evaluate(tree, 0, columns, row);
+			if(expected.dividesByZero || Double.isInfinite(expected.error) || Double.isNaN(expected.error)){
+				continue;
+			}
+			if(Math.abs(values[row] - expected.value) > TOLERANCE * expected.error){
+				fail("Row " + row + " of " + describe(tree, 0) + " is " + expected.value + " but " + values[row]
+						+ " after rewriting to " + describe(simplified, 0));
+			}
+			compared++;
+		}
+		return compared;
+	}
+
+	private static boolean dividesByZero(PrefixTree tree, double[][] columns, int row){
+		return evaluate(tree, 0, columns, row).dividesByZero;
+	}
+
+	/**
+	 * Evaluates a subtree for one row the way ExpressionTreeNode does, with coefficients
+	 * rounded as the rewriter rounds them
+	 */
+	private static Value evaluate(PrefixTree tree, int position, double[][] columns, int row){
+		Value result = new Value();
+		byte type = tree.getType(position);
+		if(type == PrefixTree.COEFFICIENT){
+			result.value = PrefixTree.round(tree.getValue(position));
+			result.magnitude = Math.max(1, Math.abs(result.value));
+			result.error = ExpressionTree.EPSILON;
+			return result;
+		}
+		if(type == PrefixTree.VARIABLE){
+			result.value = columns[(int) tree.getValue(position)][row];
+			result.magnitude = Math.abs(result.value);
+			return result;
+		}
+		int left = position + 1;
+		Value a = evaluate(tree, left, columns, row);
+		Value b = evaluate(tree, left + tree.getSubtreeSize(left), columns, row);
+		result.dividesByZero = a.dividesByZero || b.dividesByZero;
+		switch(tree.getOperator(position)){
+		case ADD:
+		case SUBTRACT:
+			result.value = tree.getOperator(position) == Operator.ADD ? a.value + b.value : a.value - b.value;
+			result.magnitude = a.magnitude + b.magnitude;
+			result.error = a.error + b.error;
+			break;
+		case MULTIPLY:
+			result.value = a.value * b.value;
+			result.magnitude = a.magnitude * b.magnitude;
+			result.error = a.error * b.magnitude + b.error * a.magnitude + a.error * b.error;
+			break;
+		default:
+			double divisor = Math.abs(b.value);
+			if(divisor <= 2 * TOLERANCE * b.error){
+				result.dividesByZero = true;
+			}
+			if(b.value == 0.0){
+				result.value = ColumnKernel.DIVISION_BY_ZERO;
+				result.magnitude = ColumnKernel.DIVISION_BY_ZERO;
+				return result;
+			}
+			result.value = a.value / b.value;
+			result.magnitude = a.magnitude / Math.min(1, divisor);
+			result.error = (a.error * divisor + a.magnitude * b.error) / (divisor * Math.abs(divisor - b.error));
+			break;
+		}
+		//Any constant merged into the subtree's terms may be rounded as well
+		result.error += ExpressionTree.EPSILON * result.magnitude;
+		return result;
+	}
+
+	/**
+	 * @return the subtree in infix form, for failure messages
+	 */
+	private static String describe(PrefixTree tree, int position){
+		if(tree.getType(position) == PrefixTree.COEFFICIENT){
+			return Double.toString(tree.getValue(position));
+		}
+		if(tree.getType(position) == PrefixTree.VARIABLE){
+			return "x" + ((int) tree.getValue(position) + 1);
+		}
+		int left = position + 1;
+		return "(" + describe(tree, left) + " " + tree.getOperator(position) + " "
+				+ describe(tree, left + tree.getSubtreeSize(left)) + ")";
+	}
+
+	private static PrefixTree randomTree(int variables, SplitRandom random){
+		ExpressionTree tree = ExpressionTreeTester.generateRandomTree(2 + random.nextInt(5), variables, random);
+		tree.setStorage(ExpressionTree.Storage.FLAT);
+		return tree.getPrefixTree();
+	}
+
+	private static PrefixTree tree(byte[] types, double[] values){
+		int[] sizes = new int[types.length];
+		fillSizes(types, sizes, 0);
+		return new PrefixTree(types, values, sizes);
+	}
+
+	private static int fillSizes(byte[] types, int[] sizes, int position){
+		if(types[position] != PrefixTree.OPERATOR){
+			sizes[position] = 1;
+			return 1;
+		}
+		int left = fillSizes(types, sizes, position + 1);
+		int right = fillSizes(types, sizes, position + 1 + left);
+		sizes[position] = 1 + left + right;
+		return sizes[position];
+	}
+
+	/**
+	 * @return the path of a data set file from the core module, where the tests run, or from the project
+	 */
+	static String dataFile(String name){
+		File file = new File("..", name);
+		return file.exists() ? file.getPath() : name;
+	}
+}
@@ -0,0 +1,129 @@
+package symbolicregression;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Records the metrics of every generation as a JDK Flight Recorder event. Flight Recorder
+ * events need Java 11, so this class is compiled apart from the rest of the sources and
+ * loaded by MetricsListener.flightRecorder when the JVM can run it.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class FlightRecorderListener implements MetricsListener {
+	/**
+	 * Event holding the metrics of one generation of an island
+	 */
+	@Name("symbolicregression.Generation")
+	@Label("Generation")
+	@Category("Symbolic Regression")
+	@Description("Metrics of one generation of an island")
+	@StackTrace(false)
+	static class GenerationEvent extends Event {
+		@Label("Island")
+		int island;
+
+		@Label("Generation")
+		int generation;
+
+		@Label("Breeding Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long breedingTime;
+
+		@Label("Evaluation Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long evaluationTime;
+
+		@Label("Sorting Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long sortingTime;
+
+		@Label("Optimization Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long optimizationTime;
+
+		@Label("Total Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long totalTime;
+
+		@Label("Evaluations")
+		@Description("Trees scored, including fitness cache hits")
+		long evaluations;
+
+		@Label("Evaluation Rate")
+		@Frequency
+		double evaluationsPerSecond;
+
+		@Label("Node Evaluations")
+		@Description("Nodes evaluated times the rows they were evaluated on")
+		long nodeEvaluations;
+
+		@Label("Node Evaluation Rate")
+		@Frequency
+		double nodeEvaluationsPerSecond;
+
+		@Label("Mean Tree Size")
+		double meanSize;
+
+		@Label("Max Tree Size")
+		int maxSize;
+
+		@Label("Rejected Offspring")
+		@Description("Offspring turned away by the acceptance filter")
+		int rejected;
+
+		@Label("Aborted Offspring")
+		@Description("Offspring whose scoring stopped at the rejection bound")
+		int aborted;
+
+		@Label("Optimized Elites")
+		@Description("Elites replaced by a copy with fitted coefficients")
+		int optimized;
+
+		@Label("Allocated")
+		@Description("Bytes allocated by the whole process during the generation, -1 while several islands evolve at once")
+		@DataAmount
+		long allocatedBytes;
+
+		@Label("Allocation Rate")
+		@Description("Bytes allocated by the whole process per second, -1 while several islands evolve at once")
+		@DataAmount
+		@Frequency
+		double allocationRate;
+	}
+
+	@Override
+	public void generationEvolved(GenerationMetrics metrics){
+		GenerationEvent event = new GenerationEvent();
+		if(!event.shouldCommit()){
+			return;
+		}
+		event.island = metrics.getIsland();
+		event.generation = metrics.getGeneration();
+		event.breedingTime = metrics.getBreedingTime();
+		event.evaluationTime = metrics.getEvaluationTime();
+		event.sortingTime = metrics.getSortingTime();
+		event.optimizationTime = metrics.getOptimizationTime();
+		event.totalTime = metrics.getTotalTime();
+		event.evaluations = metrics.getEvaluations();
+		event.evaluationsPerSecond = metrics.getEvaluationsPerSecond();
+		event.nodeEvaluations = metrics.getNodeEvaluations();
+		event.nodeEvaluationsPerSecond = metrics.getNodeEvaluationsPerSecond();
+		event.meanSize = metrics.getMeanSize();
+		event.maxSize = metrics.getMaxSize();
+		event.rejected = metrics.getRejected();
+		event.aborted = metrics.getAborted();
+		event.optimized = metrics.getOptimized();
+		event.allocatedBytes = metrics.getAllocatedBytes();
+		event.allocationRate = metrics.getAllocationRate();
+		event.commit();
+	}
+}
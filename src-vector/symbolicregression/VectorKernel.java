@@ -0,0 +1,140 @@
+package symbolicregression;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Applies each operation to as many rows per instruction as the CPU's widest vector holds,
+ * using the incubating Vector API. The Vector API needs Java 16 and the jdk.incubator.vector
+ * module, so this class is compiled apart from the rest of the sources and loaded by
+ * ColumnKernel.get when the JVM can run it. Rows left over after the last whole vector are
+ * handled by the scalar code. Sums add each lane separately and the lanes at the end, so they
+ * may differ from the scalar sums in the last bits.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class VectorKernel extends ColumnKernel {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public String getName(){
+		return "vector " + SPECIES.length() + " x double";
+	}
+
+	@Override
+	public void add(double[] left, double[] right, int length){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector.fromArray(SPECIES, left, i).add(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+		}
+		for(; i < length; i++){
+			left[i] += right[i];
+		}
+	}
+
+	@Override
+	public void subtract(double[] left, double[] right, int length){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector.fromArray(SPECIES, left, i).sub(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+		}
+		for(; i < length; i++){
+			left[i] -= right[i];
+		}
+	}
+
+	@Override
+	public void multiply(double[] left, double[] right, int length){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector.fromArray(SPECIES, left, i).mul(DoubleVector.fromArray(SPECIES, right, i)).intoArray(left, i);
+		}
+		for(; i < length; i++){
+			left[i] *= right[i];
+		}
+	}
+
+	@Override
+	public void divide(double[] left, double[] right, int length){
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector divisor = DoubleVector.fromArray(SPECIES, right, i);
+			//Lanes dividing by 0 take DIVISION_BY_ZERO in place of the quotient
+			VectorMask<Double> zero = divisor.compare(VectorOperators.EQ, 0.0);
+			DoubleVector.fromArray(SPECIES, left, i).div(divisor).blend(DIVISION_BY_ZERO, zero).intoArray(left, i);
+		}
+		for(; i < length; i++){
+			left[i] = right[i] == 0.0 ? DIVISION_BY_ZERO : left[i] / right[i];
+		}
+	}
+
+	@Override
+	public double squaredError(double[] target, int targetFrom, double[] output, int length){
+		int bound = SPECIES.loopBound(length);
+		DoubleVector sums = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector error = DoubleVector.fromArray(SPECIES, target, targetFrom + i)
+					.sub(DoubleVector.fromArray(SPECIES, output, i));
+			sums = sums.add(error.mul(error));
+		}
+		double sum = sums.reduceLanes(VectorOperators.ADD);
+		for(; i < length; i++){
+			double error = target[targetFrom + i] - output[i];
+			sum += error * error;
+		}
+		return sum;
+	}
+
+	@Override
+	public double sum(double[] values, int from, int length){
+		int bound = SPECIES.loopBound(length);
+		DoubleVector sums = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			sums = sums.add(DoubleVector.fromArray(SPECIES, values, from + i));
+		}
+		double sum = sums.reduceLanes(VectorOperators.ADD);
+		for(; i < length; i++){
+			sum += values[from + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public void deviations(double[] output, int outputFrom, double[] target, int targetFrom, int length,
+			double meanOutput, double meanTarget, double[] sums){
+		int bound = SPECIES.loopBound(length);
+		DoubleVector outputDeviations = DoubleVector.zero(SPECIES);
+		DoubleVector targetDeviations = DoubleVector.zero(SPECIES);
+		DoubleVector codeviations = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for(; i < bound; i += SPECIES.length()){
+			DoubleVector dOutput = DoubleVector.fromArray(SPECIES, output, outputFrom + i).sub(meanOutput);
+			DoubleVector dTarget = DoubleVector.fromArray(SPECIES, target, targetFrom + i).sub(meanTarget);
+			outputDeviations = outputDeviations.add(dOutput.mul(dOutput));
+			targetDeviations = targetDeviations.add(dTarget.mul(dTarget));
+			codeviations = codeviations.add(dOutput.mul(dTarget));
+		}
+		double outputDeviation = outputDeviations.reduceLanes(VectorOperators.ADD);
+		double targetDeviation = targetDeviations.reduceLanes(VectorOperators.ADD);
+		double codeviation = codeviations.reduceLanes(VectorOperators.ADD);
+		for(; i < length; i++){
+			double dOutput = output[outputFrom + i] - meanOutput;
+			double dTarget = target[targetFrom + i] - meanTarget;
+			outputDeviation += dOutput * dOutput;
+			targetDeviation += dTarget * dTarget;
+			codeviation += dOutput * dTarget;
+		}
+		sums[0] = outputDeviation;
+		sums[1] = targetDeviation;
+		sums[2] = codeviation;
+	}
+}
@@ -0,0 +1,653 @@
+package symbolicregression;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates a JVM class for a program so that the JIT compiler can inline and register
+ * allocate its arithmetic. Each class is defined by its own class loader, so classes evicted
+ * from the bounded cache can be unloaded.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class BytecodeCompiler {
+	//Greatest number of generated classes kept in the cache
+	public static final int CACHE_SIZE = 256;
+	//Programs generating more bytecode than this are left to the interpreter
+	public static final int MAX_CODE_LENGTH = 30000;
+
+	private static final String INTERFACE_NAME = CompiledExpression.class.getName().replace('.', '/');
+	private static final String OBJECT_NAME = "java/lang/Object";
+	private static final String EXCEPTION_NAME = "java/lang/IllegalArgumentException";
+	private static final String MATH_NAME = "java/lang/Math";
+	private static final String SCALING_NAME = LinearScaling.class.getName().replace('.', '/');
+	private static final String COMPILER_NAME = BytecodeCompiler.class.getName().replace('.', '/');
+
+	private static final Map<ProgramKey, CompiledExpression> cache =
+			new LinkedHashMap<ProgramKey, CompiledExpression>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ProgramKey, CompiledExpression> eldest){
+			return size() > CACHE_SIZE;
+		}
+	};
+	private static int classCount = 0;
+	//Values of a block of rows for the moments methods of each thread
+	private static final ThreadLocal<double[]> BLOCKS = new ThreadLocal<double[]>(){
+		@Override
+		protected double[] initialValue(){
+			return new double[Program.BLOCK_SIZE];
+		}
+	};
+
+	/**
+	 * Returns a generated class evaluating a program, reusing the class of an identical
+	 * program if one is still cached
+	 * @param program the program to compile
+	 * @return an instance of the generated class, or the program itself if it is too large to compile
+	 */
+	public static CompiledExpression compile(Program program){
+		ProgramKey key = new ProgramKey(program);
+		synchronized(cache){
+			CompiledExpression compiled = cache.get(key);
+			if(compiled != null){
+				return compiled;
+			}
+		}
+		CompiledExpression compiled;
+		try{
+			compiled = generate(program);
+		}
+		catch(IllegalStateException err){
+			return program;
+		}
+		synchronized(cache){
+			cache.put(key, compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * @return the number of generated classes in the cache
+	 */
+	public static int getCacheSize(){
+		synchronized(cache){
+			return cache.size();
+		}
+	}
+
+	/**
+	 * @return the calling thread's buffer for the values of a block of rows, used by the
+	 * moments methods of generated classes
+	 */
+	public static double[] getBlock(){
+		return BLOCKS.get();
+	}
+
+	/**
+	 * Defines and instantiates the class for a program
+	 * @param program the program to compile
+	 * @return an instance of the generated class
+	 * @throws IllegalStateException if the generated code is too large
+	 */
+	private static CompiledExpression generate(Program program) throws IllegalStateException{
+		String name;
+		synchronized(BytecodeCompiler.class){
+			name = "GeneratedExpression" + classCount++;
+		}
+		byte[] classFile = new ClassWriter(name, program).toByteArray();
+		try{
+			Class<?> generated = new ExpressionClassLoader().define(name, classFile);
+			return (CompiledExpression) generated.getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException err){
+			throw new IllegalStateException(err);
+		}
+	}
+
+	/**
+	 * Class loader defining a single generated class
+	 */
+	private static class ExpressionClassLoader extends ClassLoader {
+
+		public ExpressionClassLoader(){
+			super(BytecodeCompiler.class.getClassLoader());
+		}
+
+		public Class<?> define(String name, byte[] classFile){
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+
+	/**
+	 * Cache key comparing programs by their instructions and operands
+	 */
+	private static class ProgramKey {
+		private final int[] opcodes;
+		private final double[] operands;
+		private final int hash;
+
+		public ProgramKey(Program program){
+			this.opcodes = program.getOpcodes();
+			this.operands = program.getOperands();
+			this.hash = 31 * Arrays.hashCode(opcodes) + Arrays.hashCode(operands);
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			if(!(other instanceof ProgramKey)){
+				return false;
+			}
+			ProgramKey key = (ProgramKey) other;
+			return hash == key.hash && Arrays.equals(opcodes, key.opcodes) && Arrays.equals(operands, key.operands);
+		}
+	}
+
+	/**
+	 * Writes a class file implementing CompiledExpression for a program. The class file
+	 * version is 49 so that the branches of the generated loops need no stack map frames.
+	 * Errors are summed over the same blocks of rows as Program, and moments are added a
+	 * block at a time, so that the class gives the same results as the program with the
+	 * scalar kernel.
+	 */
+	private static class ClassWriter {
+		private final Program program;
+		private final Bytes pool = new Bytes();
+		private final Map<String, Integer> poolIndex = new HashMap<String, Integer>();
+		private int poolCount = 1;
+		private final int maxVariable;
+
+		private final int thisClass;
+		private final int superClass;
+		private final int interfaceClass;
+		private final int objectInit;
+		private final int exceptionClass;
+		private final int exceptionInit;
+		private final int exceptionMessage;
+		private final int mathMin;
+		private final int getBlock;
+		private final int evaluate;
+		private final int addMoments;
+		private final int codeName;
+
+		public ClassWriter(String name, Program program){
+			this.program = program;
+			int max = -1;
+			int[] opcodes = program.getOpcodes();
+			for(int pc = 0; pc < opcodes.length; pc++){
+				if(opcodes[pc] == Program.PUSH_VARIABLE){
+					max = Math.max(max, (int) program.getOperands()[pc]);
+				}
+			}
+			this.maxVariable = max;
+			thisClass = classEntry(name);
+			superClass = classEntry(OBJECT_NAME);
+			interfaceClass = classEntry(INTERFACE_NAME);
+			objectInit = methodEntry(superClass, "<init>", "()V");
+			exceptionClass = classEntry(EXCEPTION_NAME);
+			exceptionInit = methodEntry(exceptionClass, "<init>", "(Ljava/lang/String;)V");
+			exceptionMessage = entry("S" + "Undefined variable", 8, utf8Entry("Undefined variable"), -1);
+			mathMin = methodEntry(classEntry(MATH_NAME), "min", "(II)I");
+			getBlock = methodEntry(classEntry(COMPILER_NAME), "getBlock", "()[D");
+			evaluate = methodEntry(thisClass, "evaluate", "([[DII[D)V");
+			addMoments = methodEntry(classEntry(SCALING_NAME), "add", "([DI[DII[DI)V");
+			codeName = utf8Entry("Code");
+		}
+
+		public byte[] toByteArray() throws IllegalStateException{
+			byte[][] methods = {
+					method("<init>", "()V", 1, 1, constructorCode()),
+					method("evaluate", "([[DII[D)V", 2 * program.getMaxDepth() + 8, 6, evaluateCode()),
+					method("squaredError", "([[D[DII)D", 2 * program.getMaxDepth() + 8, 11, squaredErrorCode()),
+					method("moments", "([[D[DII[DI)V", 8, 10, momentsCode())
+			};
+			Bytes out = new Bytes();
+			out.u4(0xCAFEBABE);
+			out.u2(0);
+			out.u2(49);
+			out.u2(poolCount);
+			out.bytes(pool.toByteArray());
+			out.u2(0x0001 | 0x0010 | 0x0020);	//public final super
+			out.u2(thisClass);
+			out.u2(superClass);
+			out.u2(1);
+			out.u2(interfaceClass);
+			out.u2(0);
+			out.u2(methods.length);
+			for(byte[] method : methods){
+				out.bytes(method);
+			}
+			out.u2(0);
+			return out.toByteArray();
+		}
+
+		private byte[] constructorCode(){
+			Bytes code = new Bytes();
+			code.u1(0x2a);					//aload_0
+			code.u1(0xb7);					//invokespecial Object.<init>
+			code.u2(objectInit);
+			code.u1(0xb1);					//return
+			return code.toByteArray();
+		}
+
+		/**
+		 * Locals: 1 columns, 2 from, 3 to, 4 output, 5 row
+		 */
+		private byte[] evaluateCode(){
+			Bytes code = new Bytes();
+			checkColumns(code);
+			code.u1(0x1c);					//iload_2
+			code.u1(0x36);					//istore row
+			code.u1(5);
+			int loop = code.size();
+			code.u1(0x15);					//iload row
+			code.u1(5);
+			code.u1(0x1d);					//iload_3
+			int exit = code.size();
+			code.u1(0xa2);					//if_icmpge end
+			code.u2(0);
+			code.u1(0x19);					//aload output
+			code.u1(4);
+			code.u1(0x15);					//iload row
+			code.u1(5);
+			code.u1(0x1c);					//iload_2
+			code.u1(0x64);					//isub
+			expression(code, 5);
+			code.u1(0x52);					//dastore
+			code.u1(0x84);					//iinc row 1
+			code.u1(5);
+			code.u1(1);
+			code.u1(0xa7);					//goto loop
+			code.u2(loop - (code.size() - 1));
+			code.patch(exit + 1, code.size() - exit);
+			code.u1(0xb1);					//return
+			return code.toByteArray();
+		}
+
+		/**
+		 * Locals: 1 columns, 2 target, 3 from, 4 to, 5 sum, 7 row, 8 block sum, 10 block end
+		 */
+		private byte[] squaredErrorCode(){
+			Bytes code = new Bytes();
+			checkColumns(code);
+			code.u1(0x0e);					//dconst_0
+			code.u1(0x39);					//dstore sum
+			code.u1(5);
+			code.u1(0x1d);					//iload_3
+			code.u1(0x36);					//istore row
+			code.u1(7);
+			int blockLoop = code.size();
+			code.u1(0x15);					//iload row
+			code.u1(7);
+			code.u1(0x15);					//iload to
+			code.u1(4);
+			int exit = code.size();
+			code.u1(0xa2);					//if_icmpge end
+			code.u2(0);
+			blockEnd(code, 7, 10);
+			code.u1(0x0e);					//dconst_0
+			code.u1(0x39);					//dstore block sum
+			code.u1(8);
+			int rowLoop = code.size();
+			code.u1(0x15);					//iload row
+			code.u1(7);
+			code.u1(0x15);					//iload block end
+			code.u1(10);
+			int blockExit = code.size();
+			code.u1(0xa2);					//if_icmpge block done
+			code.u2(0);
+			code.u1(0x2c);					//aload_2
+			code.u1(0x15);					//iload row
+			code.u1(7);
+			code.u1(0x31);					//daload
+			expression(code, 7);
+			code.u1(0x67);					//dsub
+			code.u1(0x5c);					//dup2
+			code.u1(0x6b);					//dmul
+			code.u1(0x18);					//dload block sum
+			code.u1(8);
+			code.u1(0x63);					//dadd
+			code.u1(0x39);					//dstore block sum
+			code.u1(8);
+			code.u1(0x84);					//iinc row 1
+			code.u1(7);
+			code.u1(1);
+			code.u1(0xa7);					//goto row loop
+			code.u2(rowLoop - (code.size() - 1));
+			code.patch(blockExit + 1, code.size() - blockExit);
+			code.u1(0x18);					//dload sum
+			code.u1(5);
+			code.u1(0x18);					//dload block sum
+			code.u1(8);
+			code.u1(0x63);					//dadd
+			code.u1(0x39);					//dstore sum
+			code.u1(5);
+			code.u1(0xa7);					//goto block loop
+			code.u2(blockLoop - (code.size() - 1));
+			code.patch(exit + 1, code.size() - exit);
+			code.u1(0x18);					//dload sum
+			code.u1(5);
+			code.u1(0xaf);					//dreturn
+			return code.toByteArray();
+		}
+
+		/**
+		 * Evaluates each block of rows into the thread's block buffer and adds it to the
+		 * moments, without allocating.
+		 * Locals: 1 columns, 2 target, 3 from, 4 to, 5 moments, 6 at, 7 block, 8 start, 9 block end
+		 */
+		private byte[] momentsCode(){
+			Bytes code = new Bytes();
+			code.u1(0xb8);					//invokestatic BytecodeCompiler.getBlock
+			code.u2(getBlock);
+			code.u1(0x3a);					//astore block
+			code.u1(7);
+			code.u1(0x1d);					//iload_3
+			code.u1(0x36);					//istore start
+			code.u1(8);
+			int loop = code.size();
+			code.u1(0x15);					//iload start
+			code.u1(8);
+			code.u1(0x15);					//iload to
+			code.u1(4);
+			int exit = code.size();
+			code.u1(0xa2);					//if_icmpge end
+			code.u2(0);
+			blockEnd(code, 8, 9);
+			code.u1(0x2a);					//aload_0
+			code.u1(0x2b);					//aload_1
+			code.u1(0x15);					//iload start
+			code.u1(8);
+			code.u1(0x15);					//iload block end
+			code.u1(9);
+			code.u1(0x19);					//aload block
+			code.u1(7);
+			code.u1(0xb6);					//invokevirtual evaluate
+			code.u2(evaluate);
+			code.u1(0x19);					//aload block
+			code.u1(7);
+			code.u1(0x03);					//iconst_0
+			code.u1(0x2c);					//aload_2
+			code.u1(0x15);					//iload start
+			code.u1(8);
+			code.u1(0x15);					//iload block end
+			code.u1(9);
+			code.u1(0x15);					//iload start
+			code.u1(8);
+			code.u1(0x64);					//isub
+			code.u1(0x19);					//aload moments
+			code.u1(5);
+			code.u1(0x15);					//iload at
+			code.u1(6);
+			code.u1(0xb8);					//invokestatic LinearScaling.add
+			code.u2(addMoments);
+			code.u1(0x15);					//iload block end
+			code.u1(9);
+			code.u1(0x36);					//istore start
+			code.u1(8);
+			code.u1(0xa7);					//goto loop
+			code.u2(loop - (code.size() - 1));
+			code.patch(exit + 1, code.size() - exit);
+			code.u1(0xb1);					//return
+			return code.toByteArray();
+		}
+
+		/**
+		 * Stores the end of the block starting at a row, BLOCK_SIZE rows later or at to
+		 * @param startLocal the local variable holding the first row of the block
+		 * @param endLocal the local variable receiving the end of the block
+		 */
+		private void blockEnd(Bytes code, int startLocal, int endLocal){
+			code.u1(0x15);					//iload start
+			code.u1(startLocal);
+			pushInt(code, Program.BLOCK_SIZE);
+			code.u1(0x60);					//iadd
+			code.u1(0x15);					//iload to
+			code.u1(4);
+			code.u1(0xb8);					//invokestatic Math.min
+			code.u2(mathMin);
+			code.u1(0x36);					//istore block end
+			code.u1(endLocal);
+		}
+
+		/**
+		 * Throws IllegalArgumentException when there are fewer columns than variables
+		 */
+		private void checkColumns(Bytes code){
+			if(maxVariable < 0){
+				return;
+			}
+			code.u1(0x2b);					//aload_1
+			code.u1(0xbe);					//arraylength
+			pushInt(code, maxVariable);
+			int check = code.size();
+			code.u1(0xa3);					//if_icmpgt body
+			code.u2(0);
+			code.u1(0xbb);					//new IllegalArgumentException
+			code.u2(exceptionClass);
+			code.u1(0x59);					//dup
+			code.u1(0x13);					//ldc_w message
+			code.u2(exceptionMessage);
+			code.u1(0xb7);					//invokespecial IllegalArgumentException.<init>
+			code.u2(exceptionInit);
+			code.u1(0xbf);					//athrow
+			code.patch(check + 1, code.size() - check);
+		}
+
+		/**
+		 * Writes the program's arithmetic, leaving the value of the row on the stack
+		 * @param rowLocal the local variable holding the row
+		 */
+		private void expression(Bytes code, int rowLocal){
+			int[] opcodes = program.getOpcodes();
+			double[] operands = program.getOperands();
+			for(int pc = 0; pc < opcodes.length; pc++){
+				switch(opcodes[pc]){
+				case Program.PUSH_COEFFICIENT:
+					pushDouble(code, operands[pc]);
+					break;
+				case Program.PUSH_VARIABLE:
+					code.u1(0x2b);			//aload_1
+					pushInt(code, (int) operands[pc]);
+					code.u1(0x32);			//aaload
+					code.u1(0x15);			//iload row
+					code.u1(rowLocal);
+					code.u1(0x31);			//daload
+					break;
+				case Program.ADD:
+					code.u1(0x63);			//dadd
+					break;
+				case Program.SUBTRACT:
+					code.u1(0x67);			//dsub
+					break;
+				case Program.MULTIPLY:
+					code.u1(0x6b);			//dmul
+					break;
+				default:
+					//Division by 0 returns the same value as ExpressionTreeNode.evaluate
+					code.u1(0x5c);			//dup2
+					code.u1(0x0e);			//dconst_0
+					code.u1(0x97);			//dcmpl
+					int zero = code.size();
+					code.u1(0x9a);			//ifne divide
+					code.u2(0);
+					code.u1(0x58);			//pop2
+					code.u1(0x58);			//pop2
+					pushDouble(code, 1000000000);
+					int skip = code.size();
+					code.u1(0xa7);			//goto end
+					code.u2(0);
+					code.patch(zero + 1, code.size() - zero);
+					code.u1(0x6f);			//ddiv
+					code.patch(skip + 1, code.size() - skip);
+					break;
+				}
+			}
+		}
+
+		private void pushDouble(Bytes code, double value){
+			if(Double.doubleToRawLongBits(value) == 0L){
+				code.u1(0x0e);				//dconst_0
+			}
+			else if(value == 1.0){
+				code.u1(0x0f);				//dconst_1
+			}
+			else{
+				code.u1(0x14);				//ldc2_w
+				code.u2(doubleEntry(value));
+			}
+		}
+
+		private void pushInt(Bytes code, int value){
+			if(value >= -1 && value <= 5){
+				code.u1(0x03 + value);		//iconst
+			}
+			else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE){
+				code.u1(0x10);				//bipush
+				code.u1(value);
+			}
+			else{
+				code.u1(0x11);				//sipush
+				code.u2(value);
+			}
+		}
+
+		private byte[] method(String name, String descriptor, int maxStack, int maxLocals, byte[] code)
+				throws IllegalStateException{
+			if(code.length > MAX_CODE_LENGTH){
+				throw new IllegalStateException("Generated code too large");
+			}
+			Bytes out = new Bytes();
+			out.u2(0x0001);					//public
+			out.u2(utf8Entry(name));
+			out.u2(utf8Entry(descriptor));
+			out.u2(1);
+			out.u2(codeName);
+			out.u4(12 + code.length);
+			out.u2(maxStack);
+			out.u2(maxLocals);
+			out.u4(code.length);
+			out.bytes(code);
+			out.u2(0);						//exception table
+			out.u2(0);						//attributes
+			return out.toByteArray();
+		}
+
+		private int utf8Entry(String value){
+			Integer index = poolIndex.get("U" + value);
+			if(index != null){
+				return index;
+			}
+			pool.u1(1);
+			byte[] bytes;
+			try{
+				bytes = value.getBytes("UTF-8");
+			}
+			catch(java.io.UnsupportedEncodingException err){
+				throw new IllegalStateException(err);
+			}
+			pool.u2(bytes.length);
+			pool.bytes(bytes);
+			poolIndex.put("U" + value, poolCount);
+			return poolCount++;
+		}
+
+		private int classEntry(String name){
+			return entry("C" + name, 7, utf8Entry(name), -1);
+		}
+
+		private int methodEntry(int owner, String name, String descriptor){
+			int nameAndType = entry("N" + name + descriptor, 12, utf8Entry(name), utf8Entry(descriptor));
+			return entry("M" + owner + "." + name + descriptor, 10, owner, nameAndType);
+		}
+
+		private int doubleEntry(double value){
+			long bits = Double.doubleToRawLongBits(value);
+			Integer index = poolIndex.get("D" + bits);
+			if(index != null){
+				return index;
+			}
+			pool.u1(6);
+			pool.u4((int) (bits >>> 32));
+			pool.u4((int) bits);
+			poolIndex.put("D" + bits, poolCount);
+			int entry = poolCount;
+			//Double entries take two slots of the constant pool
+			poolCount += 2;
+			return entry;
+		}
+
+		/**
+		 * Adds an entry referring to one or two other entries
+		 */
+		private int entry(String key, int tag, int first, int second){
+			Integer index = poolIndex.get(key);
+			if(index != null){
+				return index;
+			}
+			pool.u1(tag);
+			pool.u2(first);
+			if(second >= 0){
+				pool.u2(second);
+			}
+			poolIndex.put(key, poolCount);
+			return poolCount++;
+		}
+	}
+
+	/**
+	 * Growable big endian byte array
+	 */
+	private static class Bytes {
+		private byte[] data = new byte[256];
+		private int size = 0;
+
+		public int size(){
+			return size;
+		}
+
+		public void u1(int value){
+			if(size == data.length){
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = (byte) value;
+		}
+
+		public void u2(int value){
+			u1(value >>> 8);
+			u1(value);
+		}
+
+		public void u4(int value){
+			u2(value >>> 16);
+			u2(value);
+		}
+
+		public void bytes(byte[] values){
+			for(byte value : values){
+				u1(value);
+			}
+		}
+
+		/**
+		 * Overwrites two bytes with a branch offset
+		 */
+		public void patch(int position, int value){
+			data[position] = (byte) (value >>> 8);
+			data[position + 1] = (byte) value;
+		}
+
+		public byte[] toByteArray(){
+			return Arrays.copyOf(data, size);
+		}
+	}
+}
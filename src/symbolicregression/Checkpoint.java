@@ -0,0 +1,243 @@
+package symbolicregression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the state of a run so that it can be resumed. A checkpoint holds the data set's
+ * split, or the seed of a streaming data set's split, the state of the island model's random number generator and the state of every
+ * island, with trees in their compact binary form, followed by a CRC32 of its contents.
+ * The state is encoded in memory by the caller and written to disk on a background thread,
+ * so evolution does not wait for the disk. Each checkpoint is written beside the file and
+ * then moved into place, so the file always holds the latest complete checkpoint.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class Checkpoint {
+	public static final byte[] MAGIC = {'S', 'R', 'C', 'K', 'P', 'T', 0, 3};
+
+	private final Path path;
+	private final DataSet data;
+	private final ExecutorService writer;
+	//Latest encoded checkpoint not yet written, or null if there is none
+	private final AtomicReference<byte[]> pending = new AtomicReference<byte[]>();
+
+	/**
+	 * State read from a checkpoint
+	 */
+	public static class State {
+		private final boolean[] split;
+		private final long splitSeed;
+		private final long randomState;
+		//Encoded islands, read once the data set has been loaded with the split
+		private final byte[] islands;
+
+		private State(boolean[] split, long splitSeed, long randomState, byte[] islands){
+			this.split = split;
+			this.splitSeed = splitSeed;
+			this.randomState = randomState;
+			this.islands = islands;
+		}
+
+		/**
+		 * @return whether each row of the data file is in the training set, or null if the
+		 * checkpoint was saved with a streaming data set
+		 */
+		public boolean[] getSplit(){
+			return split;
+		}
+
+		/**
+		 * @return the seed of the streaming data set's split if getSplit returns null
+		 */
+		public long getSplitSeed(){
+			return splitSeed;
+		}
+
+		/**
+		 * @return the island model's random number generator as it was when the checkpoint was saved
+		 */
+		public SplitRandom getRandom(){
+			return new SplitRandom(randomState);
+		}
+
+		/**
+		 * Reads the islands of the checkpoint
+		 * @param data the data set loaded with the checkpoint's split
+		 * @param evaluator the evaluator scoring the islands' offspring
+		 * @return the islands, ready to evolve their next generation
+		 * @throws IOException if the islands are not valid
+		 */
+		public Island[] getIslands(DataSet data, PopulationEvaluator evaluator) throws IOException{
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(islands));
+			int count = in.readInt();
+			if(count < 1 || count > islands.length){
+				throw new IOException("Invalid island count " + count);
+			}
+			Island[] result = new Island[count];
+			for(int i = 0; i < count; i++){
+				result[i] = Island.read(in, data, evaluator);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Constructs a checkpoint writer
+	 * @param fileName the name of the checkpoint file
+	 * @param data the data set whose split is saved
+	 */
+	public Checkpoint(String fileName, DataSet data){
+		this.path = Paths.get(fileName).toAbsolutePath();
+		this.data = data;
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "checkpoint-writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Encodes the state of a run and writes it in the background. If the previous checkpoint
+	 * has not been written yet, it is replaced by this one. The islands must not evolve
+	 * while this method runs.
+	 * @param islands the islands of the run
+	 * @param random the island model's random number generator, or null if there is none
+	 */
+	public void save(Island[] islands, SplitRandom random){
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try{
+			out.write(MAGIC);
+			if(data instanceof StreamingDataSet){
+				//A streaming data set's split follows from its seed
+				out.writeInt(-1);
+				out.writeLong(((StreamingDataSet) data).getSeed());
+			}
+			else{
+				DataSet.writeSplit(out, data.getSplit());
+			}
+			out.writeLong(random != null ? random.getState() : 0);
+			out.writeInt(islands.length);
+			for(Island island : islands){
+				island.write(out);
+			}
+			CRC32 crc = new CRC32();
+			crc.update(bytes.toByteArray());
+			out.writeInt((int) crc.getValue());
+		}
+		catch(IOException err){
+			//Writing to memory does not fail
+			throw new UncheckedIOException(err);
+		}
+		if(pending.getAndSet(bytes.toByteArray()) == null){
+			writer.execute(new Runnable(){
+				@Override
+				public void run(){
+					writePending();
+				}
+			});
+		}
+	}
+
+	private void writePending(){
+		byte[] bytes = pending.getAndSet(null);
+		if(bytes == null){
+			return;
+		}
+		Path temporary = null;
+		try{
+			temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			try{
+				ByteBuffer buffer = ByteBuffer.wrap(bytes);
+				while(buffer.hasRemaining()){
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			finally{
+				channel.close();
+			}
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(IOException err){
+			System.out.println("Could not write checkpoint: " + err.getMessage());
+			//The previous checkpoint is still in place, so only the partial copy is removed
+			if(temporary != null){
+				try{
+					Files.deleteIfExists(temporary);
+				}
+				catch(IOException deleteErr){
+					System.out.println("Could not delete " + temporary + ": " + deleteErr.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits for the last checkpoint to be written and stops the background thread
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void close() throws InterruptedException{
+		writer.shutdown();
+		writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Reads a checkpoint
+	 * @param fileName the name of the checkpoint file
+	 * @return the state saved in the checkpoint
+	 * @throws IOException if the file cannot be read or is not a complete checkpoint
+	 */
+	public static State read(String fileName) throws IOException{
+		byte[] bytes = Files.readAllBytes(Paths.get(fileName));
+		if(bytes.length < MAGIC.length + 4 || !Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)){
+			throw new IOException("Not a checkpoint: " + fileName);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 4);
+		if((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()){
+			throw new IOException("Corrupt checkpoint: " + fileName);
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, MAGIC.length, bytes.length - MAGIC.length - 4));
+		int rows = in.readInt();
+		boolean[] split = null;
+		long splitSeed = 0;
+		if(rows == -1){
+			splitSeed = in.readLong();
+		}
+		else if(rows < 0 || rows / 8 > bytes.length){
+			throw new IOException("Invalid checkpoint: " + fileName);
+		}
+		else{
+			split = DataSet.readSplit(in, rows);
+		}
+		long randomState = in.readLong();
+		byte[] islands = new byte[in.available()];
+		in.readFully(islands);
+		return new State(split, splitSeed, randomState, islands);
+	}
+}
@@ -0,0 +1,305 @@
+package symbolicregression;
+
+import java.util.Arrays;
+
+/**
+ * Fits the coefficients of a tree to the training set of a data set with the
+ * Levenberg-Marquardt method, keeping the shape of the tree. The derivatives of the tree's
+ * value with respect to every coefficient are found in the same pass that computes the
+ * value, by running the tree's program on dual numbers: each stack entry carries the
+ * derivative of its value with respect to each coefficient along with the value.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class CoefficientOptimizer {
+	//Damping of the first step, and the bounds past which the fit gives up
+	public static final double INITIAL_DAMPING = 1e-3;
+	public static final double MIN_DAMPING = 1e-12;
+	public static final double MAX_DAMPING = 1e12;
+	//Rows run through the program together
+	public static final int BLOCK_SIZE = 64;
+
+	private final int steps;
+
+	/**
+	 * Constructs an optimizer
+	 * @param steps the number of Levenberg-Marquardt steps tried for each tree
+	 */
+	public CoefficientOptimizer(int steps){
+		this.steps = steps;
+	}
+
+	/**
+	 * Fits the coefficients of a tree to the training set of a data set. The coefficients are
+	 * only changed if they lower the squared error on those rows, and the tree's fitness must
+	 * then be calculated again. The tree's offset and scale are kept during the fit.
+	 * @param tree the tree to fit
+	 * @param data the data set whose training set the tree is fitted to, with its rows held in memory
+	 * @return true if the coefficients were changed
+	 * @throws IllegalArgumentException if the tree uses a variable the data set does not have
+	 */
+	public boolean optimize(ExpressionTree tree, DataSet data) throws IllegalArgumentException{
+		double[] coefficients = tree.getCoefficients();
+		int count = coefficients.length;
+		if(count == 0 || data.getTrainingSize() == 0){
+			return false;
+		}
+		Program program = tree.getProgram();
+		Fit fit = new Fit(program, data, count, tree.getScale(), tree.getOffset());
+		double error = fit.run(coefficients);
+		if(!(error < Double.POSITIVE_INFINITY)){
+			return false;
+		}
+		double[][] normal = fit.normal;
+		double[] gradient = fit.gradient;
+		Fit trial = new Fit(program, data, count, tree.getScale(), tree.getOffset());
+		double damping = INITIAL_DAMPING;
+		boolean improved = false;
+		for(int step = 0; step < steps && damping < MAX_DAMPING; step++){
+			double[] change = solve(normal, gradient, damping);
+			if(change == null){
+				damping *= 10;
+				continue;
+			}
+			double[] next = new double[count];
+			for(int i = 0; i < count; i++){
+				next[i] = coefficients[i] + change[i];
+			}
+			double nextError = trial.run(next);
+			if(nextError < error){
+				coefficients = next;
+				error = nextError;
+				//The trial's sums become the current ones and the old arrays are reused by the next trial
+				Fit swap = fit;
+				fit = trial;
+				trial = swap;
+				normal = fit.normal;
+				gradient = fit.gradient;
+				damping = Math.max(damping / 10, MIN_DAMPING);
+				improved = true;
+			}
+			else{
+				damping *= 10;
+			}
+		}
+		if(improved){
+			tree.setCoefficients(coefficients);
+		}
+		return improved;
+	}
+
+	/**
+	 * Solves the damped normal equations (J'J + damping * diag(J'J)) x = J'r by Cholesky
+	 * decomposition. Coefficients that have no effect on the tree are damped as if their
+	 * diagonal entry were 1, which leaves them unchanged.
+	 * @param normal the matrix J'J
+	 * @param gradient the vector J'r
+	 * @param damping the damping factor
+	 * @return the change to the coefficients, or null if the system could not be solved
+	 */
+	private static double[] solve(double[][] normal, double[] gradient, double damping){
+		int n = gradient.length;
+		double[][] lower = new double[n][n];
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j <= i; j++){
+				double sum = normal[i][j];
+				if(i == j){
+					sum += damping * (normal[i][i] > 0 ? normal[i][i] : 1);
+				}
+				for(int k = 0; k < j; k++){
+					sum -= lower[i][k] * lower[j][k];
+				}
+				if(i == j){
+					if(!(sum > 0) || sum == Double.POSITIVE_INFINITY){
+						return null;
+					}
+					lower[i][i] = Math.sqrt(sum);
+				}
+				else{
+					lower[i][j] = sum / lower[j][j];
+				}
+			}
+		}
+		double[] x = new double[n];
+		for(int i = 0; i < n; i++){
+			double sum = gradient[i];
+			for(int k = 0; k < i; k++){
+				sum -= lower[i][k] * x[k];
+			}
+			x[i] = sum / lower[i][i];
+		}
+		for(int i = n - 1; i >= 0; i--){
+			double sum = x[i];
+			for(int k = i + 1; k < n; k++){
+				sum -= lower[k][i] * x[k];
+			}
+			x[i] = sum / lower[i][i];
+		}
+		for(double value : x){
+			if(Double.isNaN(value) || Double.isInfinite(value)){
+				return null;
+			}
+		}
+		return x;
+	}
+
+	/**
+	 * Runs a program on dual numbers over the training set of a data set and sums the squared
+	 * error, the normal matrix J'J and the vector J'r of the residuals r of offset + scale * f(x)
+	 */
+	private static class Fit {
+		private final int[] opcodes;
+		private final double[] operands;
+		//Index of the coefficient pushed by each instruction
+		private final int[] coefficientIndex;
+		private final double[][] columns;
+		private final double[] target;
+		private final int rows;
+		private final int count;
+		private final double scale;
+		private final double offset;
+		private final double[][] values;
+		//derivatives[depth][coefficient][row] is the derivative of a stack entry for each row of a block
+		private final double[][][] derivatives;
+		final double[][] normal;
+		final double[] gradient;
+
+		public Fit(Program program, DataSet data, int count, double scale, double offset){
+			this.opcodes = program.getOpcodes();
+			this.operands = program.getOperands();
+			this.columns = data.getColumns();
+			this.target = data.getTarget();
+			this.rows = data.getTrainingSize();
+			this.count = count;
+			this.scale = scale;
+			this.offset = offset;
+			coefficientIndex = new int[opcodes.length];
+			int next = 0;
+			for(int pc = 0; pc < opcodes.length; pc++){
+				if(opcodes[pc] == Program.PUSH_COEFFICIENT){
+					coefficientIndex[pc] = next++;
+				}
+			}
+			values = new double[program.getMaxDepth()][BLOCK_SIZE];
+			derivatives = new double[program.getMaxDepth()][count][BLOCK_SIZE];
+			normal = new double[count][count];
+			gradient = new double[count];
+		}
+
+		/**
+		 * Runs the program with a set of coefficients
+		 * @param coefficients the coefficients in the order they are pushed
+		 * @return the sum of the squared errors, or infinity if it is not a number
+		 */
+		public double run(double[] coefficients){
+			for(int i = 0; i < count; i++){
+				Arrays.fill(normal[i], 0);
+			}
+			Arrays.fill(gradient, 0);
+			double error = 0;
+			for(int start = 0; start < rows; start += BLOCK_SIZE){
+				int length = Math.min(BLOCK_SIZE, rows - start);
+				runBlock(coefficients, start, length);
+				double[] value = values[0];
+				double[][] derivative = derivatives[0];
+				for(int row = 0; row < length; row++){
+					double residual = target[start + row] - (offset + scale * value[row]);
+					error += residual * residual;
+					for(int i = 0; i < count; i++){
+						double di = scale * derivative[i][row];
+						if(di == 0){
+							continue;
+						}
+						gradient[i] += di * residual;
+						for(int j = 0; j <= i; j++){
+							normal[i][j] += di * scale * derivative[j][row];
+						}
+					}
+				}
+			}
+			for(int i = 0; i < count; i++){
+				for(int j = 0; j < i; j++){
+					normal[j][i] = normal[i][j];
+				}
+			}
+			return Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+		}
+
+		private void runBlock(double[] coefficients, int start, int length){
+			int top = -1;
+			for(int pc = 0; pc < opcodes.length; pc++){
+				int opcode = opcodes[pc];
+				if(opcode == Program.PUSH_COEFFICIENT){
+					top++;
+					Arrays.fill(values[top], 0, length, coefficients[coefficientIndex[pc]]);
+					for(int i = 0; i < count; i++){
+						Arrays.fill(derivatives[top][i], 0, length, i == coefficientIndex[pc] ? 1 : 0);
+					}
+					continue;
+				}
+				if(opcode == Program.PUSH_VARIABLE){
+					int variable = (int) operands[pc];
+					if(variable < 0 || variable >= columns.length){
+						throw new IllegalArgumentException("Undefined variable");
+					}
+					top++;
+					System.arraycopy(columns[variable], start, values[top], 0, length);
+					for(int i = 0; i < count; i++){
+						Arrays.fill(derivatives[top][i], 0, length, 0);
+					}
+					continue;
+				}
+				double[] left = values[top - 1];
+				double[] right = values[top];
+				double[][] leftDerivative = derivatives[top - 1];
+				double[][] rightDerivative = derivatives[top];
+				top--;
+				switch(opcode){
+				case Program.ADD:
+					for(int row = 0; row < length; row++){
+						left[row] += right[row];
+					}
+					for(int i = 0; i < count; i++){
+						for(int row = 0; row < length; row++){
+							leftDerivative[i][row] += rightDerivative[i][row];
+						}
+					}
+					break;
+				case Program.SUBTRACT:
+					for(int row = 0; row < length; row++){
+						left[row] -= right[row];
+					}
+					for(int i = 0; i < count; i++){
+						for(int row = 0; row < length; row++){
+							leftDerivative[i][row] -= rightDerivative[i][row];
+						}
+					}
+					break;
+				case Program.MULTIPLY:
+					for(int i = 0; i < count; i++){
+						for(int row = 0; row < length; row++){
+							leftDerivative[i][row] = leftDerivative[i][row] * right[row] + left[row] * rightDerivative[i][row];
+						}
+					}
+					for(int row = 0; row < length; row++){
+						left[row] *= right[row];
+					}
+					break;
+				default:
+					for(int row = 0; row < length; row++){
+						//Division by 0 returns the same constant as Program, so its derivatives are 0
+						left[row] = right[row] == 0.0 ? 1000000000 : left[row] / right[row];
+					}
+					for(int i = 0; i < count; i++){
+						for(int row = 0; row < length; row++){
+							leftDerivative[i][row] = right[row] == 0.0 ? 0
+									: (leftDerivative[i][row] - left[row] * rightDerivative[i][row]) / right[row];
+						}
+					}
+					break;
+				}
+			}
+		}
+	}
+}
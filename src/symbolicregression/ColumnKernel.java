@@ -0,0 +1,153 @@
+package symbolicregression;
+
+/**
+ * Applies the arithmetic of a program and the sums of its errors to whole blocks of rows.
+ * This class does so one row at a time; when the JVM provides the incubating Vector API,
+ * get returns a subclass that applies each operation to several rows per instruction.
+ * Every kernel divides by 0 the same way as ExpressionTreeNode.evaluate.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class ColumnKernel {
+	//Kernel using the Vector API, compiled separately for Java 17 and run with --add-modules jdk.incubator.vector
+	public static final String VECTOR = "symbolicregression.VectorKernel";
+	//Value of a division by 0
+	public static final double DIVISION_BY_ZERO = 1000000000;
+
+	private static final ColumnKernel KERNEL = load();
+
+	/**
+	 * @return the vector kernel if it was built and the JVM has the Vector API, otherwise the scalar kernel
+	 */
+	public static ColumnKernel get(){
+		return KERNEL;
+	}
+
+	private static ColumnKernel load(){
+		try{
+			return (ColumnKernel) Class.forName(VECTOR).getConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException err){
+			return new ColumnKernel();
+		}
+		catch(LinkageError err){
+			//Running on a JVM older than the kernel's class file or without the jdk.incubator.vector module
+			return new ColumnKernel();
+		}
+	}
+
+	/**
+	 * @return a short description of the kernel
+	 */
+	public String getName(){
+		return "scalar";
+	}
+
+	/**
+	 * Sets left[i] to left[i] + right[i] for each row
+	 * @param left the values of the left operand, which receive the results
+	 * @param right the values of the right operand
+	 * @param length the number of rows
+	 */
+	public void add(double[] left, double[] right, int length){
+		for(int i = 0; i < length; i++){
+			left[i] += right[i];
+		}
+	}
+
+	/**
+	 * Sets left[i] to left[i] - right[i] for each row
+	 * @param left the values of the left operand, which receive the results
+	 * @param right the values of the right operand
+	 * @param length the number of rows
+	 */
+	public void subtract(double[] left, double[] right, int length){
+		for(int i = 0; i < length; i++){
+			left[i] -= right[i];
+		}
+	}
+
+	/**
+	 * Sets left[i] to left[i] * right[i] for each row
+	 * @param left the values of the left operand, which receive the results
+	 * @param right the values of the right operand
+	 * @param length the number of rows
+	 */
+	public void multiply(double[] left, double[] right, int length){
+		for(int i = 0; i < length; i++){
+			left[i] *= right[i];
+		}
+	}
+
+	/**
+	 * Sets left[i] to left[i] / right[i] for each row, or to DIVISION_BY_ZERO where right[i] is 0
+	 * @param left the values of the left operand, which receive the results
+	 * @param right the values of the right operand
+	 * @param length the number of rows
+	 */
+	public void divide(double[] left, double[] right, int length){
+		for(int i = 0; i < length; i++){
+			left[i] = right[i] == 0.0 ? DIVISION_BY_ZERO : left[i] / right[i];
+		}
+	}
+
+	/**
+	 * @param target the expected values
+	 * @param targetFrom the index in target of the first row
+	 * @param output the values of the expression, starting with the first row
+	 * @param length the number of rows
+	 * @return the sum of the squared differences between the targets and the values
+	 */
+	public double squaredError(double[] target, int targetFrom, double[] output, int length){
+		double sum = 0;
+		for(int i = 0; i < length; i++){
+			double error = target[targetFrom + i] - output[i];
+			sum += error * error;
+		}
+		return sum;
+	}
+
+	/**
+	 * @param values the values
+	 * @param from the index of the first value
+	 * @param length the number of values
+	 * @return the sum of the values
+	 */
+	public double sum(double[] values, int from, int length){
+		double sum = 0;
+		for(int i = 0; i < length; i++){
+			sum += values[from + i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Sums the squared deviations of the values and targets from their means and the products
+	 * of their deviations
+	 * @param output the values of the expression
+	 * @param outputFrom the index in output of the first row
+	 * @param target the expected values
+	 * @param targetFrom the index in target of the first row
+	 * @param length the number of rows
+	 * @param meanOutput the mean of the values
+	 * @param meanTarget the mean of the targets
+	 * @param sums receives the sums for the values, the targets and their products in that order
+	 */
+	public void deviations(double[] output, int outputFrom, double[] target, int targetFrom, int length,
+			double meanOutput, double meanTarget, double[] sums){
+		double outputDeviation = 0;
+		double targetDeviation = 0;
+		double codeviation = 0;
+		for(int i = 0; i < length; i++){
+			double dOutput = output[outputFrom + i] - meanOutput;
+			double dTarget = target[targetFrom + i] - meanTarget;
+			outputDeviation += dOutput * dOutput;
+			targetDeviation += dTarget * dTarget;
+			codeviation += dOutput * dTarget;
+		}
+		sums[0] = outputDeviation;
+		sums[1] = targetDeviation;
+		sums[2] = codeviation;
+	}
+}
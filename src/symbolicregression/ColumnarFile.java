@@ -0,0 +1,242 @@
+package symbolicregression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file holding a data set as columns of little endian doubles. The file starts with
+ * a header holding the magic bytes, the number of columns, the number of rows and the name
+ * of each column, padded to a multiple of 8 bytes, followed by each column in turn.
+ * Opening the file maps it into memory, so the columns are read without parsing.
+ * DataSet scores a chunk of rows at a time read from the mapping, and StreamingDataSet
+ * a block of rows at a time, so processes reading the same file share the operating
+ * system's page cache and hold only a chunk or a block each instead of their own copy.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class ColumnarFile {
+	public static final byte[] MAGIC = {'S', 'R', 'C', 'O', 'L', 0, 0, 1};
+	public static final int BUFFER_SIZE = 1 << 20;
+
+	private final String[] names;
+	private final int rows;
+	private final DoubleBuffer[] columns;
+
+	/**
+	 * Opens a columnar file by mapping it into memory
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be read or is not a columnar file
+	 */
+	public ColumnarFile(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try{
+			long size = channel.size();
+			ByteBuffer header = read(channel, 0, MAGIC.length + 12, fileName);
+			if(!hasMagic(header)){
+				throw new IOException("Not a columnar file: " + fileName);
+			}
+			header.position(MAGIC.length);
+			int columnCount = header.getInt();
+			long rowCount = header.getLong();
+			long position = header.limit();
+			//Each name takes at least the two bytes of its length
+			if(columnCount < 1 || columnCount > (size - position) / 2){
+				throw new IOException("Invalid columnar file: " + fileName);
+			}
+			if(rowCount < 0 || rowCount > Integer.MAX_VALUE / 8){
+				throw new IOException("Invalid columnar file: " + fileName);
+			}
+			names = new String[columnCount];
+			for(int i = 0; i < columnCount; i++){
+				int length = read(channel, position, 2, fileName).getShort() & 0xffff;
+				byte[] name = new byte[length];
+				read(channel, position + 2, length, fileName).get(name);
+				names[i] = new String(name, StandardCharsets.UTF_8);
+				position += 2 + length;
+			}
+			long offset = (position + 7) & ~7L;
+			rows = (int) rowCount;
+			long columnBytes = 8L * rows;
+			if(offset + columnCount * columnBytes > size){
+				throw new IOException("Truncated columnar file: " + fileName);
+			}
+			columns = new DoubleBuffer[columnCount];
+			for(int i = 0; i < columnCount; i++){
+				columns[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + i * columnBytes, columnBytes)
+						.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			}
+		}
+		finally{
+			//The mappings stay valid after the channel is closed
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads part of the header
+	 * @param channel the channel of the file
+	 * @param position the position of the first byte to read
+	 * @param length the number of bytes to read
+	 * @param fileName the name of the file, for error messages
+	 * @return a little endian buffer holding the bytes
+	 * @throws IOException if the file cannot be read or ends before the bytes
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length, String fileName) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, position + buffer.position()) < 0){
+				throw new IOException("Truncated columnar file: " + fileName);
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * @return the name of each column
+	 */
+	public String[] getNames(){
+		return names;
+	}
+
+	/**
+	 * @return the number of rows in the file
+	 */
+	public int getRows(){
+		return rows;
+	}
+
+	/**
+	 * @return a read only view of each column, the last column being the output
+	 */
+	public DoubleBuffer[] getColumns(){
+		DoubleBuffer[] views = new DoubleBuffer[columns.length];
+		for(int i = 0; i < columns.length; i++){
+			views[i] = columns[i].asReadOnlyBuffer();
+		}
+		return views;
+	}
+
+	/**
+	 * Checks whether a file is a columnar file
+	 * @param fileName the name of the file
+	 * @return true if the file starts with the magic bytes
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isColumnarFile(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try{
+			ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+			while(header.hasRemaining() && channel.read(header) >= 0){
+			}
+			header.flip();
+			return hasMagic(header);
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Converts a CSV file into a columnar file. Variables are named x1, x2, ... and the
+	 * output is named f.
+	 * @param csvFileName the name of the CSV file
+	 * @param fileName the name of the columnar file to write
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public static void convert(String csvFileName, String fileName) throws IOException{
+		CsvReader reader = new CsvReader(csvFileName);
+		double[][] columns = reader.getColumns();
+		String[] names = new String[columns.length];
+		for(int i = 0; i < columns.length - 1; i++){
+			names[i] = "x" + (i + 1);
+		}
+		names[columns.length - 1] = "f";
+		write(fileName, names, columns, reader.getRows());
+	}
+
+	/**
+	 * Writes columns to a columnar file. The file is written beside its final name and
+	 * then moved into place, so a reader never sees a partly written file.
+	 * @param fileName the name of the file to write
+	 * @param names the name of each column
+	 * @param columns the columns, the last column being the output
+	 * @param rows the number of rows in each column
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(String fileName, String[] names, double[][] columns, int rows) throws IOException{
+		Path path = Paths.get(fileName).toAbsolutePath();
+		Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.put(MAGIC);
+			buffer.putInt(columns.length);
+			buffer.putLong(rows);
+			for(String name : names){
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				buffer.putShort((short) bytes.length);
+				buffer.put(bytes);
+			}
+			while(buffer.position() % 8 != 0){
+				buffer.put((byte) 0);
+			}
+			for(double[] column : columns){
+				for(int row = 0; row < rows; row++){
+					if(!buffer.hasRemaining()){
+						flush(channel, buffer);
+					}
+					buffer.putDouble(column[row]);
+				}
+			}
+			flush(channel, buffer);
+			channel.force(true);
+		}
+		finally{
+			channel.close();
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static boolean hasMagic(ByteBuffer header){
+		if(header.limit() < MAGIC.length){
+			return false;
+		}
+		for(int i = 0; i < MAGIC.length; i++){
+			if(header.get(i) != MAGIC[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts a CSV file into a columnar file
+	 * @param args the name of the CSV file and the name of the columnar file
+	 */
+	public static void main(String[] args) throws IOException{
+		if(args.length != 2){
+			System.out.println("Usage: java symbolicregression.ColumnarFile <file.csv> <file.col>");
+			return;
+		}
+		convert(args[0], args[1]);
+	}
+}
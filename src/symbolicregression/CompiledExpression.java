@@ -0,0 +1,49 @@
+package symbolicregression;
+
+/**
+ * An expression in a form that can be evaluated over a range of data set rows
+ * 
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public interface CompiledExpression {
+
+	/**
+	 * Evaluates the expression for a range of rows
+	 * @param columns the column of values for each variable, columns[i] holding x(i+1)
+	 * @param from the first row, inclusive
+	 * @param to the last row, exclusive
+	 * @param output receives the value of row from + i at index i
+	 * @throws IllegalArgumentException if a variable has no column
+	 */
+	public void evaluate(double[][] columns, int from, int to, double[] output) throws IllegalArgumentException;
+
+	/**
+	 * Sums the squared error of the expression over a range of rows
+	 * @param columns the column of values for each variable, columns[i] holding x(i+1)
+	 * @param target the expected value of each row
+	 * @param from the first row, inclusive
+	 * @param to the last row, exclusive
+	 * @return the sum of the squared errors
+	 * @throws IllegalArgumentException if a variable has no column
+	 */
+	public double squaredError(double[][] columns, double[] target, int from, int to) throws IllegalArgumentException;
+
+	/**
+	 * Adds a range of rows to the moments used by LinearScaling. Expressions that can score
+	 * rows without storing every value should override this.
+	 * @param columns the column of values for each variable, columns[i] holding x(i+1)
+	 * @param target the expected value of each row
+	 * @param from the first row, inclusive
+	 * @param to the last row, exclusive
+	 * @param moments the moments to add to
+	 * @param at the index of the moments in their array
+	 * @throws IllegalArgumentException if a variable has no column
+	 */
+	public default void moments(double[][] columns, double[] target, int from, int to, double[] moments, int at)
+			throws IllegalArgumentException{
+		double[] output = new double[to - from];
+		evaluate(columns, from, to, output);
+		LinearScaling.add(output, 0, target, from, to - from, moments, at);
+	}
+}
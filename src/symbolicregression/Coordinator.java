@@ -0,0 +1,309 @@
+package symbolicregression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connects island models running in worker processes. The coordinator draws the split of
+ * the data set into training and test rows and sends it to each worker as it connects, so
+ * every process scores trees on the same training set and the test set stays held out.
+ * Each worker reports the trees it has found below the cut off and sends its best trees,
+ * which the coordinator passes on to the next worker in a ring. Reported trees are scored
+ * again by the coordinator before they enter its best set. Once the workers have together
+ * found enough trees, every worker is told to stop. A worker that disconnects is dropped
+ * from the ring and the others carry on.
+ *
+ * Run the coordinator with "java symbolicregression.Coordinator [port] [seed]" and then any
+ * number of workers with "java symbolicregression.Worker host [port] [seed]", for example
+ * several processes on localhost.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class Coordinator {
+	public static final int PORT = 7531;
+	//Message types sent between the coordinator and workers
+	public static final byte REPORT = 1;
+	public static final byte MIGRANTS = 2;
+	public static final byte STOP = 3;
+	public static final byte SPLIT = 4;
+
+	private final ServerSocket server;
+	private final int target;
+	private final DataSet data;
+	private final PopulationEvaluator evaluator;
+	//Connected workers in ring order
+	private final List<Connection> workers = new ArrayList<Connection>();
+	private final List<ExpressionTree> bestSet = new ArrayList<ExpressionTree>();
+	private ExpressionTree bestTree;
+	private int nextId = 1;
+	private boolean stopped = false;
+
+	/**
+	 * A connection to one worker
+	 */
+	private class Connection implements Runnable {
+		private final int id;
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		public Connection(int id, Socket socket) throws IOException{
+			this.id = id;
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		/**
+		 * Reads reports from the worker until it disconnects
+		 */
+		@Override
+		public void run(){
+			try{
+				while(true){
+					byte type = in.readByte();
+					if(type != REPORT){
+						throw new IOException("Unexpected message " + type);
+					}
+					int generation = in.readInt();
+					ExpressionTree best = ExpressionTree.read(in);
+					List<ExpressionTree> found = ExpressionTree.readList(in);
+					List<ExpressionTree> migrants = ExpressionTree.readList(in);
+					//Scored before taking the coordinator's lock so workers are not held up by each other
+					List<ExpressionTree> scored = new ArrayList<ExpressionTree>(found);
+					scored.add(best);
+					evaluator.evaluate(scored, data, false);
+					report(this, generation, best, found, migrants);
+				}
+			}
+			catch(IOException err){
+				disconnect(this, err);
+			}
+		}
+
+		/**
+		 * Sends a message holding trees to the worker
+		 * @param type the type of the message
+		 * @param trees the trees to send
+		 * @throws IOException if the message cannot be sent
+		 */
+		public synchronized void send(byte type, List<ExpressionTree> trees) throws IOException{
+			out.writeByte(type);
+			ExpressionTree.writeList(out, trees);
+			out.flush();
+		}
+
+		/**
+		 * Sends the split of the data set to the worker
+		 * @param split whether each row is in the training set
+		 * @throws IOException if the message cannot be sent
+		 */
+		public synchronized void sendSplit(boolean[] split) throws IOException{
+			out.writeByte(SPLIT);
+			DataSet.writeSplit(out, split);
+			out.flush();
+		}
+
+		/**
+		 * Tells the worker to stop
+		 */
+		public synchronized void stop(){
+			try{
+				out.writeByte(STOP);
+				out.flush();
+			}
+			catch(IOException err){
+				//The worker is already gone
+			}
+			close();
+		}
+
+		public void close(){
+			try{
+				socket.close();
+			}
+			catch(IOException err){
+				//Nothing left to release
+			}
+		}
+	}
+
+	/**
+	 * Constructs a coordinator listening for workers
+	 * @param port the port to listen on
+	 * @param numBestKept the number of trees below the cut off the workers must find together
+	 * @param data the data set whose split is sent to the workers and which reported trees are scored on
+	 * @param evaluator the evaluator scoring reported trees
+	 * @throws IOException if the port cannot be opened
+	 */
+	public Coordinator(int port, int numBestKept, DataSet data, PopulationEvaluator evaluator) throws IOException{
+		this.server = new ServerSocket(port);
+		this.target = numBestKept;
+		this.data = data;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Accepts workers and passes trees between them until enough trees have been found or
+	 * every worker has disconnected
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void run() throws InterruptedException{
+		Thread acceptor = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				accept();
+			}
+		}, "coordinator-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		List<Connection> remaining;
+		synchronized(this){
+			while(!stopped && (nextId == 1 || !workers.isEmpty())){
+				wait();
+			}
+			stopped = true;
+			remaining = new ArrayList<Connection>(workers);
+			workers.clear();
+		}
+		try{
+			server.close();
+		}
+		catch(IOException err){
+			//No more workers can connect either way
+		}
+		for(Connection worker : remaining){
+			worker.stop();
+		}
+	}
+
+	private void accept(){
+		while(true){
+			Socket socket;
+			try{
+				socket = server.accept();
+			}
+			catch(IOException err){
+				//The server has been closed
+				return;
+			}
+			try{
+				socket.setTcpNoDelay(true);
+				Connection worker;
+				synchronized(this){
+					if(stopped){
+						socket.close();
+						return;
+					}
+					worker = new Connection(nextId++, socket);
+					workers.add(worker);
+				}
+				try{
+					worker.sendSplit(data.getSplit());
+				}
+				catch(IOException err){
+					disconnect(worker, err);
+					continue;
+				}
+				System.out.println("Worker " + worker.id + " connected from " + socket.getRemoteSocketAddress());
+				Thread reader = new Thread(worker, "coordinator-worker-" + worker.id);
+				reader.setDaemon(true);
+				reader.start();
+			}
+			catch(IOException err){
+				System.out.println("Could not accept worker: " + err.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Adds a worker's trees that are below the cut off on the coordinator's training set to
+	 * the best set and passes its migrants on to the next worker
+	 */
+	private synchronized void report(Connection sender, int generation, ExpressionTree best,
+			List<ExpressionTree> found, List<ExpressionTree> migrants){
+		if(stopped){
+			return;
+		}
+		for(ExpressionTree tree : found){
+			if(tree.getFitness() != -1 && tree.getFitness() < ExpressionTreeTester.CUT_OFF){
+				bestSet.add(tree);
+			}
+		}
+		if(best.getFitness() != -1 && (bestTree == null || best.getFitness() < bestTree.getFitness())){
+			bestTree = best;
+		}
+		System.out.println("Worker " + sender.id + " generation " + generation + " best fitness " + best.getFitness()
+				+ ", trees found: " + bestSet.size() + " of " + target);
+		if(bestSet.size() >= target){
+			stopped = true;
+			notifyAll();
+			return;
+		}
+		int index = workers.indexOf(sender);
+		Connection next = workers.get((index + 1) % workers.size());
+		if(next != sender && !migrants.isEmpty()){
+			try{
+				next.send(MIGRANTS, migrants);
+			}
+			catch(IOException err){
+				//The reader of the worker notices the closed socket and drops it
+				next.close();
+			}
+		}
+	}
+
+	private synchronized void disconnect(Connection worker, IOException err){
+		if(workers.remove(worker)){
+			System.out.println("Worker " + worker.id + " disconnected: " + err);
+			worker.close();
+			notifyAll();
+		}
+	}
+
+	/**
+	 * @return the trees below the cut off found by every worker
+	 */
+	public synchronized List<ExpressionTree> getBestSet(){
+		return new ArrayList<ExpressionTree>(bestSet);
+	}
+
+	/**
+	 * @return the best tree found by any worker, or null if no worker has reported
+	 */
+	public synchronized ExpressionTree getBestTree(){
+		return bestTree;
+	}
+
+	/**
+	 * Coordinates workers until they have found NUM_BEST_KEPT trees, then scores the best
+	 * set on the whole data set
+	 * @param args the port to listen on and the seed of the split into training and test rows
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.println("Seed: " + seed);
+		DataSet data = new DataSet(ExpressionTreeTester.FILE_Name, new SplitRandom(seed));
+		PopulationEvaluator evaluator = new PopulationEvaluator(ExpressionTreeTester.THREADS);
+		data.setPool(evaluator.getPool());
+		data.setLinearScaling(ExpressionTreeTester.LINEAR_SCALING);
+		Coordinator coordinator = new Coordinator(port, ExpressionTreeTester.NUM_BEST_KEPT, data, evaluator);
+		System.out.println("Waiting for workers on port " + port + "...");
+		coordinator.run();
+		if(coordinator.getBestTree() == null){
+			System.out.println("No worker reported a tree");
+			evaluator.shutdown();
+			return;
+		}
+		ExpressionTreeTester.printResults(coordinator.getBestSet(), coordinator.getBestTree(), data, evaluator);
+	}
+}
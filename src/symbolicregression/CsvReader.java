@@ -0,0 +1,252 @@
+package symbolicregression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the numeric rows of a CSV file straight into primitive columns. The file is read
+ * through a channel in large blocks and delimiters are found by scanning bytes, so no
+ * string is created for a row unless one of its values needs the slow parsing path.
+ * Rows that do not parse, such as the header, and rows with a different number of values
+ * than the first numeric row are skipped. Empty values at the end of a row are ignored.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class CsvReader {
+	public static final int BUFFER_SIZE = 1 << 20;
+	public static final byte SEPARATOR = ',';
+	//Exact powers of ten that a double holds without rounding
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private double[][] columns;
+	private int rows;
+	//Values of the row being parsed
+	private double[] row = new double[16];
+
+	/**
+	 * Reads a CSV file
+	 * @param fileName the name of the file to read
+	 * @throws IOException if the file cannot be read
+	 */
+	public CsvReader(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try{
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			boolean end = false;
+			while(!end){
+				end = channel.read(buffer) < 0;
+				byte[] bytes = buffer.array();
+				int limit = buffer.position();
+				int start = 0;
+				for(int i = 0; i < limit; i++){
+					if(bytes[i] == '\n'){
+						parseLine(bytes, start, i);
+						start = i + 1;
+					}
+				}
+				if(end){
+					parseLine(bytes, start, limit);
+				}
+				else if(start == 0 && limit == bytes.length){
+					//The line is longer than the buffer
+					buffer = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length * 2));
+					buffer.position(limit);
+				}
+				else{
+					//Move the unfinished line to the start of the buffer
+					System.arraycopy(bytes, start, bytes, 0, limit - start);
+					buffer.position(limit - start);
+				}
+			}
+		}
+		finally{
+			channel.close();
+		}
+		if(columns == null){
+			columns = new double[1][0];
+		}
+	}
+
+	/**
+	 * Returns the columns read from the file. Each column may be longer than the number of rows.
+	 * @return the columns, the last column being the output
+	 */
+	public double[][] getColumns(){
+		return columns;
+	}
+
+	/**
+	 * @return the number of rows read from the file
+	 */
+	public int getRows(){
+		return rows;
+	}
+
+	/**
+	 * Parses one line and appends its values to the columns if it is a valid row
+	 * @param bytes the bytes of the file
+	 * @param start the first byte of the line
+	 * @param end the byte after the line
+	 */
+	private void parseLine(byte[] bytes, int start, int end){
+		int count = parseValues(bytes, start, end, row);
+		if(count > row.length){
+			row = new double[Math.max(count, row.length * 2)];
+			count = parseValues(bytes, start, end, row);
+		}
+		if(count < 0){
+			return;
+		}
+		if(columns == null){
+			columns = new double[count][1024];
+		}
+		if(count != columns.length){
+			return;
+		}
+		if(rows == columns[0].length){
+			for(int i = 0; i < columns.length; i++){
+				columns[i] = Arrays.copyOf(columns[i], rows * 2);
+			}
+		}
+		for(int i = 0; i < count; i++){
+			columns[i][rows] = row[i];
+		}
+		rows++;
+	}
+
+	/**
+	 * Parses the values of one line
+	 * @param bytes the bytes of the file
+	 * @param start the first byte of the line
+	 * @param end the byte after the line
+	 * @param values receives the values of the line
+	 * @return the number of values in the line, which is greater than values.length if they do
+	 * not all fit, or -1 if the line is not a numeric row
+	 */
+	static int parseValues(byte[] bytes, int start, int end, double[] values){
+		if(end > start && bytes[end - 1] == '\r'){
+			end--;
+		}
+		//Ignore empty values at the end of the line
+		int last = end;
+		while(last > start && (bytes[last - 1] == SEPARATOR || isSpace(bytes[last - 1]))){
+			last--;
+		}
+		if(last == start){
+			return -1;
+		}
+		int count = 0;
+		int fieldStart = start;
+		for(int i = start; i <= last; i++){
+			if(i == last || bytes[i] == SEPARATOR){
+				if(count < values.length){
+					try{
+						values[count] = parseDouble(bytes, fieldStart, i);
+					}
+					catch(NumberFormatException err){
+						return -1;
+					}
+				}
+				count++;
+				fieldStart = i + 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Parses a decimal number. Numbers with at most 15 significant digits and a small
+	 * exponent are computed from their digits exactly; all others use Double.parseDouble.
+	 * @param bytes the bytes of the file
+	 * @param start the first byte of the number
+	 * @param end the byte after the number
+	 * @return the value of the number
+	 * @throws NumberFormatException if the bytes are not a number
+	 */
+	public static double parseDouble(byte[] bytes, int start, int end) throws NumberFormatException{
+		int i = start;
+		while(i < end && isSpace(bytes[i])){
+			i++;
+		}
+		while(end > i && isSpace(bytes[end - 1])){
+			end--;
+		}
+		boolean negative = false;
+		if(i < end && (bytes[i] == '-' || bytes[i] == '+')){
+			negative = bytes[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean anyDigits = false;
+		while(i < end && bytes[i] >= '0' && bytes[i] <= '9'){
+			if(mantissa != 0 || bytes[i] != '0'){
+				digits++;
+			}
+			if(digits <= 18){
+				mantissa = mantissa * 10 + (bytes[i] - '0');
+			}
+			else{
+				scale++;
+			}
+			anyDigits = true;
+			i++;
+		}
+		if(i < end && bytes[i] == '.'){
+			i++;
+			while(i < end && bytes[i] >= '0' && bytes[i] <= '9'){
+				if(mantissa != 0 || bytes[i] != '0'){
+					digits++;
+				}
+				if(digits <= 18){
+					mantissa = mantissa * 10 + (bytes[i] - '0');
+					scale--;
+				}
+				anyDigits = true;
+				i++;
+			}
+		}
+		if(anyDigits && i < end && (bytes[i] == 'e' || bytes[i] == 'E')){
+			i++;
+			boolean negativeExponent = false;
+			if(i < end && (bytes[i] == '-' || bytes[i] == '+')){
+				negativeExponent = bytes[i] == '-';
+				i++;
+			}
+			int exponent = 0;
+			boolean exponentDigits = false;
+			while(i < end && bytes[i] >= '0' && bytes[i] <= '9' && exponent < 100000){
+				exponent = exponent * 10 + (bytes[i] - '0');
+				exponentDigits = true;
+				i++;
+			}
+			if(!exponentDigits){
+				return slowParse(bytes, start, end);
+			}
+			scale += negativeExponent ? -exponent : exponent;
+		}
+		if(!anyDigits || i != end || digits > 15 || scale < -22 || scale > 22){
+			return slowParse(bytes, start, end);
+		}
+		double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private static double slowParse(byte[] bytes, int start, int end) throws NumberFormatException{
+		return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+	}
+
+	private static boolean isSpace(byte b){
+		return b == ' ' || b == '\t';
+	}
+}
@@ -0,0 +1,755 @@
+package symbolicregression;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parse CSV Files into a Data Set type for use
+ * as a expression fitness function evaluator 
+ * when using genetic programming for symbolic regress
+ * @author James Ni
+ * @author Chris Lamb
+ *
+ */
+public class DataSet 
+{
+	public final static double PERCENT_TEST = .5; 
+	//Rows in each chunk of a fitness pass, small enough for the chunk's columns to stay in cache
+	//and for a bounded pass to stop soon after the bound is exceeded
+	public final static int CHUNK_SIZE = 1024;
+	//Default number of rows above which a fitness pass scores its chunks in parallel
+	public final static int PARALLEL_ROWS = 1 << 18;
+	//Column of values for each variable, columns[i] holds x(i+1) for every row, or null if
+	//the rows are not held in memory
+	private double[][] columns;
+	//Column of output values, or null if the rows are not held in memory
+	private double[] target;
+	//Columns of a columnar file, the output last, read from the mapping a chunk at a time
+	//instead of being held in memory, or null
+	private DoubleBuffer[] mapped;
+	//Row of the mapped file holding each CHUNK_SIZE-th row of the training set and of the test set
+	private int[] trainingChunks;
+	private int[] testChunks;
+	//Buffer each thread reads a chunk of the mapped rows into, or null if the rows are in memory
+	private ThreadLocal<Chunk> chunks;
+	//Rows [0, trainingSize) are the training set, rows [trainingSize, size) the test set
+	int trainingSize;
+	private int size;
+	//Whether each row of the file is in the training set, or null for a subsample
+	private boolean[] isTraining;
+	//Fitness passes over at least this many rows are split across the pool
+	private int parallelRows = PARALLEL_ROWS;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	//Training set fitness of trees already scored, or null to always score
+	private FitnessCache cache;
+	//Whether fitness is the error of offset + scale * f(x) with the best offset and scale
+	private boolean scaled;
+
+
+	/**
+	 * Data set constructor using a CSV file or a columnar file written by ColumnarFile
+	 * Assumed two columns of data, an input column and
+	 * an output column.
+	 * @param fileName The name of the file to convert into a data set.
+	 */
+	public DataSet(String fileName)
+	{
+		this(fileName, new Random());
+	}
+
+	/**
+	 * Data set constructor using a CSV file or a columnar file written by ColumnarFile
+	 * @param fileName The name of the file to convert into a data set.
+	 * @param random a random number generator deciding which rows are in the training set
+	 */
+	public DataSet(String fileName, Random random)
+	{
+		this(fileName, random, null);
+	}
+
+	/**
+	 * Data set constructor using a CSV file or a columnar file with a known split, such as
+	 * one saved in a checkpoint
+	 * @param fileName The name of the file to convert into a data set.
+	 * @param training whether each row of the file is in the training set
+	 * @throws IllegalArgumentException if the file does not have one row for each entry of training
+	 */
+	public DataSet(String fileName, boolean[] training) throws IllegalArgumentException
+	{
+		this(fileName, null, training);
+	}
+
+	private DataSet(String fileName, Random random, boolean[] training)
+	{
+		//Each column is held in its own primitive array so evaluation needs no hashing or boxing.
+		DoubleBuffer[] values = {DoubleBuffer.allocate(0)};
+		int rows = 0;
+		try{
+			if(ColumnarFile.isColumnarFile(fileName)){
+				//Columns stay in the mapped file, so processes reading it share the page cache
+				ColumnarFile file = new ColumnarFile(fileName);
+				mapped = file.getColumns();
+				values = mapped;
+				rows = file.getRows();
+			}
+			else{
+				CsvReader reader = new CsvReader(fileName);
+				double[][] columns = reader.getColumns();
+				values = new DoubleBuffer[columns.length];
+				for(int i = 0; i < columns.length; i++){
+					values[i] = DoubleBuffer.wrap(columns[i]);
+				}
+				rows = reader.getRows();
+			}
+		} 
+		catch(IOException err)
+		{
+			err.printStackTrace();
+		}
+		if(training == null){
+			training = new boolean[rows];
+			for(int row = 0; row < rows; row++){
+				training[row] = random.nextDouble() < PERCENT_TEST;
+			}
+		}
+		else if(training.length != rows){
+			throw new IllegalArgumentException("The split has " + training.length + " rows but the file has " + rows);
+		}
+		if(mapped != null){
+			index(rows, training);
+		}
+		else{
+			split(values, rows, training);
+		}
+	}
+
+	/**
+	 * Constructs a data set whose training set is a selection of the training rows of
+	 * another data set and whose test set is empty
+	 * @param data the data set to select rows from
+	 * @param rows the training rows to keep, in increasing order
+	 */
+	private DataSet(DataSet data, int[] rows){
+		columns = new double[data.getNumberOfVariables()][rows.length];
+		target = new double[rows.length];
+		if(data.mapped != null){
+			//The training rows are found in order among the rows of the file
+			int next = 0;
+			int training = -1;
+			for(int row = 0; next < rows.length; row++){
+				if(!data.isTraining[row] || ++training != rows[next]){
+					continue;
+				}
+				for(int j = 0; j < columns.length; j++){
+					columns[j][next] = data.mapped[j].get(row);
+				}
+				target[next++] = data.mapped[columns.length].get(row);
+			}
+		}
+		else{
+			for(int i = 0; i < rows.length; i++){
+				for(int j = 0; j < columns.length; j++){
+					columns[j][i] = data.columns[j][rows[i]];
+				}
+				target[i] = data.target[rows[i]];
+			}
+		}
+		trainingSize = rows.length;
+		size = rows.length;
+		parallelRows = data.parallelRows;
+		pool = data.pool;
+		scaled = data.scaled;
+	}
+
+	/**
+	 * Constructs a data set whose rows are all in the training set
+	 * @param columns the column of values for each variable
+	 * @param target the output of each row
+	 * @param settings the data set whose parallel rows, pool and scaling mode are used, or null
+	 * for the defaults
+	 */
+	DataSet(double[][] columns, double[] target, DataSet settings){
+		this.columns = columns;
+		this.target = target;
+		trainingSize = target.length;
+		size = target.length;
+		if(settings != null){
+			parallelRows = settings.parallelRows;
+			pool = settings.pool;
+			scaled = settings.scaled;
+		}
+	}
+
+	/**
+	 * Constructs a data set whose rows are not held in memory, for subclasses that read them
+	 * from elsewhere and override the methods reading them
+	 */
+	protected DataSet(){
+	}
+
+	/**
+	 * Returns a data set holding its rows in memory whose training set is a random subsample
+	 * of this training set, for scoring on fewer rows and for callers that read the columns
+	 * directly. The subsample has no fitness cache, since its fitness values are only
+	 * estimates of the fitness on the whole training set.
+	 * @param size the number of rows in the subsample
+	 * @param random a random number generator
+	 * @return the subsample of the smaller of size and the training set size, or this data set
+	 * if its rows are held in memory and size is at least the training set size
+	 */
+	public DataSet subsample(int size, Random random){
+		if(size >= trainingSize){
+			if(isInMemory()){
+				return this;
+			}
+			size = trainingSize;
+		}
+		//Floyd's algorithm picks size distinct rows in a single pass
+		boolean[] chosen = new boolean[trainingSize];
+		for(int j = trainingSize - size; j < trainingSize; j++){
+			int row = random.nextInt(j + 1);
+			chosen[chosen[row] ? j : row] = true;
+		}
+		int[] rows = new int[size];
+		int next = 0;
+		for(int row = 0; row < trainingSize; row++){
+			if(chosen[row]){
+				rows[next++] = row;
+			}
+		}
+		return new DataSet(this, rows);
+	}
+
+	/**
+	 * Stores the rows so that the training and test sets are each a contiguous range of the columns
+	 * @param values the columns read from the file, the last column being the output
+	 * @param rows the number of rows in the columns
+	 * @param isTraining whether each row is in the training set
+	 */
+	private void split(DoubleBuffer[] values, int rows, boolean[] isTraining){
+		this.isTraining = isTraining;
+		size = rows;
+		for(int row = 0; row < rows; row++){
+			if(isTraining[row]){
+				trainingSize++;
+			}
+		}
+		columns = new double[values.length - 1][rows];
+		target = new double[rows];
+		int nextTraining = 0;
+		int nextTest = trainingSize;
+		for(int row = 0; row < rows; row++){
+			int index = isTraining[row] ? nextTraining++ : nextTest++;
+			for(int i = 0; i < columns.length; i++){
+				columns[i][index] = values[i].get(row);
+			}
+			target[index] = values[values.length - 1].get(row);
+		}
+	}
+
+	/**
+	 * Finds the row of the mapped file where each chunk of the training set and of the test
+	 * set starts, so that a chunk can be read from the mapping without holding the rows
+	 * @param rows the number of rows in the file
+	 * @param isTraining whether each row is in the training set
+	 */
+	private void index(int rows, boolean[] isTraining){
+		this.isTraining = isTraining;
+		size = rows;
+		for(int row = 0; row < rows; row++){
+			if(isTraining[row]){
+				trainingSize++;
+			}
+		}
+		trainingChunks = new int[(trainingSize + CHUNK_SIZE - 1) / CHUNK_SIZE];
+		testChunks = new int[(rows - trainingSize + CHUNK_SIZE - 1) / CHUNK_SIZE];
+		int training = 0;
+		int test = 0;
+		for(int row = 0; row < rows; row++){
+			if(isTraining[row]){
+				if(training++ % CHUNK_SIZE == 0){
+					trainingChunks[(training - 1) / CHUNK_SIZE] = row;
+				}
+			}
+			else if(test++ % CHUNK_SIZE == 0){
+				testChunks[(test - 1) / CHUNK_SIZE] = row;
+			}
+		}
+		chunks = new ThreadLocal<Chunk>(){
+			@Override
+			protected Chunk initialValue(){
+				return new Chunk();
+			}
+		};
+	}
+
+	/**
+	 * Returns the column index of a variable
+	 * @param name the name of the variable, x1 being the first column
+	 * @return the column index of the variable or -1 if the name is not of the form x1, x2, ...
+	 */
+	public static int variableIndex(String name){
+		if(name.length() < 2 || name.charAt(0) != 'x'){
+			return -1;
+		}
+		try{
+			return Integer.parseInt(name.substring(1)) - 1;
+		}
+		catch(NumberFormatException err){
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the y value for a given row
+	 * @param row the index of the row
+	 * @return the y value
+	 * @throws UnsupportedOperationException if the rows are not held in memory
+	 */
+	public double fx(int row) throws UnsupportedOperationException{
+		return getTarget()[row];
+	}
+
+	/**
+	 * @return true if the rows are held in memory, so that getColumns and getTarget can be called
+	 */
+	public boolean isInMemory(){
+		return columns != null;
+	}
+
+	/**
+	 * @return the column of values for each variable, columns[i] holding x(i+1) for the
+	 * training rows followed by the test rows
+	 * @throws UnsupportedOperationException if the rows are not held in memory, in which case
+	 * subsample gives rows that are
+	 */
+	public double[][] getColumns() throws UnsupportedOperationException{
+		if(columns == null){
+			throw new UnsupportedOperationException("The rows of the data set are not held in memory");
+		}
+		return columns;
+	}
+
+	/**
+	 * @return the output of the training rows followed by the test rows
+	 * @throws UnsupportedOperationException if the rows are not held in memory, in which case
+	 * subsample gives rows that are
+	 */
+	public double[] getTarget() throws UnsupportedOperationException{
+		if(target == null){
+			throw new UnsupportedOperationException("The rows of the data set are not held in memory");
+		}
+		return target;
+	}
+
+	/**
+	 * @return the number of input variables in each row
+	 */
+	public int getNumberOfVariables(){
+		return mapped != null ? mapped.length - 1 : columns.length;
+	}
+
+	/**
+	 * @return whether each row of the file is in the training set, or null if this data set is a subsample
+	 */
+	public boolean[] getSplit(){
+		return isTraining;
+	}
+
+	/**
+	 * Writes a split with one bit for each row, as read by readSplit
+	 * @param out the output to write to
+	 * @param split whether each row is in the training set
+	 * @throws IOException if the output cannot be written
+	 */
+	public static void writeSplit(DataOutput out, boolean[] split) throws IOException{
+		out.writeInt(split.length);
+		for(int row = 0; row < split.length; row += 8){
+			int packed = 0;
+			for(int bit = 0; bit < 8 && row + bit < split.length; bit++){
+				if(split[row + bit]){
+					packed |= 1 << bit;
+				}
+			}
+			out.writeByte(packed);
+		}
+	}
+
+	/**
+	 * Reads the bits of a split written by writeSplit once its number of rows has been read
+	 * @param in the input to read from
+	 * @param rows the number of rows in the split
+	 * @return whether each row is in the training set
+	 * @throws IOException if the input cannot be read
+	 */
+	public static boolean[] readSplit(DataInput in, int rows) throws IOException{
+		boolean[] split = new boolean[rows];
+		for(int row = 0; row < rows; row += 8){
+			int packed = in.readUnsignedByte();
+			for(int bit = 0; bit < 8 && row + bit < rows; bit++){
+				split[row + bit] = (packed & (1 << bit)) != 0;
+			}
+		}
+		return split;
+	}
+
+	/**
+	 * @return the number of rows in the training set
+	 */
+	public int getTrainingSize(){
+		return trainingSize;
+	}
+
+	/**
+	 * @return the number of rows in the test set
+	 */
+	public int getTestSize(){
+		return size - trainingSize;
+	}
+
+	/**
+	 * Sets the number of rows above which a fitness pass scores its chunks in parallel
+	 * @param parallelRows the smallest number of rows scored in parallel
+	 */
+	public void setParallelRows(int parallelRows){
+		this.parallelRows = parallelRows;
+	}
+
+	/**
+	 * Sets the pool scoring chunks in parallel. A fitness pass that is already running on a
+	 * pool's worker forks its chunks into that pool instead, so scoring a population in
+	 * parallel does not start more threads than the population's pool.
+	 * @param pool the pool scoring chunks in parallel
+	 */
+	public void setPool(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the pool scoring chunks in parallel
+	 */
+	public ForkJoinPool getPool(){
+		return pool;
+	}
+
+	/**
+	 * Sets whether trees are scored with linear scaling. Scoring a tree on the training set then
+	 * gives it the offset and scale that make its value fit the training set best, and its
+	 * fitness is the error of the scaled value. Subsamples taken afterwards use the same mode.
+	 * @param scaled true to score with linear scaling
+	 */
+	public void setLinearScaling(boolean scaled){
+		this.scaled = scaled;
+	}
+
+	/**
+	 * @return true if trees are scored with linear scaling
+	 */
+	public boolean isLinearScaling(){
+		return scaled;
+	}
+
+	/**
+	 * Sets the cache consulted before scoring a tree on the training set
+	 * @param cache the fitness cache or null to always score
+	 */
+	public void setCache(FitnessCache cache){
+		this.cache = cache;
+	}
+
+	/**
+	 * @return the cache consulted before scoring a tree on the training set, or null if there is none
+	 */
+	public FitnessCache getCache(){
+		return cache;
+	}
+
+	/**
+	 * Fitness function to complete for checking the
+	 * fitness of a linear regression. With linear scaling the expression is first given the
+	 * offset and scale that fit the training set best, which the test set is then scored with.
+	 * @param expression Expression to evaluate how well it fits the data.
+	 * @return The fitness of the inputed expression tree relative to the data set.
+	 */
+	public double fitness(ExpressionTree expression, boolean testing){
+		if(!testing && cache != null){
+			double[] cached = cache.get(expression.getStructuralHash());
+			if(cached != null){
+				if(scaled){
+					expression.setScaling(cached[FitnessCache.SCALE], cached[FitnessCache.OFFSET]);
+				}
+				return cached[FitnessCache.FITNESS];
+			}
+		}
+		double fitness = 0;
+		if(trainingSize > 0){
+			fitness += squaredError(expression, 0, trainingSize) / trainingSize;
+		}
+		if(testing && getTestSize() > 0){
+			fitness += (scaled ? scaledSquaredError(expression, trainingSize, size)
+					: squaredError(expression, trainingSize, size)) / getTestSize();
+		}
+		expression.countEvaluations(testing ? size : trainingSize);
+		//fitness+=expression.getSize();
+		//return fitness;
+		fitness = Math.sqrt(fitness);
+		if(!testing && cache != null){
+			cache.put(expression.getStructuralHash(), fitness, expression.getScale(), expression.getOffset());
+		}
+		return fitness;
+	}
+
+	/**
+	 * Calculates the training set fitness of an expression unless the fitness is proven to be
+	 * above a bound. The squared error is accumulated a chunk at a time and scoring stops
+	 * once the partial sum is enough to put the fitness above the bound. A fitness that is
+	 * fully calculated is the same as the one returned by fitness(expression, false).
+	 * With linear scaling the error of the rows scored so far, with the offset and scale that
+	 * fit those rows best, is a lower bound of the error over the whole training set.
+	 * @param expression the expression to evaluate
+	 * @param bound the fitness the expression must not exceed
+	 * @return the fitness of the expression, or a lower bound of its fitness greater than
+	 * bound if scoring stopped early
+	 */
+	public double fitness(ExpressionTree expression, double bound){
+		if(cache != null){
+			double[] cached = cache.get(expression.getStructuralHash());
+			//Above the bound the same lower bound must be returned whether or not another thread has cached the fitness
+			if(cached != null && cached[FitnessCache.FITNESS] <= bound){
+				if(scaled){
+					expression.setScaling(cached[FitnessCache.SCALE], cached[FitnessCache.OFFSET]);
+				}
+				return cached[FitnessCache.FITNESS];
+			}
+		}
+		CompiledExpression compiled = expression.getCompiledExpression();
+		int chunks = (trainingSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		//Number of chunks scored between comparisons with the bound
+		int step = trainingSize < parallelRows ? 1 : pool.getParallelism();
+		double[] partials = new double[chunks * (scaled ? LinearScaling.SIZE : 1)];
+		double[] moments = new double[LinearScaling.SIZE];
+		double limit = bound * bound * trainingSize;
+		double sum = 0;
+		for(int first = 0; first < chunks; first += step){
+			int last = Math.min(first + step, chunks);
+			squaredErrors(compiled, 0, trainingSize, partials, first, last);
+			for(int chunk = first; chunk < last; chunk++){
+				if(scaled){
+					LinearScaling.merge(moments, 0, partials, chunk * LinearScaling.SIZE);
+				}
+				else{
+					sum += partials[chunk];
+				}
+			}
+			if(scaled){
+				sum = LinearScaling.squaredError(moments, 0);
+			}
+			if(sum > limit && last < chunks){
+				expression.countEvaluations(last * CHUNK_SIZE);
+				//Not cached since it is only a lower bound
+				return Math.sqrt(sum / trainingSize);
+			}
+		}
+		expression.countEvaluations(trainingSize);
+		if(scaled){
+			expression.setScaling(LinearScaling.scale(moments, 0), LinearScaling.offset(moments, 0));
+		}
+		double fitness = trainingSize > 0 ? Math.sqrt(sum / trainingSize) : 0;
+		if(cache != null){
+			cache.put(expression.getStructuralHash(), fitness, expression.getScale(), expression.getOffset());
+		}
+		return fitness;
+	}
+
+	/**
+	 * Sums the squared error of an expression over a range of rows. The rows are scored
+	 * in chunks and the chunks' sums are added in order, so the result is the same whether
+	 * or not the chunks are scored in parallel. With linear scaling the expression is given
+	 * the offset and scale that fit the rows best and the error is found with them.
+	 * @param expression the expression to evaluate
+	 * @param from the first row, inclusive
+	 * @param to the last row, exclusive
+	 * @return the sum of the squared errors
+	 */
+	private double squaredError(ExpressionTree expression, int from, int to){
+		CompiledExpression compiled = expression.getCompiledExpression();
+		int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		double[] partials = new double[chunks * (scaled ? LinearScaling.SIZE : 1)];
+		squaredErrors(compiled, from, to, partials, 0, chunks);
+		if(scaled){
+			double[] moments = new double[LinearScaling.SIZE];
+			for(int chunk = 0; chunk < chunks; chunk++){
+				LinearScaling.merge(moments, 0, partials, chunk * LinearScaling.SIZE);
+			}
+			expression.setScaling(LinearScaling.scale(moments, 0), LinearScaling.offset(moments, 0));
+			return LinearScaling.squaredError(moments, 0);
+		}
+		double sum = 0;
+		for(double partial : partials){
+			sum += partial;
+		}
+		return sum;
+	}
+
+	/**
+	 * Sums the squared error of an expression over a range of rows using the offset and
+	 * scale the expression already has
+	 * @param expression the expression to evaluate
+	 * @param from the first row, inclusive
+	 * @param to the last row, exclusive
+	 * @return the sum of the squared errors
+	 */
+	private double scaledSquaredError(ExpressionTree expression, int from, int to){
+		CompiledExpression compiled = expression.getCompiledExpression();
+		double scale = expression.getScale();
+		double offset = expression.getOffset();
+		double[] output = new double[Math.min(CHUNK_SIZE, to - from)];
+		double sum = 0;
+		for(int first = from; first < to; first += CHUNK_SIZE){
+			int start = first;
+			int end = Math.min(first + CHUNK_SIZE, to);
+			double[][] columns = this.columns;
+			double[] target = this.target;
+			if(mapped != null){
+				Chunk chunk = chunks.get();
+				chunk.read(start, end);
+				columns = chunk.columns;
+				target = chunk.target;
+				end -= start;
+				start = 0;
+			}
+			compiled.evaluate(columns, start, end, output);
+			for(int row = start; row < end; row++){
+				double error = target[row] - (offset + scale * output[row - start]);
+				sum += error * error;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Scores a range of the chunks of a range of rows, in parallel if the rows are many
+	 * @param compiled the expression to evaluate
+	 * @param from the first row, inclusive
+	 * @param to the last row, exclusive
+	 * @param partials receives the sum of the squared errors of each chunk, or with linear
+	 * scaling the moments of each chunk
+	 * @param firstChunk the first chunk to score, inclusive
+	 * @param lastChunk the last chunk to score, exclusive
+	 */
+	private void squaredErrors(CompiledExpression compiled, int from, int to, double[] partials, int firstChunk, int lastChunk){
+		if(to - from < parallelRows || lastChunk - firstChunk < 2){
+			for(int chunk = firstChunk; chunk < lastChunk; chunk++){
+				scoreChunk(compiled, from, to, partials, chunk);
+			}
+			return;
+		}
+		ChunkTask task = new ChunkTask(compiled, from, to, partials, firstChunk, lastChunk);
+		if(ForkJoinTask.inForkJoinPool()){
+			task.invoke();
+		}
+		else{
+			pool.invoke(task);
+		}
+	}
+
+	/**
+	 * Scores one chunk of a range of rows
+	 * @param compiled the expression to evaluate
+	 * @param from the first row of the range, inclusive
+	 * @param to the last row of the range, exclusive
+	 * @param partials receives the sum of the squared errors of the chunk, or with linear
+	 * scaling the moments of the chunk
+	 * @param chunk the chunk to score
+	 */
+	private void scoreChunk(CompiledExpression compiled, int from, int to, double[] partials, int chunk){
+		int start = from + chunk * CHUNK_SIZE;
+		int end = Math.min(start + CHUNK_SIZE, to);
+		double[][] columns = this.columns;
+		double[] target = this.target;
+		if(mapped != null){
+			Chunk rows = chunks.get();
+			rows.read(start, end);
+			columns = rows.columns;
+			target = rows.target;
+			end -= start;
+			start = 0;
+		}
+		if(scaled){
+			compiled.moments(columns, target, start, end, partials, chunk * LinearScaling.SIZE);
+		}
+		else{
+			partials[chunk] = compiled.squaredError(columns, target, start, end);
+		}
+	}
+
+	/**
+	 * Buffer a thread reads one chunk of the rows of a mapped file into
+	 */
+	private class Chunk {
+		final double[][] columns = new double[mapped.length - 1][CHUNK_SIZE];
+		final double[] target = new double[CHUNK_SIZE];
+
+		/**
+		 * Reads a chunk of rows from the mapping
+		 * @param start the first row, CHUNK_SIZE times a whole number of rows after the start
+		 * of the training set or of the test set
+		 * @param end the last row, exclusive, at most CHUNK_SIZE rows after start
+		 */
+		void read(int start, int end){
+			boolean training = start < trainingSize;
+			int row = training ? trainingChunks[start / CHUNK_SIZE] : testChunks[(start - trainingSize) / CHUNK_SIZE];
+			for(int i = 0; i < end - start; row++){
+				if(isTraining[row] != training){
+					continue;
+				}
+				for(int j = 0; j < columns.length; j++){
+					columns[j][i] = mapped[j].get(row);
+				}
+				target[i++] = mapped[columns.length].get(row);
+			}
+		}
+	}
+
+	/**
+	 * Task summing the squared error of each chunk in a range of chunks, split in half
+	 * until the range is a single chunk
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final CompiledExpression compiled;
+		private final int from;
+		private final int to;
+		private final double[] partials;
+		private final int firstChunk;
+		private final int lastChunk;
+
+		public ChunkTask(CompiledExpression compiled, int from, int to, double[] partials, int firstChunk, int lastChunk){
+			this.compiled = compiled;
+			this.from = from;
+			this.to = to;
+			this.partials = partials;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+		}
+
+		@Override
+		protected void compute(){
+			if(lastChunk - firstChunk == 1){
+				scoreChunk(compiled, from, to, partials, firstChunk);
+				return;
+			}
+			int middle = (firstChunk + lastChunk) >>> 1;
+			invokeAll(new ChunkTask(compiled, from, to, partials, firstChunk, middle),
+					new ChunkTask(compiled, from, to, partials, middle, lastChunk));
+		}
+	}
+
+
+}
@@ -0,0 +1,1369 @@
+package symbolicregression;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Stores an expression in a tree structure with operators as internal nodes
+ * variables and coefficients as leaf nodes
+ * 
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class ExpressionTree implements Comparable<ExpressionTree>{
+	private ExpressionTreeNode root;
+	//Flat form of the tree, used instead of root while the tree is compact
+	private PrefixTree prefix;
+	//Interned form of the tree, used instead of root and prefix while the tree is shared
+	private SharedTree shared;
+	private double fitness;
+	//Value of the tree is offset + scale times the value of its nodes, set by linear scaling
+	private double scale = 1;
+	private double offset = 0;
+	//Compiled forms of the tree, discarded whenever the tree changes
+	private Program program;
+	private CompiledExpression compiled;
+	//Program reading the cached values of unchanged subtrees while the tree is scored, or null
+	private NodeOutputCache.Incremental incremental;
+	//Number of generations the tree has survived unchanged
+	private int age;
+	//Whether the fitness is only a lower bound found when scoring stopped at a rejection bound
+	private boolean rejected;
+	//Structural hash of the tree, valid while hashed is true
+	private long hash;
+	private boolean hashed;
+	//Nodes evaluated times rows scored since the count was last taken
+	private long nodeEvaluations;
+	public static final double EPSILON = 1E-5;
+	//Largest number of trees accepted in one list by readList
+	public static final int MAX_TREES = 1 << 22;
+
+	/**
+	 * How the nodes of a tree are stored
+	 */
+	public enum Storage {
+		//Linked nodes changed in place
+		NODES,
+		//Flat arrays in prefix order, see PrefixTree
+		FLAT,
+		//Immutable nodes shared with every tree holding the same subtrees, see SharedTree
+		SHARED
+	}
+	/**
+	 * Binary expression tree nodes store node type, value, parent node, left child, and right child 
+	 */
+	public class ExpressionTreeNode {
+		private Type type;
+		private Object value;
+		private ExpressionTreeNode leftChild;
+		private ExpressionTreeNode rightChild;
+		private ExpressionTreeNode parent;
+		private int size;
+		private int variable;
+
+		/**
+		 * Constructs an expression tree node
+		 * @param type the type of node operator, variable, or coefficient
+		 * @param value the data
+		 * @throws IllegalArgumentException if the type of the value does not match the type specified
+		 */
+		public ExpressionTreeNode(Type type, Object value) throws IllegalArgumentException{
+			this.type = type;
+			if(type == Type.OPERATOR){
+				if(!(value instanceof Operator)){
+					throw new IllegalArgumentException("value does not match type");
+				}
+				this.value = (Operator) value;
+			}
+			else if(type == Type.VARIABLE){
+				if(!(value instanceof String)){
+					throw new IllegalArgumentException("value does not match type");
+				}
+				this.value = (String) value;
+				this.variable = DataSet.variableIndex((String) value);
+			}
+			else if(type == Type.COEFFICIENT){
+				if(!(value instanceof Double)){
+					throw new IllegalArgumentException("value does not match type");
+				}
+				this.value = (Double) value;
+			}
+			else{
+				throw new IllegalArgumentException("Invalid type");
+			}
+			this.leftChild = null;
+			this.rightChild = null;
+			this.parent = null;
+			this.size = 1;
+		}
+
+		/**
+		 * Prints the expression represented by the node and its children
+		 */
+		public void print(){
+			if(leftChild != null){
+				if(parent!=null)
+					System.out.print("(");
+				leftChild.print();
+			}
+			System.out.print(value.toString() + "");
+			if(rightChild != null){
+				rightChild.print();
+				if(parent!=null)
+					System.out.print(")");
+			}
+		}
+
+		/**
+		 * Returns the value of the expression
+		 * @param variables a map of variable names to values
+		 * @return the value of the expression represented by the node and its children
+		 * @throws IllegalArgumentException if a variable is not defined in the map
+		 */
+		public double evaluate(HashMap<String, Double> variables) throws IllegalArgumentException{
+			if(type == Type.COEFFICIENT){
+				return (double) value;
+			}
+			else if(type == Type.VARIABLE){
+				if(!variables.containsKey(value)){
+					throw new IllegalArgumentException("Undefined variable");
+				}
+				return variables.get(value);
+			}
+			else{
+				double left = leftChild.evaluate(variables);
+				double right = rightChild.evaluate(variables);
+				if(value == Operator.ADD){
+					return left + right;
+				}
+				else if(value == Operator.SUBTRACT){
+					return left - right;
+				}
+				else if(value == Operator.MULTIPLY){
+					return left * right;
+				}
+				else if(value == Operator.DIVIDE){
+					if(right == 0.0 ){
+						//Dividing by 0 returns 1000000.0 right now we need to figure out what we want to do with this.
+						return 1000000000 ;
+					}
+					return left / right;
+				}
+				return 0.0;
+			}
+		}
+
+		/**
+		 * Returns the value of the expression for one row of a data set
+		 * @param columns the column of values for each variable, columns[i] holding x(i+1)
+		 * @param row the row to evaluate
+		 * @return the value of the expression represented by the node and its children
+		 * @throws IllegalArgumentException if a variable has no column
+		 */
+		public double evaluate(double[][] columns, int row) throws IllegalArgumentException{
+			if(type == Type.COEFFICIENT){
+				return (double) value;
+			}
+			else if(type == Type.VARIABLE){
+				if(variable < 0 || variable >= columns.length){
+					throw new IllegalArgumentException("Undefined variable");
+				}
+				return columns[variable][row];
+			}
+			else{
+				double left = leftChild.evaluate(columns, row);
+				double right = rightChild.evaluate(columns, row);
+				if(value == Operator.ADD){
+					return left + right;
+				}
+				else if(value == Operator.SUBTRACT){
+					return left - right;
+				}
+				else if(value == Operator.MULTIPLY){
+					return left * right;
+				}
+				else if(value == Operator.DIVIDE){
+					if(right == 0.0 ){
+						return 1000000000 ;
+					}
+					return left / right;
+				}
+				return 0.0;
+			}
+		}
+		
+		private boolean evaluateOperator(ExpressionTreeNode operatorNode, 
+				ExpressionTreeNode child1, ExpressionTreeNode child2){
+			if(operatorNode.value == Operator.ADD){
+				this.value = (double)child1.value + (double)child2.value;
+			}
+			else if(operatorNode.value == Operator.SUBTRACT){
+				this.value = (double)child1.value - (double)child2.value;
+			}
+			else if(operatorNode.value == Operator.MULTIPLY){
+
+				this.value = (double)child1.value * (double)child2.value;
+			}
+			//Operation is division
+			else{
+				if(child1 != null && child2 != null){
+					this.size = 1 + leftChild.size + rightChild.size;
+				}
+				if((double)child2.value == 0.0){
+					return true;
+				}
+				this.value = (double)child1.value / (double)child2.value;
+			}
+			return false;
+		}
+		
+		/**
+		 * Simplifies the tree rooted at node
+		 * @return true if tree contains an illegal operation false otherwise
+		 */
+		public boolean simplify(){
+			boolean zeroDivision = false;
+			if(leftChild != null)
+				zeroDivision = zeroDivision || leftChild.simplify();
+			if(rightChild != null)
+				zeroDivision = zeroDivision || rightChild.simplify();
+			if(this.parent!=null && type==Type.OPERATOR){
+				//If both children are coefficients replace node with coefficient result of operation
+				if(leftChild.type==Type.COEFFICIENT && rightChild.type==Type.COEFFICIENT){
+					zeroDivision = zeroDivision || this.evaluateOperator(this, this.leftChild, this.rightChild);
+					if(zeroDivision){
+						return zeroDivision;
+					}
+					this.leftChild = null;
+					this.rightChild = null;
+					this.type = Type.COEFFICIENT;
+					this.size = 1;
+
+				}
+				//Replaces variable divided by itself with 1
+				else if(leftChild.type==Type.VARIABLE && rightChild.type==Type.VARIABLE && this.value==Operator.DIVIDE
+						&& leftChild.value.equals(rightChild.value)){	
+					this.value = 1.0;
+					this.leftChild = null;
+					this.rightChild = null;
+					this.type = Type.COEFFICIENT;
+					this.size = 1;
+				}
+				//Replaces variable subtracted from itself with 0
+				else if((leftChild.type==Type.VARIABLE && rightChild.type==Type.VARIABLE && this.value==Operator.SUBTRACT
+						&& leftChild.value.equals(rightChild.value)) 
+						|| (leftChild.type==Type.COEFFICIENT && (double)leftChild.value ==  0.0 
+						&& (this.value == Operator.MULTIPLY || this.value == Operator.DIVIDE)) 
+						|| (rightChild.type==Type.COEFFICIENT 
+						&& (double)rightChild.value == 0.0 && this.value == Operator.MULTIPLY )){	
+					this.value = 0.0;
+					this.leftChild = null;
+					this.rightChild = null;
+					this.type = Type.COEFFICIENT;
+					this.size = 1;
+				}
+				//Simplifies nodes that add 0 or subtract 0 from a value
+				else if((leftChild.type==Type.COEFFICIENT && (double)leftChild.value == 0.0 && this.value == Operator.ADD) 
+						|| (rightChild.type==Type.COEFFICIENT && (double)rightChild.value == 0.0 
+						&& (this.value == Operator.SUBTRACT || this.value == Operator.ADD))){
+
+					if(leftChild.type == Type.COEFFICIENT && (double)leftChild.value == 0.0 && this.value == Operator.ADD){
+						if(this.parent.leftChild == this){
+							this.parent.size = this.parent.size + this.rightChild.size - this.size;
+							this.parent.leftChild = this.rightChild;
+						}
+						else{
+							this.parent.size = this.parent.size + this.rightChild.size - this.size;
+							this.parent.rightChild = this.rightChild;
+						}
+						this.rightChild.parent = this.parent;
+					}
+					else{
+						if(this.parent.leftChild == this){
+							this.parent.size = this.parent.size + this.leftChild.size - this.size;
+							this.parent.leftChild = this.leftChild;
+						}
+						else{
+							this.parent.size = this.parent.size + this.leftChild.size - this.size;
+							this.parent.rightChild = this.leftChild;
+						}
+						this.leftChild.parent = this.parent;
+					} 
+				}
+
+			}
+			//Rounds coefficients to 5 decimal places
+			if(this.type == Type.COEFFICIENT){
+				if((double)this.value-EPSILON < Math.floor((double)this.value)){
+					this.value = Math.floor((double)this.value);
+				}
+				else if((double)this.value+EPSILON > Math.ceil((double)this.value)){
+					this.value = Math.ceil((double)this.value);
+				}
+			}
+			if(leftChild != null && rightChild != null){
+				this.size = 1 + leftChild.size + rightChild.size;
+			}
+			return zeroDivision;
+		}
+
+		/**
+		 * Writes the instructions computing the node's value in postfix order
+		 * @param opcodes the instructions of the program
+		 * @param operands the coefficient or variable column index of each push instruction
+		 * @param pc the position of the first instruction for the node
+		 * @return the position after the last instruction for the node
+		 */
+		private int compile(int[] opcodes, double[] operands, int pc){
+			if(type == Type.COEFFICIENT){
+				opcodes[pc] = Program.PUSH_COEFFICIENT;
+				operands[pc] = (double) value;
+				return pc + 1;
+			}
+			if(type == Type.VARIABLE){
+				opcodes[pc] = Program.PUSH_VARIABLE;
+				operands[pc] = variable;
+				return pc + 1;
+			}
+			pc = leftChild.compile(opcodes, operands, pc);
+			pc = rightChild.compile(opcodes, operands, pc);
+			if(value == Operator.ADD){
+				opcodes[pc] = Program.ADD;
+			}
+			else if(value == Operator.SUBTRACT){
+				opcodes[pc] = Program.SUBTRACT;
+			}
+			else if(value == Operator.MULTIPLY){
+				opcodes[pc] = Program.MULTIPLY;
+			}
+			else{
+				opcodes[pc] = Program.DIVIDE;
+			}
+			return pc + 1;
+		}
+
+		/**
+		 * Writes the node and its children into arrays in prefix order
+		 * @param types the type of each node
+		 * @param values the operator ordinal, variable column index or coefficient of each node
+		 * @param sizes the size of the subtree rooted at each node
+		 * @param position the position of the node
+		 * @return the position after the node's subtree
+		 */
+		private int flatten(byte[] types, double[] values, int[] sizes, int position){
+			types[position] = (byte) type.ordinal();
+			sizes[position] = size;
+			if(type == Type.OPERATOR){
+				values[position] = ((Operator) value).ordinal();
+				int next = leftChild.flatten(types, values, sizes, position + 1);
+				return rightChild.flatten(types, values, sizes, next);
+			}
+			values[position] = type == Type.VARIABLE ? variable : (double) value;
+			return position + 1;
+		}
+
+		/**
+		 * @return true if every variable in the tree rooted at the node has a column index
+		 */
+		private boolean hasColumns(){
+			if(type == Type.VARIABLE){
+				return variable >= 0;
+			}
+			return (leftChild == null || leftChild.hasColumns()) && (rightChild == null || rightChild.hasColumns());
+		}
+
+		/**
+		 * @return the number of nodes in the tree rooted at the node
+		 */
+		public int getSize(){
+			return this.size;
+		}
+
+		/**
+		 * Adds the coefficients of the tree rooted at the node to a list from left to right
+		 * @param coefficients the list to add to
+		 */
+		public void getCoefficients(List<Double> coefficients){
+			if(type == Type.COEFFICIENT){
+				coefficients.add((Double) value);
+			}
+			if(leftChild != null){
+				leftChild.getCoefficients(coefficients);
+			}
+			if(rightChild != null){
+				rightChild.getCoefficients(coefficients);
+			}
+		}
+
+		/**
+		 * Replaces the coefficients of the tree rooted at the node from left to right
+		 * @param coefficients the new coefficients
+		 * @param next the index of the node's first coefficient
+		 * @return the index of the first coefficient after the tree rooted at the node
+		 */
+		public int setCoefficients(double[] coefficients, int next){
+			if(type == Type.COEFFICIENT){
+				value = coefficients[next++];
+			}
+			if(leftChild != null){
+				next = leftChild.setCoefficients(coefficients, next);
+			}
+			if(rightChild != null){
+				next = rightChild.setCoefficients(coefficients, next);
+			}
+			return next;
+		}
+
+		/**
+		 * @return a deep copy of the node and its children
+		 */
+		public ExpressionTreeNode copy(){
+			//Recursively creates deep copy of node
+			ExpressionTreeNode copy = new ExpressionTreeNode(type, value);
+			if(leftChild != null){
+				copy.leftChild = leftChild.copy();
+				copy.leftChild.parent = copy;
+			}
+
+			if(rightChild != null){
+				copy.rightChild = rightChild.copy();
+				copy.rightChild.parent = copy;
+			}
+			copy.size = this.size;
+			return copy;
+		}
+
+		/**
+		 * @param random a random number generator
+		 * @return a random node in the tree rooted at the node
+		 */
+		public ExpressionTreeNode getRandomNode(Random random){
+			//Get the size of the tree generate a random position less than size return node
+			//in that position of in order traversal
+			int size = this.getSize();
+			int position = random.nextInt(size-1);	//Can't pick root
+			return getNthNode(position);
+		}
+
+		/**
+		 * @param n the position of the node to be returned
+		 * @return the nth node in an in-order traversal of the tree rooted at the node
+		 */
+		private ExpressionTreeNode getNthNode(int n){
+			int leftSize = 0;
+			if(leftChild != null){
+				leftSize = leftChild.getSize();
+			}
+			//If size of left subtree equals n node is nth element 
+			if(leftSize == n){
+				return this;
+			}
+			//If left subtree is greater than n nth element is in left subtree
+			else if(leftSize > n){
+				return leftChild.getNthNode(n);
+			}
+			//If left subtree is less than n nth element is n - leftSize - 1st element in right subtree
+			else{
+				if(rightChild==null){
+					System.out.println("yo");
+				}
+				return rightChild.getNthNode(n - leftSize - 1);
+			}
+		}
+
+		/**
+		 * If the nodes type is coefficient changes the value of the node by an integer between
+		 * minMutation and maxMutation with the probability of mutationRate
+		 * @param mutationRate the probablility to mutate the node
+		 * @param minMutation the smallest amount to mutate the node by
+		 * @param maxMutation the greatest amout to mutate the node by
+		 * @param random a random number generator
+		 */
+		public void mutate(double mutationRate, int minMutation, int maxMutation, Random random){
+			//Only mutate coefficients
+			if(type == Type.COEFFICIENT){
+				if(random.nextDouble() < mutationRate){
+					//For real coefficients
+					value = (double) value + (double) (random.nextDouble() * (maxMutation - minMutation + 1) + minMutation);
+					//For integer coefficients
+					//value = (double) value + (double) (random.nextInt(maxMutation - minMutation + 1) + minMutation);
+				}
+			}
+			if(leftChild != null){
+				leftChild.mutate(mutationRate, minMutation, maxMutation, random);
+			}
+			if(rightChild != null){
+				rightChild.mutate(mutationRate, minMutation, maxMutation, random);
+			}
+		}
+
+
+		/**
+		 * Subtree mutation done by generating a random new tree. and attaching it in the place of the current node
+		 * @param random a random number generator
+		 */
+		public void mutate(int depth, int numberOfVariables, Random random){
+
+			//Generate a random new tree to replace the current node
+			ExpressionTree mutation = ExpressionTreeTester.generateRandomTree(depth, numberOfVariables, random);
+			mutation.simplify();
+			ExpressionTreeNode fixSizes = this.parent;
+			//Find the current node and then replace it 
+			if( this.parent.leftChild!=null && this.parent.leftChild == this){
+
+
+				this.parent.leftChild = mutation.root;
+
+
+				mutation.root.parent = this.parent;
+
+				while(fixSizes.parent!=null){
+					fixSizes.size = 1 + fixSizes.leftChild.size + fixSizes.rightChild.size;
+					fixSizes = fixSizes.parent;
+				}
+				fixSizes.size = 1 + fixSizes.leftChild.size + fixSizes.rightChild.size;
+
+			}
+			else{
+				this.parent.rightChild = mutation.root;
+				mutation.root.parent = this.parent;
+				while(fixSizes.parent!=null){
+					fixSizes.size = 1 + fixSizes.leftChild.size + fixSizes.rightChild.size;
+					fixSizes = fixSizes.parent;
+				}
+				fixSizes.size = 1 + fixSizes.leftChild.size + fixSizes.rightChild.size;
+			}
+		}
+	}
+
+
+	/**
+	 * Construcs an expression tree
+	 * @param operators a list of operators to add to the tree
+	 * @param variables a list of variables to add to the tree
+	 * @param coefficients a list of coefficients to add to the tree
+	 * @param random a random number generator used to place the terminal nodes
+	 */
+	public ExpressionTree(List<Operator> operators, List<String> variables, List<Double> coefficients, Random random){
+		//Queue to store operator nodes
+		Queue<ExpressionTreeNode> q1 = new LinkedList<ExpressionTreeNode>();
+		//Queue to store terminal nodes
+		Queue<ExpressionTreeNode> q2 = new LinkedList<ExpressionTreeNode>();
+		for(Operator op : operators){
+			q1.add(new ExpressionTreeNode(Type.OPERATOR, op));
+		}
+		for(String var : variables){
+			q2.add(new ExpressionTreeNode(Type.VARIABLE, var));
+		}
+		for(Double coef: coefficients){
+			q2.add(new ExpressionTreeNode(Type.COEFFICIENT, coef));
+		}
+		//Shuffle q2 so that the variables are not always to the left of the first generation of trees
+		Collections.shuffle((List<?>) q2, random);
+		ExpressionTreeNode current = null;
+		//While there are still operators remaining
+		while(!q1.isEmpty()){
+			//Poll an operator from q1
+			current = q1.poll();
+			//Set its left and right children terminal nodes from q2
+			current.leftChild = q2.poll();
+			current.leftChild.parent = current;
+			current.rightChild = q2.poll();
+			current.rightChild.parent = current;
+			//Update size of current
+			current.size = 1 + current.rightChild.size + current.leftChild.size;
+			//Add the newly created terminal node back to q2
+			q2.add(current);
+		}
+		this.root = current;
+
+	}
+
+	/**
+	 * Constructs an expression tree
+	 * @param root the expression tree node that roots the tree
+	 * @param fitness the fitness of the tree
+	 */
+	public ExpressionTree(ExpressionTreeNode root, double fitness){
+		this.root = root;
+		this.fitness = fitness;
+	}
+
+	/**
+	 * Constructs a compact expression tree
+	 * @param prefix the flat form of the tree
+	 * @param fitness the fitness of the tree
+	 */
+	public ExpressionTree(PrefixTree prefix, double fitness){
+		this.prefix = prefix;
+		this.fitness = fitness;
+	}
+
+	/**
+	 * Constructs a shared expression tree
+	 * @param shared the interned form of the tree
+	 * @param fitness the fitness of the tree
+	 */
+	public ExpressionTree(SharedTree shared, double fitness){
+		this.shared = shared;
+		this.fitness = fitness;
+	}
+
+	/**
+	 * Returns the root of the tree. A compact or shared tree is turned back into nodes.
+	 * @return the root of the tree
+	 */
+	public ExpressionTreeNode getRoot(){
+		if(shared != null){
+			root = inflate(shared.toPrefixTree());
+			shared = null;
+		}
+		if(prefix != null){
+			root = inflate(prefix);
+			prefix = null;
+		}
+		return this.root;
+	}
+
+	/**
+	 * Changes how the tree stores its nodes. Trees with variables not named x1, x2, ... are
+	 * always stored as nodes.
+	 * @param storage the new storage
+	 */
+	public void setStorage(Storage storage){
+		if(storage == Storage.NODES){
+			getRoot();
+		}
+		else if(storage == Storage.FLAT){
+			compact();
+		}
+		else{
+			share();
+		}
+	}
+
+	/**
+	 * @return how the tree stores its nodes
+	 */
+	public Storage getStorage(){
+		if(shared != null){
+			return Storage.SHARED;
+		}
+		return prefix != null ? Storage.FLAT : Storage.NODES;
+	}
+
+	/**
+	 * Stores the tree in flat arrays instead of nodes. Crossover, mutation and
+	 * simplification of a compact tree work on the arrays.
+	 * Trees with variables not named x1, x2, ... are left as nodes.
+	 */
+	public void compact(){
+		if(shared != null){
+			prefix = shared.toPrefixTree();
+			shared = null;
+		}
+		else if(prefix == null && root.hasColumns()){
+			prefix = flatten(root);
+			root = null;
+		}
+	}
+
+	/**
+	 * Stores the tree as interned nodes shared with every other shared tree holding the same
+	 * subtrees. Crossover, mutation and simplification of a shared tree build new nodes only
+	 * where the tree changes.
+	 * Trees with variables not named x1, x2, ... are left as nodes.
+	 */
+	public void share(){
+		if(shared != null){
+			return;
+		}
+		if(prefix != null){
+			shared = SharedTree.of(prefix);
+			prefix = null;
+		}
+		else if(root.hasColumns()){
+			shared = SharedTree.of(flatten(root));
+			root = null;
+		}
+	}
+
+	/**
+	 * @return true if the tree is stored in flat arrays
+	 */
+	public boolean isCompact(){
+		return prefix != null;
+	}
+
+	/**
+	 * @return the flat form of the tree, computed from the nodes if the tree is not compact
+	 */
+	public PrefixTree getPrefixTree(){
+		if(prefix != null){
+			return prefix;
+		}
+		if(shared != null){
+			return shared.toPrefixTree();
+		}
+		return flatten(root);
+	}
+
+	private PrefixTree flatten(ExpressionTreeNode node){
+		int size = node.getSize();
+		byte[] types = new byte[size];
+		double[] values = new double[size];
+		int[] sizes = new int[size];
+		node.flatten(types, values, sizes, 0);
+		return new PrefixTree(types, values, sizes);
+	}
+
+	/**
+	 * @return the nodes of the tree, built from the flat form without storing them if the tree is compact
+	 */
+	private ExpressionTreeNode nodes(){
+		if(prefix != null || shared != null){
+			return inflate(getPrefixTree());
+		}
+		return root;
+	}
+
+	/**
+	 * Builds the nodes of a flat tree
+	 * @param tree the flat tree
+	 * @return the root of the nodes
+	 */
+	private ExpressionTreeNode inflate(PrefixTree tree){
+		ExpressionTreeNode[] path = new ExpressionTreeNode[tree.size()];
+		int[] ends = new int[tree.size()];
+		int depth = 0;
+		ExpressionTreeNode top = null;
+		for(int i = 0; i < tree.size(); i++){
+			ExpressionTreeNode node;
+			if(tree.getType(i) == PrefixTree.OPERATOR){
+				node = new ExpressionTreeNode(Type.OPERATOR, tree.getOperator(i));
+			}
+			else if(tree.getType(i) == PrefixTree.VARIABLE){
+				node = new ExpressionTreeNode(Type.VARIABLE, "x" + ((int) tree.getValue(i) + 1));
+			}
+			else{
+				node = new ExpressionTreeNode(Type.COEFFICIENT, tree.getValue(i));
+			}
+			node.size = tree.getSubtreeSize(i);
+			//Pop the operators whose subtrees are complete
+			while(depth > 0 && ends[depth - 1] <= i){
+				depth--;
+			}
+			if(depth == 0){
+				top = node;
+			}
+			else{
+				ExpressionTreeNode parent = path[depth - 1];
+				node.parent = parent;
+				if(parent.leftChild == null){
+					parent.leftChild = node;
+				}
+				else{
+					parent.rightChild = node;
+				}
+			}
+			if(node.type == Type.OPERATOR){
+				path[depth] = node;
+				ends[depth] = i + node.size;
+				depth++;
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Writes the fitness, the scaling and the flat form of the tree
+	 * @param out the output to write to
+	 * @throws IOException if the output cannot be written
+	 */
+	public void write(DataOutput out) throws IOException{
+		out.writeDouble(fitness);
+		out.writeDouble(scale);
+		out.writeDouble(offset);
+		getPrefixTree().write(out);
+	}
+
+	/**
+	 * Reads a tree written by write
+	 * @param in the input to read from
+	 * @return a compact tree
+	 * @throws IOException if the input cannot be read or does not hold a valid tree
+	 */
+	public static ExpressionTree read(DataInput in) throws IOException{
+		double fitness = in.readDouble();
+		double scale = in.readDouble();
+		double offset = in.readDouble();
+		ExpressionTree tree = new ExpressionTree(PrefixTree.read(in), fitness);
+		tree.setScaling(scale, offset);
+		return tree;
+	}
+
+	/**
+	 * Writes the number of trees followed by each tree
+	 * @param out the output to write to
+	 * @param trees the trees to write
+	 * @throws IOException if the output cannot be written
+	 */
+	public static void writeList(DataOutput out, List<ExpressionTree> trees) throws IOException{
+		out.writeInt(trees.size());
+		for(ExpressionTree tree : trees){
+			tree.write(out);
+		}
+	}
+
+	/**
+	 * Reads trees written by writeList
+	 * @param in the input to read from
+	 * @return the trees
+	 * @throws IOException if the input cannot be read or does not hold valid trees
+	 */
+	public static List<ExpressionTree> readList(DataInput in) throws IOException{
+		int count = in.readInt();
+		if(count < 0 || count > MAX_TREES){
+			throw new IOException("Invalid tree count " + count);
+		}
+		List<ExpressionTree> trees = new ArrayList<ExpressionTree>(Math.min(count, 1024));
+		for(int i = 0; i < count; i++){
+			trees.add(read(in));
+		}
+		return trees;
+	}
+
+	/**
+	 * @return the fitness of the tree
+	 */
+	public double getFitness(){
+		return this.fitness;
+	}
+
+	/**
+	 * @return the fitness of the tree
+	 */
+	public void setFitness(double fitness){
+		this.fitness = fitness;
+		this.rejected = false;
+	}
+
+	/**
+	 * @return the factor the value of the nodes is multiplied by
+	 */
+	public double getScale(){
+		return scale;
+	}
+
+	/**
+	 * @return the value added to the scaled value of the nodes
+	 */
+	public double getOffset(){
+		return offset;
+	}
+
+	/**
+	 * Sets the linear scaling of the tree, whose value becomes offset + scale times the value
+	 * of its nodes
+	 * @param scale the factor the value of the nodes is multiplied by
+	 * @param offset the value added to the scaled value
+	 */
+	public void setScaling(double scale, double offset){
+		this.scale = scale;
+		this.offset = offset;
+	}
+
+	/**
+	 * @return true if the value of the tree is not simply the value of its nodes
+	 */
+	public boolean isScaled(){
+		return scale != 1 || offset != 0;
+	}
+
+	/**
+	 * Marks the tree as unable to beat a rejection bound
+	 * @param lowerBound a lower bound of the fitness of the tree, above the rejection bound
+	 */
+	public void reject(double lowerBound){
+		this.fitness = lowerBound;
+		this.rejected = true;
+	}
+
+	/**
+	 * @return true if the tree was rejected, in which case its fitness is only a lower bound
+	 */
+	public boolean isRejected(){
+		return rejected;
+	}
+
+	/**
+	 * Adds to the number of node evaluations spent scoring the tree
+	 * @param rows the number of rows the tree was evaluated on
+	 */
+	void countEvaluations(int rows){
+		nodeEvaluations += (long) rows * (incremental != null ? incremental.getSize() : getSize());
+	}
+
+	/**
+	 * Returns the number of node evaluations spent scoring the tree since the last call
+	 * @return the number of nodes evaluated times the number of rows they were evaluated on
+	 */
+	public long takeNodeEvaluations(){
+		long count = nodeEvaluations;
+		nodeEvaluations = 0;
+		return count;
+	}
+
+
+	/**
+	 * 
+	 * @param variables a map of variables to values
+	 * @return the value of the expression
+	 */
+	public double evaluate(HashMap<String, Double> variables){
+		return offset + scale * nodes().evaluate(variables);
+	}
+
+	/**
+	 * @param columns the column of values for each variable, columns[i] holding x(i+1)
+	 * @param row the row to evaluate
+	 * @return the value of the expression for the row
+	 */
+	public double evaluate(double[][] columns, int row){
+		if(root != null){
+			return offset + scale * root.evaluate(columns, row);
+		}
+		//Flat and shared trees run their program rather than building nodes for every row
+		return offset + scale * getProgram().evaluate(columns, row);
+	}
+
+	/**
+	 * Returns the tree compiled to a postfix program. The program is kept until the tree
+	 * is changed by its mutate, simplify or crossover methods.
+	 * @return the program computing the value of the expression
+	 */
+	public Program getProgram(){
+		if(program == null && prefix != null){
+			program = prefix.compile();
+		}
+		if(program == null && shared != null){
+			program = shared.compile();
+		}
+		if(program == null){
+			int[] opcodes = new int[root.getSize()];
+			double[] operands = new double[opcodes.length];
+			root.compile(opcodes, operands, 0);
+			program = new Program(opcodes, operands);
+		}
+		return program;
+	}
+
+	/**
+	 * Generates a JVM class for the tree so that later evaluations run as compiled code
+	 */
+	public void compile(){
+		if(compiled == null){
+			compiled = BytecodeCompiler.compile(getProgram());
+		}
+	}
+
+	/**
+	 * @return the program reading cached subtree values while the tree is scored with a
+	 * NodeOutputCache, otherwise the generated class for the tree if it has been compiled and
+	 * its program if not
+	 */
+	public CompiledExpression getCompiledExpression(){
+		if(incremental != null){
+			return incremental;
+		}
+		if(compiled != null){
+			return compiled;
+		}
+		return getProgram();
+	}
+
+	/**
+	 * Sets the program used in place of the tree's own while it is scored with a NodeOutputCache
+	 * @param incremental the program reading cached subtree values, or null to use the tree's own
+	 */
+	void setIncrementalExpression(NodeOutputCache.Incremental incremental){
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Returns a hash of the tree's structure. Trees with the same operators and variables in
+	 * the same places and exactly the same coefficients have the same hash. Coefficients are
+	 * not rounded, since trees whose coefficients differ slightly have different fitness and
+	 * scaling, and a cache shared by threads would otherwise keep whichever was scored first.
+	 * @return the structural hash of the tree
+	 */
+	public long getStructuralHash(){
+		if(!hashed){
+			int[] opcodes = getProgram().getOpcodes();
+			double[] operands = getProgram().getOperands();
+			long h = opcodes.length;
+			for(int pc = 0; pc < opcodes.length; pc++){
+				h = h * 31 + opcodes[pc];
+				if(opcodes[pc] == Program.PUSH_COEFFICIENT){
+					//Adding 0.0 turns -0.0 into 0.0
+					h = h * 31 + Double.doubleToLongBits(operands[pc] + 0.0);
+				}
+				else if(opcodes[pc] == Program.PUSH_VARIABLE){
+					h = h * 31 + (long) operands[pc];
+				}
+				//Mix the bits so that instructions in different orders give different hashes
+				h ^= h >>> 33;
+				h *= 0xff51afd7ed558ccdL;
+				h ^= h >>> 33;
+			}
+			hash = h;
+			hashed = true;
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the number of generations the tree has survived unchanged
+	 */
+	public int getAge(){
+		return this.age;
+	}
+
+	/**
+	 * Restores the age of a tree read from a checkpoint
+	 * @param age the number of generations the tree has survived unchanged
+	 */
+	public void setAge(int age){
+		this.age = age;
+	}
+
+	/**
+	 * Records that the tree survived into another generation
+	 */
+	public void incrementAge(){
+		this.age++;
+	}
+
+	/**
+	 * Discards the compiled forms of the tree after it has changed
+	 */
+	private void invalidate(){
+		program = null;
+		compiled = null;
+		incremental = null;
+		age = 0;
+		hashed = false;
+	}
+
+	/**
+	 * Simplifies the trees
+	 */
+	public void simplify(){
+		invalidate();
+		if(shared != null){
+			SharedTree simplified = shared.simplify();
+			if(simplified == null){
+				this.fitness = -1;
+			}
+			else{
+				shared = simplified;
+			}
+			return;
+		}
+		if(prefix != null){
+			PrefixTree simplified = prefix.simplify();
+			if(simplified == null){
+				this.fitness = -1;
+			}
+			else{
+				prefix = simplified;
+			}
+			return;
+		}
+		if(this.root.hasColumns()){
+			PrefixTree flat = flatten(root);
+			PrefixTree simplified = TermRewriter.simplify(flat);
+			if(simplified == null){
+				this.fitness = -1;
+			}
+			else if(simplified != flat){
+				root = inflate(simplified);
+			}
+			return;
+		}
+		//Trees with named variables keep the local rules of their nodes
+		if(this.root.simplify()){
+			this.fitness = -1;
+		}
+	}
+
+	/**
+	 * Prints the expression represented by the tree
+	 */
+	public void print(){
+		if(isScaled()){
+			System.out.print(offset + " + " + scale + " * (");
+			nodes().print();
+			System.out.println(")");
+			return;
+		}
+		nodes().print();
+		System.out.println();
+	}
+
+	/**
+	 * 
+	 * @return the number of nodes in the tree
+	 */
+	public int getSize(){
+		if(shared != null){
+			return shared.size();
+		}
+		if(prefix != null){
+			return prefix.size();
+		}
+		return this.root.getSize();
+	}
+
+	/**
+	 * Returns a deep copy of the tree
+	 */
+	public ExpressionTree clone(){
+		ExpressionTree copy;
+		if(shared != null){
+			//Shared nodes are never changed so the copy can use them too
+			copy = new ExpressionTree(shared, fitness);
+		}
+		else if(prefix != null){
+			//Prefix trees are never changed so the copy can share it
+			copy = new ExpressionTree(prefix, fitness);
+		}
+		else if(root == null){
+			return null;
+		}
+		else{
+			//Deep copies root node and creates new tree rooted at copy
+			copy = new ExpressionTree(root.copy(), fitness);
+		}
+		copy.rejected = rejected;
+		copy.program = program;
+		copy.compiled = compiled;
+		copy.scale = scale;
+		copy.offset = offset;
+		copy.hash = hash;
+		copy.hashed = hashed;
+		return copy;
+	}
+
+	/**
+	 * Combines two trees into two new trees and returns a list containing the new trees
+	 * @param other the tree to be combined with the current tree
+	 * @param data the data set used to calculate the fitness of the new trees
+	 * @param random a random number generator
+	 * @return a list containing the two new trees
+	 */
+	public ExpressionTree[] crossover(ExpressionTree other, DataSet data, Random random){
+		ExpressionTree[] output = crossover(other, random);
+		//Update fitness of offspring
+		for(ExpressionTree offspring : output){
+			if(offspring.fitness != -1){
+				offspring.fitness = data.fitness(offspring, false);
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * Combines two trees into two new simplified trees without calculating their fitness. 
+	 * The fitness of a new tree is -1 if it contains an illegal operation.
+	 * @param other the tree to be combined with the current tree
+	 * @param random a random number generator
+	 * @return a list containing the two new trees
+	 */
+	public ExpressionTree[] crossover(ExpressionTree other, Random random){
+		ExpressionTree[] output = new ExpressionTree[2];
+		//Clone the two expression trees to be crossed over
+		ExpressionTree offspringOne = this.clone();
+		ExpressionTree offspringTwo = other.clone();
+		offspringOne.invalidate();
+		offspringTwo.invalidate();
+		if(offspringOne.shared != null || offspringTwo.shared != null){
+			//A shared parent makes both offspring shared
+			offspringOne.share();
+			offspringTwo.share();
+		}
+		if(offspringOne.shared != null && offspringTwo.shared != null){
+			//Swap subtrees, building new nodes only on the paths from the crossover points to the roots
+			SharedTree one = offspringOne.shared;
+			SharedTree two = offspringTwo.shared;
+			int positionOne = one.getRandomPosition(random);
+			int positionTwo = two.getRandomPosition(random);
+			offspringOne.shared = one.replace(positionOne, two.subtree(positionTwo));
+			offspringTwo.shared = two.replace(positionTwo, one.subtree(positionOne));
+			offspringOne.simplify();
+			offspringTwo.simplify();
+			output[0] = offspringOne;
+			output[1] = offspringTwo;
+			return output;
+		}
+		if(offspringOne.prefix != null && offspringTwo.prefix != null){
+			//Swap slices of the flat trees
+			int positionOne = prefix.getRandomPosition(random);
+			int positionTwo = other.prefix.getRandomPosition(random);
+			offspringOne.prefix = prefix.replace(positionOne, other.prefix.subtree(positionTwo));
+			offspringTwo.prefix = other.prefix.replace(positionTwo, prefix.subtree(positionOne));
+			offspringOne.simplify();
+			offspringTwo.simplify();
+			output[0] = offspringOne;
+			output[1] = offspringTwo;
+			return output;
+		}
+		offspringOne.getRoot();
+		offspringTwo.getRoot();
+		//Select random nodes to be crossover points. Nodes cannot be roots of the trees
+		ExpressionTreeNode crossoverPointOne = offspringOne.root.getRandomNode(random);
+		while(crossoverPointOne.parent == null){
+			crossoverPointOne = offspringOne.root.getRandomNode(random);
+		}
+		ExpressionTreeNode crossoverPointTwo = offspringTwo.root.getRandomNode(random);
+		while(crossoverPointTwo.parent == null){
+			crossoverPointTwo = offspringTwo.root.getRandomNode(random);
+		}
+		//Swap crossover point one and crossover point two
+		if(crossoverPointOne.parent.leftChild == crossoverPointOne){
+			crossoverPointOne.parent.leftChild = crossoverPointTwo;
+		}
+		else{
+			crossoverPointOne.parent.rightChild = crossoverPointTwo;
+		}
+
+		if(crossoverPointTwo.parent.leftChild == crossoverPointTwo){
+			crossoverPointTwo.parent.leftChild = crossoverPointOne;
+		}
+		else{
+			crossoverPointTwo.parent.rightChild = crossoverPointOne;
+		}
+		//Swap parent pointers for crossover point one and crossover point two
+		ExpressionTreeNode temp = crossoverPointOne.parent;
+		crossoverPointOne.parent = crossoverPointTwo.parent;
+		crossoverPointTwo.parent = temp;
+
+		//Update size
+		while(crossoverPointOne.parent != null){
+			crossoverPointOne = crossoverPointOne.parent;
+			crossoverPointOne.size = 1 + crossoverPointOne.leftChild.size + crossoverPointOne.rightChild.size;
+		}
+		while(crossoverPointTwo.parent != null){
+			crossoverPointTwo = crossoverPointTwo.parent;
+			crossoverPointTwo.size = 1 + crossoverPointTwo.leftChild.size + crossoverPointTwo.rightChild.size;
+		}
+
+		//Simplify offspring
+		offspringOne.simplify();
+		offspringTwo.simplify();
+
+		output[0] = offspringOne;
+		output[1] = offspringTwo;
+		return output;
+	}
+
+	/**
+	 * Changes each of the coefficients of the tree by a value between minMutation and
+	 * maxMutation with a probability of mutationRate
+	 * @param mutationRate the probability to mutate each coefficient
+	 * @param minMutation the smallest mutation amount
+	 * @param maxMutation the largest mutation amount
+	 * @param random a random number generator
+	 */
+	public void mutate(double mutationRate, int minMutation, int maxMutation, Random random){
+		invalidate();
+		if(shared != null){
+			shared = shared.mutate(mutationRate, minMutation, maxMutation, random);
+			return;
+		}
+		if(prefix != null){
+			prefix = prefix.mutate(mutationRate, minMutation, maxMutation, random);
+			return;
+		}
+		root.mutate(mutationRate, minMutation, maxMutation, random);
+	}
+	
+	/**
+	 * Returns the coefficients of the tree in the order they appear from left to right, which
+	 * is also the order of the coefficient pushes of the tree's program
+	 * @return the coefficients
+	 */
+	public double[] getCoefficients(){
+		if(shared != null){
+			return shared.getCoefficients();
+		}
+		if(prefix != null){
+			return prefix.getCoefficients();
+		}
+		List<Double> coefficients = new ArrayList<Double>();
+		root.getCoefficients(coefficients);
+		double[] values = new double[coefficients.size()];
+		for(int i = 0; i < values.length; i++){
+			values[i] = coefficients.get(i);
+		}
+		return values;
+	}
+
+	/**
+	 * Replaces the coefficients of the tree, keeping its shape. The fitness is not changed
+	 * and must be calculated again.
+	 * @param coefficients the new coefficients in the order returned by getCoefficients
+	 */
+	public void setCoefficients(double[] coefficients){
+		invalidate();
+		if(shared != null){
+			shared = shared.setCoefficients(coefficients);
+			return;
+		}
+		if(prefix != null){
+			prefix = prefix.setCoefficients(coefficients);
+			return;
+		}
+		root.setCoefficients(coefficients, 0);
+	}
+
+	/**
+	 * Replaces a random subtree with a new randomly generated tree
+	 * @param depth the depth of the new tree
+	 * @param numberOfVariables the number of variables the new tree may use
+	 * @param random a random number generator
+	 */
+	public void mutate(int depth, int numberOfVariables, Random random){
+		invalidate();
+		if(shared != null){
+			ExpressionTree mutation = ExpressionTreeTester.generateRandomTree(depth, numberOfVariables, random);
+			mutation.simplify();
+			shared = shared.replace(shared.getRandomPosition(random), SharedTree.of(mutation.getPrefixTree()));
+			return;
+		}
+		if(prefix != null){
+			ExpressionTree mutation = ExpressionTreeTester.generateRandomTree(depth, numberOfVariables, random);
+			mutation.simplify();
+			prefix = prefix.replace(prefix.getRandomPosition(random), mutation.getPrefixTree());
+			return;
+		}
+		ExpressionTreeNode mutationPoint = root.getRandomNode(random);
+		while(mutationPoint.parent == null){
+			mutationPoint = root.getRandomNode(random);
+		}
+		mutationPoint.mutate(depth, numberOfVariables, random);
+	}
+
+	/**
+	 * Compares two trees 
+	 * @param the expression tree to compare to the current tree
+	 * @return Positive value if the fitness of the current tree is greater than other and negative value
+	 * if the fitness of other tree is greater than or equal to the fitness of the current tree
+	 */
+	@Override
+	public int compareTo(ExpressionTree other) {
+		return Double.compare(this.fitness, other.fitness);
+	}
+}
@@ -0,0 +1,333 @@
+package symbolicregression;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Performs symbolic regression on data set indicated
+ * 
+ * @author Chris Lamb
+ * @author James Ni
+ *
+ */
+
+public class ExpressionTreeTester {
+
+	public static final Operator[] OPERATORS = {Operator.ADD, Operator.SUBTRACT, Operator.MULTIPLY, Operator.DIVIDE};
+	public static final double SURVIVAL_RATE = 0.001;
+	public static final int INITIAL_DEPTH = 3;
+	public static final double MUTATION_RATE = .05;
+	public static final int NUM_BEST_KEPT = 20;
+
+	public static final int SIZE_LIMIT = 60;
+	public static final double CUT_OFF = 0.1;
+	public static final int POPULATION_SIZE = 1000;
+	//Number of threads scoring the population
+	public static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	public static final String FILE_Name = "dataset2.csv";
+	//Read FILE_Name a block of rows at a time on every pass instead of loading it, for files larger than
+	//the heap; with SAMPLE_SIZE above 0 offspring are scored on subsamples read into memory instead
+	public static final boolean STREAMING = false;
+	public static final int NUMBER_OF_VARIABLES = 3;
+	public static final int MIN_COEFFICIENT = -1;
+	public static final int MAX_COEFFICIENT = 1;
+	public static final int MIN_MUTATION = -1000;
+	public static final int MAX_MUTATION = 1000;
+	//Generate JVM classes for the best set and for elites rescored on the whole training set once they survive COMPILE_THRESHOLD generations
+	public static final boolean COMPILE_ELITES = false;
+	public static final int COMPILE_THRESHOLD = 3;
+	//How the population stores its trees: NODES as linked nodes, FLAT in arrays of its own for each tree,
+	//SHARED as interned nodes that trees holding the same subtrees share, which uses less memory for
+	//large populations but spends longer breeding since every new node is weakly referenced
+	public static final ExpressionTree.Storage STORAGE = ExpressionTree.Storage.FLAT;
+	//Number of islands evolved on their own threads, 1 for a single population
+	public static final int ISLANDS = 1;
+	//Generations between migrations and number of trees each island sends
+	public static final int MIGRATION_INTERVAL = 10;
+	public static final int MIGRANTS = 5;
+	public static final IslandModel.Topology TOPOLOGY = IslandModel.Topology.RING;
+	//Offspring worse than this fraction of the population stop being scored once that is proven
+	//and keep a lower bound of their fitness; 0 to score every offspring fully
+	public static final double REJECTION_QUANTILE = 0.75;
+	//Training rows offspring are scored on, drawn afresh each generation, 0 to score on the whole
+	//training set; the sample grows by SAMPLE_GROWTH each generation the best tree does not improve
+	public static final int SAMPLE_SIZE = 0;
+	public static final double SAMPLE_GROWTH = 1.5;
+	//How parents are chosen for crossover, the number of trees in a tournament and the number
+	//of training rows used as cases by lexicase selection each generation
+	public static final Selection.Method SELECTION = Selection.Method.ROULETTE;
+	public static final int TOURNAMENT_SIZE = 7;
+	public static final int LEXICASE_CASES = 100;
+	//Seed of the run; a run is repeated exactly by setting this to the seed it printed
+	public static final long SEED = System.nanoTime();
+	//File holding the latest checkpoint and the number of generations between checkpoints, 0 for none
+	public static final String CHECKPOINT_FILE = "evolution.checkpoint";
+	public static final int CHECKPOINT_INTERVAL = 0;
+	//Greatest number of training set fitness values cached by structural hash, 0 to disable the cache
+	public static final int FITNESS_CACHE_SIZE = 100000;
+	//Score each tree as offset + scale * tree with the offset and scale fitting the training set best,
+	//so evolution searches for the shape of the function instead of its magnitude; this changes what
+	//CUT_OFF and the printed fitness measure, so runs score the tree itself by default
+	public static final boolean LINEAR_SCALING = false;
+	//CSV file receiving the metrics of every generation, null for none, such as "metrics.csv", and whether
+	//each generation is also recorded as a Flight Recorder event while a recording is running
+	public static final String METRICS_FILE = null;
+	public static final boolean FLIGHT_RECORDER = false;
+	//Best legal trees whose coefficients are fitted by Levenberg-Marquardt each generation, 0 for none,
+	//the number of steps of each fit and the number of training rows each fit uses
+	public static final int OPTIMIZED_ELITES = 0;
+	public static final int OPTIMIZATION_STEPS = 10;
+	public static final int OPTIMIZATION_ROWS = 1000;
+	//Best legal trees whose node values over the scored rows are kept each generation, so offspring
+	//bred from them only evaluate the nodes that changed, 0 for none, and the greatest number of values kept
+	public static final int CACHED_ELITES = 0;
+	public static final long NODE_CACHE_VALUES = 1 << 22;
+
+	/**
+	 * Generate a random expression tree
+	 * @param depth the depth of the tree
+	 * @param numberOfVariables the number of variables in the expression
+	 * @param random a random number generator
+	 * @param training the data set used to generate the tree's fitness
+	 * @return a random expression tree
+	 */
+	public static ExpressionTree generateRandomTree(int depth, int numberOfVariables, Random random){
+		int numberOfOperators = 1;
+		for(int i = 0; i < depth; i++){
+			numberOfOperators *= 2;
+		}
+		numberOfOperators -= 1;
+
+		List<Operator> ops = new ArrayList<Operator>();
+		for(int i = 0; i < numberOfOperators; i++){
+			ops.add(OPERATORS[random.nextInt(OPERATORS.length)]);
+		}
+		List<String> vars = new ArrayList<String>();
+		for(int i = 1; i <= numberOfVariables; i++){
+			vars.add("x" + i);
+		}
+		List<Double> coefficients = new ArrayList<Double>();
+		for(int i = 0; i < numberOfOperators - numberOfVariables + 1; i++){
+			//For real coefficients
+			coefficients.add((double)(random.nextDouble() * (MAX_COEFFICIENT - MIN_COEFFICIENT + 1) + MIN_COEFFICIENT));
+			//For integer coefficient
+			//coefficients.add((double)(random.nextInt(MAX_COEFFICIENT - MIN_COEFFICIENT + 1) + MIN_COEFFICIENT));
+		}
+		return new ExpressionTree(ops, vars, coefficients, random);
+	}
+
+	/**
+	 * Selects two different expression trees for crossover
+	 * @param trees the population the selection was prepared with
+	 * @param selection the selection, prepared for the current generation
+	 * @param random a random number generator
+	 * @return a list of two expression trees
+	 */
+	public static ExpressionTree[] selectForCrossover(List<ExpressionTree> trees, Selection selection, Random random){
+		ExpressionTree[] output = new ExpressionTree[2];
+		output[0] = selection.select(random);
+		output[1] = selection.select(random);
+		while(output[0] == output[1]){
+			output[1] = trees.get(random.nextInt(trees.size()));
+		}
+		return output;
+	}
+
+	/**
+	 * Checks whether an offspring may join the next generation. Offspring must be legal, smaller than
+	 * the size limit and must not be a copy of either parent unless smaller than it.
+	 * @param offspring the offspring to check
+	 * @param parents the two trees the offspring was bred from
+	 * @return true if the offspring is accepted
+	 */
+	public static boolean isAccepted(ExpressionTree offspring, ExpressionTree[] parents){
+		return offspring.getFitness()>0 && offspring.getSize()<SIZE_LIMIT 
+				&& (offspring.getFitness() != parents[0].getFitness() || offspring.getSize()<parents[0].getSize()) 
+				&& (offspring.getFitness() != parents[1].getFitness() || offspring.getSize()<parents[1].getSize());
+	}
+
+	/**
+	 * Runs symbolic regression on FILE_Name
+	 * @param args "resume" to continue from the checkpoint in CHECKPOINT_FILE
+	 */
+	public static void main(String[] args) {
+		Checkpoint.State state = null;
+		if(args.length > 0 && args[0].equals("resume")){
+			try{
+				state = Checkpoint.read(CHECKPOINT_FILE);
+			}
+			catch(IOException err){
+				System.out.println("Could not resume: " + err.getMessage());
+				return;
+			}
+			System.out.println("Resuming from " + CHECKPOINT_FILE);
+		}
+		System.out.println("Seed: " + SEED);
+		SplitRandom random = new SplitRandom(SEED);
+		DataSet data;
+		if(state != null ? state.getSplit() == null : STREAMING){
+			try{
+				data = new StreamingDataSet(FILE_Name, state != null ? state.getSplitSeed() : random.split().nextLong());
+			}
+			catch(IOException err){
+				System.out.println("Could not read " + FILE_Name + ": " + err.getMessage());
+				return;
+			}
+		}
+		else{
+			data = state == null ? new DataSet(FILE_Name, random.split()) : new DataSet(FILE_Name, state.getSplit());
+		}
+		PopulationEvaluator evaluator = new PopulationEvaluator(THREADS);
+		data.setPool(evaluator.getPool());
+		data.setLinearScaling(LINEAR_SCALING);
+		if(FITNESS_CACHE_SIZE > 0){
+			data.setCache(new FitnessCache(FITNESS_CACHE_SIZE));
+		}
+		Island[] islands = null;
+		if(state != null){
+			try{
+				islands = state.getIslands(data, evaluator);
+			}
+			catch(IOException err){
+				System.out.println("Could not resume: " + err.getMessage());
+				evaluator.shutdown();
+				return;
+			}
+		}
+		Checkpoint checkpoint = CHECKPOINT_INTERVAL > 0 ? new Checkpoint(CHECKPOINT_FILE, data) : null;
+		List<MetricsListener> listeners = new ArrayList<MetricsListener>();
+		MetricsLog log = null;
+		if(METRICS_FILE != null){
+			try{
+				log = new MetricsLog(METRICS_FILE);
+				listeners.add(log);
+			}
+			catch(IOException err){
+				System.out.println("Could not create " + METRICS_FILE + ": " + err.getMessage());
+			}
+		}
+		MetricsListener recorder = FLIGHT_RECORDER ? MetricsListener.flightRecorder() : null;
+		if(recorder != null){
+			listeners.add(recorder);
+		}
+
+		List<ExpressionTree> bestSet;
+		ExpressionTree bestTree;
+
+		if(islands != null ? islands.length > 1 : ISLANDS > 1){
+			System.out.println("Generating initial populations...");
+			IslandModel model;
+			if(islands != null){
+				model = new IslandModel(islands, MIGRATION_INTERVAL, MIGRANTS, TOPOLOGY, state.getRandom());
+			}
+			else{
+				model = new IslandModel(data, evaluator, ISLANDS, POPULATION_SIZE / ISLANDS,
+						MIGRATION_INTERVAL, MIGRANTS, TOPOLOGY, random);
+			}
+			model.setCheckpoint(checkpoint, CHECKPOINT_INTERVAL);
+			for(MetricsListener listener : listeners){
+				model.addMetricsListener(listener);
+			}
+			try{
+				model.run(NUM_BEST_KEPT);
+			}
+			catch(InterruptedException err){
+				Thread.currentThread().interrupt();
+				return;
+			}
+			bestSet = model.getBestSet();
+			bestTree = model.getBestTree();
+		}
+		else{
+			Island island;
+			if(islands != null){
+				island = islands[0];
+			}
+			else{
+				System.out.println("Generating initial population...");
+				island = new Island(data, evaluator, random.split(), POPULATION_SIZE);
+				island.initialize();
+			}
+			for(MetricsListener listener : listeners){
+				island.addMetricsListener(listener);
+			}
+			List<ExpressionTree> trees = island.getTrees();
+			System.out.println("Best initial tree:");
+			trees.get(0).print();
+			System.out.println(trees.get(0).getFitness());
+			System.out.println();
+
+			int gen = island.getGeneration() + 1;
+			while(island.getBestSet().size() < NUM_BEST_KEPT){
+				System.out.println("Generating generation " + gen + " ...");
+				island.evolve();
+				trees = island.getTrees();
+				System.out.println("Generation " + gen + " best tree:");
+				trees.get(0).print();
+				System.out.println(trees.get(0).getFitness());
+				System.out.println(trees.get(0).getSize());
+				if(data.getCache() != null){
+					System.out.println("Fitness cache hits: " + data.getCache().getHits() 
+							+ " misses: " + data.getCache().getMisses());
+				}
+				if(checkpoint != null && gen % CHECKPOINT_INTERVAL == 0){
+					checkpoint.save(new Island[]{island}, null);
+				}
+
+				System.out.println();
+				gen++;
+			}
+			bestSet = island.getBestSet();
+			bestTree = island.getBestTree();
+		}
+		if(checkpoint != null){
+			try{
+				checkpoint.close();
+			}
+			catch(InterruptedException err){
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(log != null){
+			try{
+				log.close();
+			}
+			catch(IOException err){
+				System.out.println("Could not close " + METRICS_FILE + ": " + err.getMessage());
+			}
+		}
+		System.out.println("Best fit:");
+		bestTree.print();
+		System.out.println(bestTree.getFitness());
+
+		printResults(bestSet, bestTree, data, evaluator);
+	}
+
+	/**
+	 * Scores the best set on the whole data set, shuts the evaluator down and prints the best tree
+	 * @param bestSet the trees found below the cut off
+	 * @param bestTree the tree with the best training fitness
+	 * @param data the data set
+	 * @param evaluator the evaluator to score the best set with
+	 */
+	public static void printResults(List<ExpressionTree> bestSet, ExpressionTree bestTree, DataSet data,
+			PopulationEvaluator evaluator){
+		if(COMPILE_ELITES){
+			for(int j=0; j<bestSet.size(); j++){
+				bestSet.get(j).compile();
+			}
+		}
+		evaluator.evaluate(bestSet, data, true);
+		evaluator.shutdown();
+		Collections.sort(bestSet);
+		if(!bestSet.isEmpty() && bestSet.get(0).getFitness() < bestTree.getFitness()){
+			bestTree = bestSet.get(0);
+		}
+		System.out.println("Best fit:");
+		bestTree.print();
+		System.out.println(bestTree.getFitness());
+
+	}
+
+}
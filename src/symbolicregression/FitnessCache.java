@@ -0,0 +1,121 @@
+package symbolicregression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache from the structural hash of a tree to its fitness on the training set and
+ * the linear scaling that fitness was found with.
+ * The cache is split into segments, each evicting its least recently used entry when full,
+ * so that threads scoring different trees rarely wait on each other.
+ * 
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class FitnessCache {
+	//Position of each value in an entry
+	public static final int FITNESS = 0;
+	public static final int SCALE = 1;
+	public static final int OFFSET = 2;
+	private static final int SEGMENTS = 16;
+	private final Segment[] segments;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructs a fitness cache
+	 * @param capacity the greatest number of fitness values kept
+	 */
+	public FitnessCache(int capacity){
+		segments = new Segment[SEGMENTS];
+		for(int i = 0; i < SEGMENTS; i++){
+			segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+		}
+	}
+
+	/**
+	 * Looks up the fitness of a tree, counting a hit or a miss
+	 * @param hash the structural hash of the tree
+	 * @return the cached fitness, scale and offset at FITNESS, SCALE and OFFSET, or null if the
+	 * tree has not been cached; the array must not be changed
+	 */
+	public double[] get(long hash){
+		Segment segment = segmentFor(hash);
+		double[] fitness;
+		synchronized(segment){
+			fitness = segment.get(hash);
+		}
+		if(fitness == null){
+			misses.incrementAndGet();
+		}
+		else{
+			hits.incrementAndGet();
+		}
+		return fitness;
+	}
+
+	/**
+	 * Stores the fitness of a tree
+	 * @param hash the structural hash of the tree
+	 * @param fitness the fitness of the tree
+	 * @param scale the scale of the tree when its fitness was found
+	 * @param offset the offset of the tree when its fitness was found
+	 */
+	public void put(long hash, double fitness, double scale, double offset){
+		Segment segment = segmentFor(hash);
+		double[] entry = {fitness, scale, offset};
+		synchronized(segment){
+			segment.put(hash, entry);
+		}
+	}
+
+	/**
+	 * @return the number of lookups that found a fitness
+	 */
+	public long getHits(){
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups that found no fitness
+	 */
+	public long getMisses(){
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of fitness values in the cache
+	 */
+	public int size(){
+		int size = 0;
+		for(Segment segment : segments){
+			synchronized(segment){
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	private Segment segmentFor(long hash){
+		return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * Least recently used map holding one part of the cache
+	 */
+	private static class Segment extends LinkedHashMap<Long, double[]> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		public Segment(int capacity){
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest){
+			return size() > capacity;
+		}
+	}
+}
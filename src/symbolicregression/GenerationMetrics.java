@@ -0,0 +1,210 @@
+package symbolicregression;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measurements of one generation of an island: where the generation's wall time went, how
+ * much scoring it did, the size of the population it produced, how many offspring were
+ * turned away and how much memory the process allocated while it ran.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class GenerationMetrics {
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	final int island;
+	final int generation;
+	//Nanoseconds spent selecting, crossing and mutating
+	long breedingTime;
+	//Nanoseconds spent scoring trees
+	long evaluationTime;
+	//Nanoseconds spent sorting populations
+	long sortingTime;
+	//Nanoseconds spent fitting the coefficients of elites, not counting scoring the fitted trees
+	long optimizationTime;
+	long totalTime;
+	//Number of trees scored, including fitness cache hits
+	long evaluations;
+	//Nodes evaluated times rows they were evaluated on
+	long nodeEvaluations;
+	double meanSize;
+	int maxSize;
+	//Offspring turned away by ExpressionTreeTester.isAccepted
+	int rejected;
+	//Offspring whose scoring stopped at the rejection bound
+	int aborted;
+	//Elites replaced by a copy with fitted coefficients
+	int optimized;
+	//Bytes allocated by every thread of the process during the generation, or -1 if unknown or
+	//if other islands were evolving at the same time and allocating too
+	long allocatedBytes;
+
+	/**
+	 * Constructs empty metrics for a generation
+	 * @param island the number of the island within its model
+	 * @param generation the number of the generation produced
+	 */
+	GenerationMetrics(int island, int generation){
+		this.island = island;
+		this.generation = generation;
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far by the live threads of the process
+	 * @return the number of bytes, or -1 if the JVM does not measure allocation
+	 */
+	static long allocatedBytes(){
+		if(!(THREADS instanceof com.sun.management.ThreadMXBean)){
+			return -1;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+		if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()){
+			return -1;
+		}
+		long total = 0;
+		for(long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())){
+			//Threads that ended since their ids were taken report -1
+			if(bytes > 0){
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of the island within its model
+	 */
+	public int getIsland(){
+		return island;
+	}
+
+	/**
+	 * @return the number of the generation produced
+	 */
+	public int getGeneration(){
+		return generation;
+	}
+
+	/**
+	 * @return the nanoseconds spent selecting parents, crossing and mutating
+	 */
+	public long getBreedingTime(){
+		return breedingTime;
+	}
+
+	/**
+	 * @return the nanoseconds spent scoring trees
+	 */
+	public long getEvaluationTime(){
+		return evaluationTime;
+	}
+
+	/**
+	 * @return the nanoseconds spent sorting populations
+	 */
+	public long getSortingTime(){
+		return sortingTime;
+	}
+
+	/**
+	 * @return the nanoseconds spent fitting the coefficients of elites
+	 */
+	public long getOptimizationTime(){
+		return optimizationTime;
+	}
+
+	/**
+	 * @return the wall time of the whole generation in nanoseconds
+	 */
+	public long getTotalTime(){
+		return totalTime;
+	}
+
+	/**
+	 * @return the number of trees scored, including fitness cache hits
+	 */
+	public long getEvaluations(){
+		return evaluations;
+	}
+
+	/**
+	 * @return the number of trees scored per second of scoring
+	 */
+	public double getEvaluationsPerSecond(){
+		return perSecond(evaluations, evaluationTime);
+	}
+
+	/**
+	 * @return the number of nodes evaluated times the number of rows they were evaluated on
+	 */
+	public long getNodeEvaluations(){
+		return nodeEvaluations;
+	}
+
+	/**
+	 * @return the number of node evaluations per second of scoring
+	 */
+	public double getNodeEvaluationsPerSecond(){
+		return perSecond(nodeEvaluations, evaluationTime);
+	}
+
+	/**
+	 * @return the mean number of nodes of the trees of the new population
+	 */
+	public double getMeanSize(){
+		return meanSize;
+	}
+
+	/**
+	 * @return the number of nodes of the largest tree of the new population
+	 */
+	public int getMaxSize(){
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of offspring turned away by the acceptance filter
+	 */
+	public int getRejected(){
+		return rejected;
+	}
+
+	/**
+	 * @return the number of offspring whose scoring stopped at the rejection bound
+	 */
+	public int getAborted(){
+		return aborted;
+	}
+
+	/**
+	 * @return the number of elites replaced by a copy with fitted coefficients
+	 */
+	public int getOptimized(){
+		return optimized;
+	}
+
+	/**
+	 * Returns the bytes allocated by every thread of the process during the generation. The
+	 * scoring threads are shared by the islands, so allocation cannot be told apart by island
+	 * and is only measured for an island evolving alone.
+	 * @return the bytes allocated during the generation, or -1 if unknown or if other islands
+	 * were evolving at the same time
+	 */
+	public long getAllocatedBytes(){
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return the bytes allocated by the process per second of the generation, or -1 if
+	 * getAllocatedBytes is -1
+	 */
+	public double getAllocationRate(){
+		return allocatedBytes < 0 ? -1 : perSecond(allocatedBytes, totalTime);
+	}
+
+	private static double perSecond(long count, long nanos){
+		return nanos > 0 ? count * 1e9 / nanos : 0;
+	}
+}
@@ -0,0 +1,701 @@
+package symbolicregression;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A population of expression trees evolved one generation at a time with crossover,
+ * subtree mutation and coefficient mutation. If SAMPLE_SIZE is set, offspring are scored
+ * on a random subsample of the training set drawn afresh each generation, and only the
+ * elites and the trees entering the best set are scored on the whole training set. The
+ * subsample grows every generation that the best tree does not improve.
+ * A streaming data set is read once a generation. Without a subsample the whole generation
+ * is bred before that pass, which scores it together with copies of the best trees whose
+ * coefficients were fitted beforehand; with one, the pass rescores the elites and the trees
+ * entering the best set. The pass also draws the rows the next generation's subsample,
+ * selection and coefficient fitting read in memory.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class Island {
+	private final DataSet data;
+	private final PopulationEvaluator evaluator;
+	private final SplitRandom random;
+	private final int populationSize;
+	private final Selection selection = ExpressionTreeTester.SELECTION.create();
+	private final CoefficientOptimizer optimizer = new CoefficientOptimizer(ExpressionTreeTester.OPTIMIZATION_STEPS);
+	private List<ExpressionTree> trees = new ArrayList<ExpressionTree>();
+	private final List<ExpressionTree> bestSet = new ArrayList<ExpressionTree>();
+	private ExpressionTree bestTree;
+	private int generation = 0;
+	//Node values of the best trees over the rows offspring were last scored on, or null
+	private NodeOutputCache outputs;
+	//Number of training rows offspring are scored on
+	private int sampleSize;
+	//Training rows of a streaming data set drawn in memory by the last pass, or null until a pass draws them
+	private DataSet rows;
+	//Offspring bred beyond the open places when a generation is scored in one pass, to make up for those refused
+	private int surplus;
+	//Number of the island within its model, reported with its metrics
+	private int number;
+	private final List<MetricsListener> listeners = new ArrayList<MetricsListener>();
+	//Metrics of the generation being evolved
+	private GenerationMetrics metrics = new GenerationMetrics(0, 0);
+	//Whether the island evolves alone, so the allocation of the process during a generation is its own
+	private boolean measuresAllocation = true;
+
+	/**
+	 * Constructs an island with no population
+	 * @param data the data set used to calculate fitness
+	 * @param evaluator the evaluator scoring the island's offspring
+	 * @param random a random number generator used only by this island
+	 * @param populationSize the number of trees in the population
+	 */
+	public Island(DataSet data, PopulationEvaluator evaluator, SplitRandom random, int populationSize){
+		this.data = data;
+		this.evaluator = evaluator;
+		this.random = random;
+		this.populationSize = populationSize;
+	}
+
+	/**
+	 * Generates and scores a random population
+	 */
+	public void initialize(){
+		trees = new ArrayList<ExpressionTree>();
+		sampleSize = ExpressionTreeTester.SAMPLE_SIZE > 0 ? ExpressionTreeTester.SAMPLE_SIZE : data.getTrainingSize();
+		for(int i = 0; i < populationSize; i++){
+			ExpressionTree initTree = ExpressionTreeTester.generateRandomTree(ExpressionTreeTester.INITIAL_DEPTH,
+					ExpressionTreeTester.NUMBER_OF_VARIABLES, random);
+			initTree.setStorage(ExpressionTreeTester.STORAGE);
+			trees.add(initTree);
+		}
+		DataSet sample = drawSample();
+		if(sample == data && data instanceof StreamingDataSet){
+			pass(Collections.<ExpressionTree>emptyList(), Double.POSITIVE_INFINITY, trees);
+		}
+		else{
+			score(trees, sample, Double.POSITIVE_INFINITY);
+		}
+		sort(trees);
+		bestTree = sample == data ? trees.get(0) : scoreElites(Collections.<ExpressionTree>emptyList());
+	}
+
+	/**
+	 * Replaces the population with the next generation. The best trees survive and the rest of
+	 * the generation is bred from the current population. Offspring below the cut off are added
+	 * to the best set. Offspring are rejected at the larger of the rejection bound and the cut
+	 * off, so none below the cut off needs scoring again to find its exact fitness.
+	 */
+	public void evolve(){
+		long start = System.nanoTime();
+		metrics = new GenerationMetrics(number, generation + 1);
+		long allocated = listeners.isEmpty() || !measuresAllocation ? -1 : GenerationMetrics.allocatedBytes();
+		List<ExpressionTree> nextGen = new ArrayList<ExpressionTree>();
+		int survivors = getSurvivorCount();
+		DataSet sample = drawSample();
+		//A streaming data set scores the whole generation in the one pass it reads the file
+		boolean onePass = sample == data && data instanceof StreamingDataSet;
+		//Offspring below the cut off on the subsample, to be checked on the whole training set
+		List<ExpressionTree> candidates = new ArrayList<ExpressionTree>();
+		for(int j = 0; j < survivors; j++){
+			trees.get(j).incrementAge();
+			nextGen.add(trees.get(j));
+		}
+		//Offspring below the cut off are never rejected, so every candidate has its exact fitness
+		double bound = Math.max(rejectionBound(), ExpressionTreeTester.CUT_OFF);
+		selection.prepare(trees, onePass ? getRows() : sample, random);
+		if(ExpressionTreeTester.CACHED_ELITES > 0){
+			cacheElites(sample);
+		}
+		//Optimized copies that replaced their trees
+		List<ExpressionTree> improved;
+		if(onePass){
+			improved = evolveInOnePass(nextGen, candidates, bound);
+		}
+		else{
+			while(nextGen.size() < populationSize){
+				//Breed a batch of offspring for the remaining places then score the whole batch at once
+				List<ExpressionTree[]> parents = new ArrayList<ExpressionTree[]>();
+				List<ExpressionTree> offspring = new ArrayList<ExpressionTree>();
+				breed(populationSize - nextGen.size(), parents, offspring);
+				if(outputs != null){
+					for(ExpressionTree child : offspring){
+						if(child.getFitness() != -1){
+							outputs.attach(child);
+						}
+					}
+				}
+				score(offspring, sample, bound);
+				for(ExpressionTree child : offspring){
+					NodeOutputCache.detach(child);
+				}
+				accept(offspring, parents, nextGen, candidates);
+			}
+			trees = nextGen;
+			sort(trees);
+			improved = ExpressionTreeTester.OPTIMIZED_ELITES > 0 ? optimizeElites(sample)
+					: Collections.<ExpressionTree>emptyList();
+		}
+		List<ExpressionTree> entering = new ArrayList<ExpressionTree>(candidates);
+		entering.addAll(improved);
+		ExpressionTree best = sample == data ? trees.get(0) : scoreElites(entering);
+		for(ExpressionTree tree : entering){
+			if(tree.getFitness() < ExpressionTreeTester.CUT_OFF){
+				bestSet.add(tree);
+			}
+		}
+		if(best.getFitness() < bestTree.getFitness()){
+			bestTree = best;
+		}
+		else if(sample != data){
+			//The population is converging, so estimates need more rows to tell trees apart
+			sampleSize = (int) Math.min(data.getTrainingSize(), Math.ceil(sampleSize * ExpressionTreeTester.SAMPLE_GROWTH));
+		}
+		generation++;
+		if(!listeners.isEmpty()){
+			long size = 0;
+			for(ExpressionTree tree : trees){
+				size += tree.getSize();
+				metrics.maxSize = Math.max(metrics.maxSize, tree.getSize());
+			}
+			metrics.meanSize = (double) size / trees.size();
+			metrics.allocatedBytes = allocated < 0 ? -1 : GenerationMetrics.allocatedBytes() - allocated;
+			metrics.totalTime = System.nanoTime() - start;
+			for(MetricsListener listener : listeners){
+				listener.generationEvolved(metrics);
+			}
+		}
+	}
+
+	/**
+	 * Breeds the rest of the next generation and scores it in one pass over a streaming data
+	 * set, together with copies of the best legal trees whose coefficients are first fitted on
+	 * rows the last pass drew. More offspring than open places are bred, by the number refused
+	 * in the last generation scored this way, and any places still open are filled with clones
+	 * of the best trees. A copy better than its tree takes the tree's place if the tree
+	 * survives, and the place of the worst tree otherwise.
+	 * @param nextGen the next generation, holding the survivors
+	 * @param candidates receives the accepted offspring below the cut off
+	 * @param bound the rejection bound of the offspring
+	 * @return the copies that entered the next generation
+	 */
+	private List<ExpressionTree> evolveInOnePass(List<ExpressionTree> nextGen, List<ExpressionTree> candidates, double bound){
+		List<Integer> positions = new ArrayList<Integer>();
+		List<ExpressionTree> copies = ExpressionTreeTester.OPTIMIZED_ELITES > 0
+				? optimizeCopies(getRows().subsample(ExpressionTreeTester.OPTIMIZATION_ROWS, random), positions)
+				: Collections.<ExpressionTree>emptyList();
+		List<ExpressionTree[]> parents = new ArrayList<ExpressionTree[]>();
+		List<ExpressionTree> offspring = new ArrayList<ExpressionTree>();
+		breed(populationSize - nextGen.size() + surplus, parents, offspring);
+		pass(offspring, bound, copies);
+		accept(offspring, parents, nextGen, candidates);
+		surplus = Math.min(metrics.rejected, populationSize);
+		int first = 0;
+		while(first < trees.size() - 1 && trees.get(first).getFitness() == -1){
+			first++;
+		}
+		for(int j = first; nextGen.size() < populationSize; j++){
+			nextGen.add(trees.get(first + (j - first) % (trees.size() - first)).clone());
+		}
+		List<ExpressionTree> improved = new ArrayList<ExpressionTree>();
+		List<ExpressionTree> displacing = new ArrayList<ExpressionTree>();
+		int survivors = getSurvivorCount();
+		for(int j = 0; j < copies.size(); j++){
+			ExpressionTree copy = copies.get(j);
+			int position = positions.get(j);
+			if(copy.getFitness() != -1 && copy.getFitness() < trees.get(position).getFitness()){
+				improved.add(copy);
+				//Survivors are at the front of the next generation in the same order
+				if(position < survivors){
+					nextGen.set(position, copy);
+				}
+				else{
+					displacing.add(copy);
+				}
+			}
+		}
+		metrics.optimized += improved.size();
+		sort(nextGen);
+		for(int j = 0; j < displacing.size() && j < nextGen.size(); j++){
+			nextGen.set(nextGen.size() - 1 - j, displacing.get(j));
+		}
+		trees = nextGen;
+		sort(trees);
+		return improved;
+	}
+
+	/**
+	 * Breeds offspring in pairs from the current population
+	 * @param count the number of offspring wanted, rounded up to a whole number of pairs
+	 * @param parents receives the parents of each pair
+	 * @param offspring receives the offspring, each pair after the one before
+	 */
+	private void breed(int count, List<ExpressionTree[]> parents, List<ExpressionTree> offspring){
+		long start = System.nanoTime();
+		int pairs = (count + 1) / 2;
+		for(int j = 0; j < pairs; j++){
+			ExpressionTree[] crossover = ExpressionTreeTester.selectForCrossover(trees, selection, random);
+			ExpressionTree[] children = crossover[0].crossover(crossover[1], random);
+			for(ExpressionTree child : children){
+				if(random.nextDouble() < ExpressionTreeTester.MUTATION_RATE){
+					child.mutate(ExpressionTreeTester.INITIAL_DEPTH, ExpressionTreeTester.NUMBER_OF_VARIABLES, random);
+				}
+				child.mutate(ExpressionTreeTester.MUTATION_RATE, ExpressionTreeTester.MIN_MUTATION,
+						ExpressionTreeTester.MAX_MUTATION, random);
+				offspring.add(child);
+			}
+			parents.add(crossover);
+		}
+		metrics.breedingTime += System.nanoTime() - start;
+	}
+
+	/**
+	 * Adds scored offspring to the next generation until it is full, counting those refused
+	 * @param offspring the scored offspring
+	 * @param parents the parents of each pair of offspring
+	 * @param nextGen the next generation
+	 * @param candidates receives the accepted offspring below the cut off
+	 */
+	private void accept(List<ExpressionTree> offspring, List<ExpressionTree[]> parents, List<ExpressionTree> nextGen,
+			List<ExpressionTree> candidates){
+		for(int j = 0; j < offspring.size() && nextGen.size() < populationSize; j++){
+			if(ExpressionTreeTester.isAccepted(offspring.get(j), parents.get(j / 2))){
+				nextGen.add(offspring.get(j));
+				if(offspring.get(j).getFitness() < ExpressionTreeTester.CUT_OFF){
+					candidates.add(offspring.get(j));
+				}
+			}
+			else{
+				metrics.rejected++;
+			}
+		}
+	}
+
+	/**
+	 * @return a random subsample of sampleSize training rows, or the data set itself if the
+	 * sample covers the whole training set
+	 */
+	private DataSet drawSample(){
+		if(sampleSize >= data.getTrainingSize()){
+			return data;
+		}
+		//The rows the last pass over a streaming data set drew hold the sample
+		return (data instanceof StreamingDataSet ? getRows() : data).subsample(sampleSize, random);
+	}
+
+	/**
+	 * @return the training rows of a streaming data set drawn in memory by the last pass,
+	 * read now if no pass has drawn them since the island was initialized or read
+	 */
+	private DataSet getRows(){
+		if(rows == null){
+			rows = data.subsample(getRowCount(), random);
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the number of training rows a generation reads in memory from a streaming data
+	 * set: its subsample, grown in case the best tree does not improve, lexicase selection's
+	 * cases and the rows coefficients are fitted on
+	 */
+	private int getRowCount(){
+		int count = 0;
+		if(sampleSize < data.getTrainingSize()){
+			count = (int) Math.min(data.getTrainingSize(),
+					Math.max(sampleSize, Math.ceil(sampleSize * ExpressionTreeTester.SAMPLE_GROWTH)));
+		}
+		if(ExpressionTreeTester.SELECTION == Selection.Method.LEXICASE){
+			count = Math.max(count, ExpressionTreeTester.LEXICASE_CASES);
+		}
+		if(ExpressionTreeTester.OPTIMIZED_ELITES > 0){
+			count = Math.max(count, ExpressionTreeTester.OPTIMIZATION_ROWS);
+		}
+		return count;
+	}
+
+	/**
+	 * Caches the node values of the best legal trees over the rows the offspring will be scored
+	 * on. Values cached in the last generation are kept if the rows are the same.
+	 * @param sample the training rows the offspring are scored on
+	 */
+	private void cacheElites(DataSet sample){
+		if(!sample.isInMemory()){
+			//The rows are not held in memory to be cached
+			outputs = null;
+			return;
+		}
+		long start = System.nanoTime();
+		NodeOutputCache previous = outputs;
+		outputs = new NodeOutputCache(sample, ExpressionTreeTester.NODE_CACHE_VALUES);
+		//Illegal trees have a fitness of -1 so they sort first
+		int first = 0;
+		while(first < trees.size() && trees.get(first).getFitness() == -1){
+			first++;
+		}
+		int last = Math.min(first + ExpressionTreeTester.CACHED_ELITES, trees.size());
+		for(int j = first; j < last; j++){
+			outputs.add(trees.get(j), previous);
+		}
+		metrics.evaluationTime += System.nanoTime() - start;
+	}
+
+	/**
+	 * Fits the coefficients of copies of the best legal trees on a sample of the training rows
+	 * and puts each copy in place of its tree if the copy's fitness is better
+	 * @param sample the training rows the population is scored on
+	 * @return the copies that replaced their trees, scored on the sample
+	 */
+	private List<ExpressionTree> optimizeElites(DataSet sample){
+		List<Integer> positions = new ArrayList<Integer>();
+		List<ExpressionTree> copies = optimizeCopies(sample.subsample(ExpressionTreeTester.OPTIMIZATION_ROWS, random), positions);
+		List<ExpressionTree> improved = new ArrayList<ExpressionTree>();
+		if(copies.isEmpty()){
+			return improved;
+		}
+		score(copies, sample, Double.POSITIVE_INFINITY);
+		for(int j = 0; j < copies.size(); j++){
+			ExpressionTree copy = copies.get(j);
+			if(copy.getFitness() != -1 && copy.getFitness() < trees.get(positions.get(j)).getFitness()){
+				trees.set(positions.get(j), copy);
+				improved.add(copy);
+			}
+		}
+		metrics.optimized += improved.size();
+		sort(trees);
+		return improved;
+	}
+
+	/**
+	 * Fits the coefficients of copies of the best legal trees, leaving the copies unscored
+	 * @param rows the training rows the coefficients are fitted on, held in memory
+	 * @param positions receives the position in the population of each copy's tree
+	 * @return the copies whose coefficients changed
+	 */
+	private List<ExpressionTree> optimizeCopies(DataSet rows, List<Integer> positions){
+		long start = System.nanoTime();
+		//Illegal trees have a fitness of -1 so they sort first
+		int first = 0;
+		while(first < trees.size() && trees.get(first).getFitness() == -1){
+			first++;
+		}
+		int last = Math.min(first + ExpressionTreeTester.OPTIMIZED_ELITES, trees.size());
+		List<ExpressionTree> copies = new ArrayList<ExpressionTree>();
+		for(int j = first; j < last; j++){
+			ExpressionTree copy = trees.get(j).clone();
+			if(optimizer.optimize(copy, rows)){
+				positions.add(j);
+				copies.add(copy);
+			}
+		}
+		metrics.optimizationTime += System.nanoTime() - start;
+		return copies;
+	}
+
+	/**
+	 * Scores trees and adds the work to the metrics of the generation
+	 * @param scored the trees to score
+	 * @param data the data set to score the trees on
+	 * @param bound the rejection bound, or infinity to score every tree fully
+	 */
+	private void score(List<ExpressionTree> scored, DataSet data, double bound){
+		long start = System.nanoTime();
+		if(bound == Double.POSITIVE_INFINITY){
+			evaluator.evaluate(scored, data, false);
+		}
+		else{
+			evaluator.evaluate(scored, data, bound);
+		}
+		metrics.evaluationTime += System.nanoTime() - start;
+		count(scored);
+	}
+
+	/**
+	 * Scores trees on the whole training set of a streaming data set in one pass, which draws
+	 * the rows the next generation reads in memory, and adds the work to the metrics
+	 * @param bounded the trees rejected once they cannot beat the bound
+	 * @param bound the rejection bound, or infinity to score every tree fully
+	 * @param exact the trees scored fully
+	 */
+	private void pass(List<ExpressionTree> bounded, double bound, List<ExpressionTree> exact){
+		long start = System.nanoTime();
+		rows = ((StreamingDataSet) data).evaluate(bounded, bound == Double.POSITIVE_INFINITY ? Double.NaN : bound, exact,
+				getRowCount(), random);
+		metrics.evaluationTime += System.nanoTime() - start;
+		count(bounded);
+		count(exact);
+	}
+
+	/**
+	 * Adds the evaluations of scored trees to the metrics of the generation
+	 */
+	private void count(List<ExpressionTree> scored){
+		metrics.evaluations += scored.size();
+		for(ExpressionTree tree : scored){
+			metrics.nodeEvaluations += tree.takeNodeEvaluations();
+			if(tree.isRejected()){
+				metrics.aborted++;
+			}
+		}
+	}
+
+	/**
+	 * Sorts trees from best to worst and adds the time taken to the metrics of the generation
+	 * @param sorted the trees to sort
+	 */
+	private void sort(List<ExpressionTree> sorted){
+		long start = System.nanoTime();
+		Collections.sort(sorted);
+		metrics.sortingTime += System.nanoTime() - start;
+	}
+
+	/**
+	 * Adds a listener to receive the metrics of every generation the island evolves
+	 * @param listener the listener
+	 */
+	public void addMetricsListener(MetricsListener listener){
+		listeners.add(listener);
+	}
+
+	/**
+	 * Sets whether the island measures the memory allocated during each generation. The
+	 * measurement covers the whole process, so it is only meaningful while no other island
+	 * evolves at the same time.
+	 * @param measuresAllocation whether to measure allocation
+	 */
+	void setMeasuringAllocation(boolean measuresAllocation){
+		this.measuresAllocation = measuresAllocation;
+	}
+
+	/**
+	 * Sets the number the island reports with its metrics
+	 * @param number the number of the island within its model
+	 */
+	public void setNumber(int number){
+		this.number = number;
+	}
+
+	/**
+	 * @return the number of the best trees that survive into the next generation
+	 */
+	private int getSurvivorCount(){
+		return (int) Math.ceil(populationSize * ExpressionTreeTester.SURVIVAL_RATE);
+	}
+
+	/**
+	 * Scores the trees that will survive into the next generation on the whole training set,
+	 * together with other trees scored on a subsample, and sorts the population again.
+	 * Elites that have survived COMPILE_THRESHOLD generations are likely to be scored again,
+	 * so they are compiled first.
+	 * @param rescored the other trees to score on the whole training set
+	 * @return the best of the elites
+	 */
+	private ExpressionTree scoreElites(List<ExpressionTree> rescored){
+		List<ExpressionTree> elites = new ArrayList<ExpressionTree>(trees.subList(0, Math.min(getSurvivorCount(), trees.size())));
+		if(ExpressionTreeTester.COMPILE_ELITES){
+			for(ExpressionTree elite : elites){
+				if(elite.getAge() >= ExpressionTreeTester.COMPILE_THRESHOLD){
+					elite.compile();
+				}
+			}
+		}
+		//A tree scored twice at once would race with itself
+		List<ExpressionTree> scored = new ArrayList<ExpressionTree>(elites);
+		Set<ExpressionTree> included = Collections.newSetFromMap(new IdentityHashMap<ExpressionTree, Boolean>());
+		included.addAll(elites);
+		for(ExpressionTree tree : rescored){
+			if(included.add(tree)){
+				scored.add(tree);
+			}
+		}
+		if(data instanceof StreamingDataSet){
+			pass(Collections.<ExpressionTree>emptyList(), Double.POSITIVE_INFINITY, scored);
+		}
+		else{
+			score(scored, data, Double.POSITIVE_INFINITY);
+		}
+		sort(elites);
+		sort(trees);
+		return elites.get(0);
+	}
+
+	/**
+	 * Returns the rejection bound for the offspring of a generation, the fitness of the tree
+	 * at REJECTION_QUANTILE of the legal trees of the population. Rejected offspring still
+	 * fill the next generation, but sort after every offspring that beat the bound and are
+	 * rarely selected for crossover, so their exact fitness is not needed.
+	 * @return the bound, or infinity if every offspring is scored fully
+	 */
+	private double rejectionBound(){
+		//Illegal trees have a fitness of -1 so they sort first
+		int legal = 0;
+		while(legal < trees.size() && trees.get(legal).getFitness() == -1){
+			legal++;
+		}
+		if(ExpressionTreeTester.REJECTION_QUANTILE <= 0 || legal == trees.size()){
+			return Double.POSITIVE_INFINITY;
+		}
+		int index = legal + (int) Math.ceil((trees.size() - legal) * ExpressionTreeTester.REJECTION_QUANTILE) - 1;
+		return trees.get(Math.min(Math.max(index, legal), trees.size() - 1)).getFitness();
+	}
+
+	/**
+	 * Returns copies of the best trees of the population to send to another island
+	 * @param count the number of trees to send
+	 * @return the copies
+	 */
+	public List<ExpressionTree> getMigrants(int count){
+		List<ExpressionTree> migrants = new ArrayList<ExpressionTree>();
+		for(int i = 0; i < count && i < trees.size(); i++){
+			migrants.add(trees.get(i).clone());
+		}
+		return migrants;
+	}
+
+	/**
+	 * Replaces the worst trees of the population with trees from another island. The migrants
+	 * are first scored on this island's training set, since their fitness may have been
+	 * measured on other rows or may only be the bound they were rejected at.
+	 * @param migrants the trees arriving from another island
+	 */
+	public void receive(List<ExpressionTree> migrants){
+		int count = Math.min(migrants.size(), trees.size());
+		List<ExpressionTree> arrived = new ArrayList<ExpressionTree>(migrants.subList(0, count));
+		for(ExpressionTree migrant : arrived){
+			migrant.setStorage(ExpressionTreeTester.STORAGE);
+		}
+		score(arrived, data, Double.POSITIVE_INFINITY);
+		for(int i = 0; i < count; i++){
+			trees.set(trees.size() - 1 - i, arrived.get(i));
+		}
+		Collections.sort(trees);
+		//Trees scored on a subsample are not compared with the best tree
+		if(sampleSize >= data.getTrainingSize() && trees.get(0).getFitness() < bestTree.getFitness()){
+			bestTree = trees.get(0);
+		}
+	}
+
+	/**
+	 * @return the population sorted from best to worst fitness
+	 */
+	public List<ExpressionTree> getTrees(){
+		return trees;
+	}
+
+	/**
+	 * @return the trees found with fitness below the cut off
+	 */
+	public List<ExpressionTree> getBestSet(){
+		return bestSet;
+	}
+
+	/**
+	 * @return the best tree found so far
+	 */
+	public ExpressionTree getBestTree(){
+		return bestTree;
+	}
+
+	/**
+	 * @return the number of training rows offspring are currently scored on
+	 */
+	public int getSampleSize(){
+		return sampleSize;
+	}
+
+	/**
+	 * @return true once the island has a population
+	 */
+	public boolean isInitialized(){
+		return !trees.isEmpty();
+	}
+
+	/**
+	 * Writes the state of the island: its population, best set, best tree, generation,
+	 * subsample size and random number generator, with the age and rejected flag of each
+	 * tree of the population and best set
+	 * @param out the output to write to
+	 * @throws IOException if the output cannot be written
+	 */
+	public void write(DataOutput out) throws IOException{
+		out.writeInt(populationSize);
+		out.writeInt(generation);
+		out.writeInt(sampleSize);
+		out.writeLong(random.getState());
+		bestTree.write(out);
+		ExpressionTree.writeList(out, trees);
+		writeStates(out, trees);
+		ExpressionTree.writeList(out, bestSet);
+		writeStates(out, bestSet);
+	}
+
+	/**
+	 * Writes the age and rejected flag of each tree, which ExpressionTree.write leaves out
+	 */
+	private static void writeStates(DataOutput out, List<ExpressionTree> trees) throws IOException{
+		for(ExpressionTree tree : trees){
+			out.writeInt(tree.getAge());
+			out.writeBoolean(tree.isRejected());
+		}
+	}
+
+	/**
+	 * Restores the age and rejected flag of each tree, written by writeStates, and gives the
+	 * tree the configured storage
+	 */
+	private static void readStates(DataInput in, List<ExpressionTree> trees) throws IOException{
+		for(ExpressionTree tree : trees){
+			int age = in.readInt();
+			if(age < 0){
+				throw new IOException("Invalid age " + age);
+			}
+			tree.setAge(age);
+			if(in.readBoolean()){
+				tree.reject(tree.getFitness());
+			}
+			tree.setStorage(ExpressionTreeTester.STORAGE);
+		}
+	}
+
+	/**
+	 * Reads an island written by write
+	 * @param in the input to read from
+	 * @param data the data set used to calculate fitness
+	 * @param evaluator the evaluator scoring the island's offspring
+	 * @return the island, ready to evolve its next generation
+	 * @throws IOException if the input cannot be read or does not hold a valid island
+	 */
+	public static Island read(DataInput in, DataSet data, PopulationEvaluator evaluator) throws IOException{
+		int populationSize = in.readInt();
+		int generation = in.readInt();
+		int sampleSize = in.readInt();
+		Island island = new Island(data, evaluator, new SplitRandom(in.readLong()), populationSize);
+		island.generation = generation;
+		island.sampleSize = sampleSize;
+		island.bestTree = ExpressionTree.read(in);
+		island.bestTree.setStorage(ExpressionTreeTester.STORAGE);
+		island.trees = ExpressionTree.readList(in);
+		readStates(in, island.trees);
+		island.bestSet.addAll(ExpressionTree.readList(in));
+		readStates(in, island.bestSet);
+		if(populationSize < 1 || island.trees.isEmpty()){
+			throw new IOException("Invalid island");
+		}
+		return island;
+	}
+
+	/**
+	 * @return the number of generations evolved
+	 */
+	public int getGeneration(){
+		return generation;
+	}
+}
@@ -0,0 +1,31 @@
+package symbolicregression;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Connects an island model to islands evolving in other processes. The model exchanges
+ * trees through the link at every migration.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public interface IslandLink {
+	/**
+	 * Sends trees to the other processes and returns the migrants that have arrived from them
+	 * since the previous exchange. Must not wait for migrants to arrive.
+	 * @param generation the number of generations evolved
+	 * @param best the best tree found so far
+	 * @param found the trees below the cut off found since the previous exchange
+	 * @param migrants copies of the best trees of the model to send to another process
+	 * @return the migrants that have arrived
+	 * @throws IOException if the trees cannot be sent
+	 */
+	List<ExpressionTree> exchange(int generation, ExpressionTree best, List<ExpressionTree> found,
+			List<ExpressionTree> migrants) throws IOException;
+
+	/**
+	 * @return true once the other processes have asked the model to stop
+	 */
+	boolean isStopped();
+}
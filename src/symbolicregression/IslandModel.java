@@ -0,0 +1,321 @@
+package symbolicregression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Evolves several islands, each on its own thread. Every migration interval the islands
+ * wait at a barrier, send copies of their best trees to other islands along the topology
+ * and replace their worst trees with the trees they receive. Islands share nothing between
+ * barriers, so they need no locks while evolving. An island link connects the model to
+ * islands in other processes, which are treated as one more stop along the migration route.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class IslandModel {
+	/**
+	 * How islands are connected for migration
+	 */
+	public enum Topology {
+		//Each island sends to the next island
+		RING,
+		//Each island sends to a different random island every migration
+		RANDOM;
+	}
+
+	private final Island[] islands;
+	private final int migrationInterval;
+	private final int migrants;
+	private final Topology topology;
+	private final SplitRandom random;
+	//Island that each island sends its migrants to in the current migration
+	private final int[] destinations;
+	//Migrants sent by each island in the current migration
+	private final List<List<ExpressionTree>> outboxes = new ArrayList<List<ExpressionTree>>();
+	//Migrants arriving through the link for each island in the current migration
+	private final List<List<ExpressionTree>> arrivals = new ArrayList<List<ExpressionTree>>();
+	//Number of trees of each island's best set already sent through the link
+	private final int[] reported;
+	private final CyclicBarrier barrier;
+	private IslandLink link;
+	private Checkpoint checkpoint;
+	private int checkpointInterval;
+	private int checkpointGeneration;
+	private volatile boolean finished = false;
+	private int target;
+	private int generation = 0;
+
+	/**
+	 * Constructs an island model
+	 * @param data the data set used to calculate fitness
+	 * @param evaluator the evaluator scoring the offspring of every island
+	 * @param islandCount the number of islands
+	 * @param populationSize the number of trees on each island
+	 * @param migrationInterval the number of generations between migrations
+	 * @param migrants the number of trees each island sends per migration
+	 * @param topology how islands are connected
+	 * @param random a random number generator, split into one generator for each island
+	 */
+	public IslandModel(DataSet data, PopulationEvaluator evaluator, int islandCount, int populationSize,
+			int migrationInterval, int migrants, Topology topology, SplitRandom random){
+		this(createIslands(data, evaluator, islandCount, populationSize, random), migrationInterval, migrants, topology, random);
+	}
+
+	/**
+	 * Constructs an island model from existing islands, such as islands read from a checkpoint
+	 * @param islands the islands, which are initialized when the model runs if they have no population
+	 * @param migrationInterval the number of generations between migrations
+	 * @param migrants the number of trees each island sends per migration
+	 * @param topology how islands are connected
+	 * @param random a random number generator
+	 */
+	public IslandModel(Island[] islands, int migrationInterval, int migrants, Topology topology, SplitRandom random){
+		int islandCount = islands.length;
+		this.islands = islands;
+		for(int i = 0; i < islandCount; i++){
+			outboxes.add(Collections.<ExpressionTree>emptyList());
+			arrivals.add(Collections.<ExpressionTree>emptyList());
+		}
+		for(int i = 0; i < islandCount; i++){
+			islands[i].setNumber(i);
+			//Allocation is measured for the whole process, so concurrent islands cannot tell theirs apart
+			islands[i].setMeasuringAllocation(islandCount == 1);
+		}
+		this.reported = new int[islandCount];
+		this.generation = islands[0].getGeneration();
+		this.checkpointGeneration = generation;
+		this.migrationInterval = migrationInterval;
+		this.migrants = migrants;
+		this.topology = topology;
+		this.random = random;
+		this.destinations = new int[islandCount];
+		//The last island to reach the barrier plans the migration while the others wait
+		this.barrier = new CyclicBarrier(islandCount, new Runnable(){
+			@Override
+			public void run(){
+				planMigration();
+			}
+		});
+	}
+
+	private static Island[] createIslands(DataSet data, PopulationEvaluator evaluator, int islandCount,
+			int populationSize, SplitRandom random){
+		Island[] islands = new Island[islandCount];
+		for(int i = 0; i < islandCount; i++){
+			islands[i] = new Island(data, evaluator, random.split(), populationSize);
+		}
+		return islands;
+	}
+
+	/**
+	 * Saves a checkpoint of the model at the first migration after every interval
+	 * @param checkpoint the checkpoint to save to, or null to save none
+	 * @param interval the least number of generations between checkpoints
+	 */
+	public void setCheckpoint(Checkpoint checkpoint, int interval){
+		this.checkpoint = checkpoint;
+		this.checkpointInterval = interval;
+	}
+
+	/**
+	 * Adds a listener to receive the metrics of every generation of every island
+	 * @param listener the listener, called concurrently by the islands
+	 */
+	public void addMetricsListener(MetricsListener listener){
+		for(Island island : islands){
+			island.addMetricsListener(listener);
+		}
+	}
+
+	/**
+	 * Connects the model to islands in other processes
+	 * @param link the link to exchange trees through, or null to evolve alone
+	 */
+	public void setLink(IslandLink link){
+		this.link = link;
+	}
+
+	/**
+	 * Evolves the islands until together they have found enough trees below the cut off or
+	 * the link asks them to stop
+	 * @param numBestKept the number of trees below the cut off to find
+	 * @throws InterruptedException if the thread is interrupted while waiting for the islands
+	 */
+	public void run(int numBestKept) throws InterruptedException{
+		this.target = numBestKept;
+		Thread[] threads = new Thread[islands.length];
+		final Throwable[] errors = new Throwable[islands.length];
+		for(int i = 0; i < islands.length; i++){
+			final int index = i;
+			threads[i] = new Thread(new Runnable(){
+				@Override
+				public void run(){
+					try{
+						runIsland(index);
+					}
+					catch(Throwable err){
+						errors[index] = err;
+						barrier.reset();
+					}
+				}
+			}, "island-" + i);
+			threads[i].start();
+		}
+		for(Thread thread : threads){
+			thread.join();
+		}
+		for(Throwable err : errors){
+			if(err != null && !(err instanceof BrokenBarrierException)){
+				throw new IllegalStateException("Island failed", err);
+			}
+		}
+	}
+
+	/**
+	 * Loop run by the thread of one island
+	 * @param index the island's index
+	 */
+	private void runIsland(int index) throws InterruptedException, BrokenBarrierException{
+		Island island = islands[index];
+		if(!island.isInitialized()){
+			island.initialize();
+		}
+		barrier.await();
+		while(!finished){
+			for(int i = 0; i < migrationInterval; i++){
+				island.evolve();
+			}
+			barrier.await();
+			if(finished){
+				break;
+			}
+			outboxes.set(index, island.getMigrants(migrants));
+			barrier.await();
+			for(int source = 0; source < islands.length; source++){
+				if(destinations[source] == index){
+					island.receive(outboxes.get(source));
+				}
+			}
+			island.receive(arrivals.get(index));
+			arrivals.set(index, Collections.<ExpressionTree>emptyList());
+		}
+	}
+
+	/**
+	 * Run by the last island to arrive at a barrier. Checks whether enough trees have been
+	 * found, prints the best tree, exchanges trees through the link and picks the destination of each island's migrants.
+	 */
+	private void planMigration(){
+		if(islands[0].getGeneration() == generation){
+			//Barrier after the initial population or after the migrants have been sent
+			return;
+		}
+		generation = islands[0].getGeneration();
+		int found = 0;
+		for(Island island : islands){
+			found += island.getBestSet().size();
+		}
+		ExpressionTree best = getBestTree();
+		System.out.println("Generation " + generation + " best tree:");
+		best.print();
+		System.out.println(best.getFitness());
+		System.out.println(best.getSize());
+		System.out.println();
+		if(link != null){
+			exchange(best);
+		}
+		if(checkpoint != null && generation - checkpointGeneration >= checkpointInterval){
+			//Every island is waiting at the barrier, so the state is consistent
+			checkpoint.save(islands, random);
+			checkpointGeneration = generation;
+		}
+		if(found >= target){
+			finished = true;
+			return;
+		}
+		for(int i = 0; i < islands.length; i++){
+			if(islands.length == 1){
+				destinations[i] = i;
+			}
+			else if(topology == Topology.RING){
+				destinations[i] = (i + 1) % islands.length;
+			}
+			else{
+				//Any island other than the sender
+				int destination = random.nextInt(islands.length - 1);
+				destinations[i] = destination >= i ? destination + 1 : destination;
+			}
+		}
+	}
+
+	/**
+	 * Sends the newly found trees and the best trees of the model through the link and hands
+	 * the arriving migrants out to the islands in turn
+	 * @param best the best tree of the model
+	 */
+	private void exchange(ExpressionTree best){
+		List<ExpressionTree> found = new ArrayList<ExpressionTree>();
+		List<ExpressionTree> candidates = new ArrayList<ExpressionTree>();
+		for(int i = 0; i < islands.length; i++){
+			List<ExpressionTree> bestSet = islands[i].getBestSet();
+			found.addAll(bestSet.subList(reported[i], bestSet.size()));
+			reported[i] = bestSet.size();
+			candidates.addAll(islands[i].getMigrants(migrants));
+		}
+		Collections.sort(candidates);
+		List<ExpressionTree> emigrants = new ArrayList<ExpressionTree>(candidates.subList(0, Math.min(migrants, candidates.size())));
+		try{
+			List<ExpressionTree> arrived = link.exchange(generation, best, found, emigrants);
+			for(int i = 0; i < arrived.size(); i++){
+				int index = i % islands.length;
+				if(arrivals.get(index).isEmpty()){
+					arrivals.set(index, new ArrayList<ExpressionTree>());
+				}
+				arrivals.get(index).add(arrived.get(i));
+			}
+		}
+		catch(IOException err){
+			System.out.println("Lost connection to the other islands: " + err.getMessage());
+			finished = true;
+		}
+		if(link.isStopped()){
+			finished = true;
+		}
+	}
+
+	/**
+	 * @return the islands of the model
+	 */
+	public Island[] getIslands(){
+		return islands;
+	}
+
+	/**
+	 * @return the trees below the cut off found by every island
+	 */
+	public List<ExpressionTree> getBestSet(){
+		List<ExpressionTree> bestSet = new ArrayList<ExpressionTree>();
+		for(Island island : islands){
+			bestSet.addAll(island.getBestSet());
+		}
+		return bestSet;
+	}
+
+	/**
+	 * @return the best tree found by any island
+	 */
+	public ExpressionTree getBestTree(){
+		ExpressionTree best = null;
+		for(Island island : islands){
+			if(island.getBestTree() != null && (best == null || island.getBestTree().getFitness() < best.getFitness())){
+				best = island.getBestTree();
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,137 @@
+package symbolicregression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Epsilon lexicase selection. Each generation a random subsample of the training rows is
+ * taken as the cases and the absolute error of every legal tree on every case is computed
+ * once. A selection goes through the cases in a random order, each time keeping only the
+ * trees whose error is within the median absolute deviation of that case's errors from
+ * the smallest error, until one tree is left or the cases run out.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class LexicaseSelection implements Selection {
+	private final int cases;
+	private List<ExpressionTree> trees = new ArrayList<ExpressionTree>();
+	//Index in the population of each legal tree
+	private int[] legal = new int[0];
+	//Absolute error of each legal tree on each case
+	private double[][] errors = new double[0][];
+	//Error within which a tree is kept on each case
+	private double[] epsilon = new double[0];
+	private int[] order = new int[0];
+	private int[] candidates = new int[0];
+
+	/**
+	 * Constructs a lexicase selection
+	 * @param cases the number of training rows used as cases each generation
+	 */
+	public LexicaseSelection(int cases){
+		this.cases = cases;
+	}
+
+	@Override
+	public void prepare(List<ExpressionTree> trees, DataSet data, Random random){
+		this.trees = trees;
+		int count = 0;
+		legal = new int[trees.size()];
+		for(int i = 0; i < trees.size(); i++){
+			if(trees.get(i).getFitness() != -1){
+				legal[count++] = i;
+			}
+		}
+		if(count == 0){
+			//Every tree is illegal, so choose among all of them
+			for(int i = 0; i < trees.size(); i++){
+				legal[count++] = i;
+			}
+		}
+		legal = Arrays.copyOf(legal, count);
+		DataSet sample = data.subsample(cases, random);
+		double[][] columns = sample.getColumns();
+		double[] target = sample.getTarget();
+		int rows = sample.getTrainingSize();
+		errors = new double[rows][count];
+		double[] output = new double[rows];
+		for(int i = 0; i < count; i++){
+			ExpressionTree tree = trees.get(legal[i]);
+			if(tree.getFitness() == -1){
+				for(int row = 0; row < rows; row++){
+					errors[row][i] = Double.POSITIVE_INFINITY;
+				}
+				continue;
+			}
+			tree.getCompiledExpression().evaluate(columns, 0, rows, output);
+			double scale = tree.getScale();
+			double offset = tree.getOffset();
+			for(int row = 0; row < rows; row++){
+				double error = Math.abs(offset + scale * output[row] - target[row]);
+				errors[row][i] = Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+			}
+		}
+		epsilon = new double[rows];
+		for(int row = 0; row < rows; row++){
+			epsilon[row] = medianAbsoluteDeviation(errors[row]);
+		}
+		order = new int[rows];
+		for(int row = 0; row < rows; row++){
+			order[row] = row;
+		}
+		candidates = new int[count];
+	}
+
+	@Override
+	public ExpressionTree select(Random random){
+		int count = legal.length;
+		for(int i = 0; i < count; i++){
+			candidates[i] = i;
+		}
+		for(int k = 0; k < order.length && count > 1; k++){
+			//Shuffle the cases as they are used
+			int swap = k + random.nextInt(order.length - k);
+			int row = order[swap];
+			order[swap] = order[k];
+			order[k] = row;
+			double[] rowErrors = errors[row];
+			double best = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < count; i++){
+				best = Math.min(best, rowErrors[candidates[i]]);
+			}
+			double limit = best + epsilon[row];
+			int kept = 0;
+			for(int i = 0; i < count; i++){
+				if(rowErrors[candidates[i]] <= limit){
+					candidates[kept++] = candidates[i];
+				}
+			}
+			count = kept;
+		}
+		return trees.get(legal[candidates[random.nextInt(count)]]);
+	}
+
+	/**
+	 * @param values the errors of every tree on one case
+	 * @return the median of the absolute deviations of the errors from their median
+	 */
+	private static double medianAbsoluteDeviation(double[] values){
+		if(values.length == 0){
+			return 0;
+		}
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		double median = sorted[sorted.length / 2];
+		if(Double.isInfinite(median)){
+			return 0;
+		}
+		for(int i = 0; i < sorted.length; i++){
+			sorted[i] = Math.abs(values[i] - median);
+		}
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
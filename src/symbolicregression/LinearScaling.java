@@ -0,0 +1,144 @@
+package symbolicregression;
+
+/**
+ * Finds the offset a and scale b minimising the squared error of a + b * f(x) in closed form.
+ * A range of rows is summarised by its moments: the number of rows, the means of the
+ * expression's values and of the targets, and the sums of squared deviations and of the
+ * products of deviations from those means. Moments of neighbouring ranges are merged
+ * pairwise, which stays accurate when targets are large, unlike raw sums of squares.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public final class LinearScaling {
+	//Position of each moment within the moments of a range of rows
+	public static final int COUNT = 0;
+	public static final int MEAN_OUTPUT = 1;
+	public static final int MEAN_TARGET = 2;
+	public static final int OUTPUT_DEVIATION = 3;
+	public static final int TARGET_DEVIATION = 4;
+	public static final int CODEVIATION = 5;
+	//Number of values holding the moments of a range of rows
+	public static final int SIZE = 6;
+	//Computes the sums over each block of rows
+	private static final ColumnKernel KERNEL = ColumnKernel.get();
+
+	private LinearScaling(){
+	}
+
+	/**
+	 * Adds a block of rows to moments
+	 * @param output the values of the expression
+	 * @param outputFrom the index in output of the first row
+	 * @param target the expected values
+	 * @param targetFrom the index in target of the first row
+	 * @param length the number of rows
+	 * @param moments the moments to add to
+	 * @param at the index of the moments in their array
+	 */
+	public static void add(double[] output, int outputFrom, double[] target, int targetFrom, int length,
+			double[] moments, int at){
+		if(length == 0){
+			return;
+		}
+		double meanOutput = KERNEL.sum(output, outputFrom, length) / length;
+		double meanTarget = KERNEL.sum(target, targetFrom, length) / length;
+		double[] sums = new double[3];
+		KERNEL.deviations(output, outputFrom, target, targetFrom, length, meanOutput, meanTarget, sums);
+		merge(moments, at, length, meanOutput, meanTarget, sums[0], sums[1], sums[2]);
+	}
+
+	/**
+	 * Adds the moments of a range of rows to the moments of the rows before it
+	 * @param moments the moments to add to
+	 * @param at the index of the moments in their array
+	 * @param other the moments to add
+	 * @param otherAt the index of the added moments in their array
+	 */
+	public static void merge(double[] moments, int at, double[] other, int otherAt){
+		merge(moments, at, other[otherAt + COUNT], other[otherAt + MEAN_OUTPUT], other[otherAt + MEAN_TARGET],
+				other[otherAt + OUTPUT_DEVIATION], other[otherAt + TARGET_DEVIATION], other[otherAt + CODEVIATION]);
+	}
+
+	private static void merge(double[] moments, int at, double count, double meanOutput, double meanTarget,
+			double outputDeviation, double targetDeviation, double codeviation){
+		double before = moments[at + COUNT];
+		if(count == 0){
+			return;
+		}
+		if(before == 0){
+			moments[at + COUNT] = count;
+			moments[at + MEAN_OUTPUT] = meanOutput;
+			moments[at + MEAN_TARGET] = meanTarget;
+			moments[at + OUTPUT_DEVIATION] = outputDeviation;
+			moments[at + TARGET_DEVIATION] = targetDeviation;
+			moments[at + CODEVIATION] = codeviation;
+			return;
+		}
+		double total = before + count;
+		double dOutput = meanOutput - moments[at + MEAN_OUTPUT];
+		double dTarget = meanTarget - moments[at + MEAN_TARGET];
+		double weight = before * count / total;
+		moments[at + COUNT] = total;
+		moments[at + MEAN_OUTPUT] += dOutput * count / total;
+		moments[at + MEAN_TARGET] += dTarget * count / total;
+		moments[at + OUTPUT_DEVIATION] += outputDeviation + dOutput * dOutput * weight;
+		moments[at + TARGET_DEVIATION] += targetDeviation + dTarget * dTarget * weight;
+		moments[at + CODEVIATION] += codeviation + dOutput * dTarget * weight;
+	}
+
+	/**
+	 * @param moments the moments of a range of rows
+	 * @param at the index of the moments in their array
+	 * @return the scale b minimising the squared error over the rows, 0 if the expression is constant
+	 */
+	public static double scale(double[] moments, int at){
+		double outputDeviation = moments[at + OUTPUT_DEVIATION];
+		return outputDeviation > 0 ? moments[at + CODEVIATION] / outputDeviation : 0;
+	}
+
+	/**
+	 * @param moments the moments of a range of rows
+	 * @param at the index of the moments in their array
+	 * @return the offset a minimising the squared error over the rows
+	 */
+	public static double offset(double[] moments, int at){
+		return moments[at + MEAN_TARGET] - scale(moments, at) * moments[at + MEAN_OUTPUT];
+	}
+
+	/**
+	 * @param moments the moments of a range of rows
+	 * @param at the index of the moments in their array
+	 * @return the sum of the squared errors of a + b * f(x) over the rows with the best a and b
+	 */
+	public static double squaredError(double[] moments, int at){
+		double outputDeviation = moments[at + OUTPUT_DEVIATION];
+		double targetDeviation = moments[at + TARGET_DEVIATION];
+		if(!(outputDeviation > 0)){
+			//A constant expression is best scaled to the mean of the targets; NaN stays NaN
+			return outputDeviation == 0 ? targetDeviation : outputDeviation;
+		}
+		double codeviation = moments[at + CODEVIATION];
+		//Rounding can leave a tiny negative remainder for an exact fit
+		return Math.max(0, targetDeviation - codeviation * (codeviation / outputDeviation));
+	}
+
+	/**
+	 * @param moments the moments of a range of rows
+	 * @param at the index of the moments in their array
+	 * @param scale the scale b
+	 * @param offset the offset a
+	 * @return the sum of the squared errors of a + b * f(x) over the rows with a given a and b
+	 */
+	public static double squaredError(double[] moments, int at, double scale, double offset){
+		double count = moments[at + COUNT];
+		if(count == 0){
+			return 0;
+		}
+		double meanError = moments[at + MEAN_TARGET] - offset - scale * moments[at + MEAN_OUTPUT];
+		double error = count * meanError * meanError + moments[at + TARGET_DEVIATION]
+				- 2 * scale * moments[at + CODEVIATION] + scale * scale * moments[at + OUTPUT_DEVIATION];
+		//Rounding can leave a tiny negative remainder for an exact fit; NaN stays NaN
+		return error < 0 ? 0 : error;
+	}
+}
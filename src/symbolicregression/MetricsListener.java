@@ -0,0 +1,38 @@
+package symbolicregression;
+
+/**
+ * Receives the metrics of every generation of the islands it is added to. Islands evolving
+ * on different threads call the listener concurrently.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public interface MetricsListener {
+	//Listener recording Flight Recorder events, compiled separately for Java 11
+	String FLIGHT_RECORDER = "symbolicregression.FlightRecorderListener";
+
+	/**
+	 * Called by an island once it has produced a generation
+	 * @param metrics the metrics of the generation
+	 */
+	void generationEvolved(GenerationMetrics metrics);
+
+	/**
+	 * Loads the listener recording each generation as a JDK Flight Recorder event. The events
+	 * are only recorded while a recording is running, for example one started with
+	 * -XX:StartFlightRecording.
+	 * @return the listener, or null if the JVM has no Flight Recorder or the listener was not built
+	 */
+	static MetricsListener flightRecorder(){
+		try{
+			return (MetricsListener) Class.forName(FLIGHT_RECORDER).getConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException err){
+			return null;
+		}
+		catch(LinkageError err){
+			//Running on a JVM older than the listener's class file
+			return null;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package symbolicregression;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the metrics of every generation as a line of a CSV file. Each line is flushed as
+ * it is written so the log can be followed while a run is in progress.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class MetricsLog implements MetricsListener, Closeable {
+	public static final String HEADER = "island,generation,breeding_ns,evaluation_ns,sorting_ns,optimization_ns,total_ns,"
+			+ "evaluations,evaluations_per_s,node_evaluations,node_evaluations_per_s,mean_size,max_size,"
+			+ "rejected,aborted,optimized,allocated_bytes,allocation_rate_bytes_per_s";
+
+	private final Writer out;
+	//First error writing the log, after which nothing more is written
+	private IOException error;
+
+	/**
+	 * Creates a log, replacing any file of the same name
+	 * @param fileName the name of the file to write
+	 * @throws IOException if the file cannot be created
+	 */
+	public MetricsLog(String fileName) throws IOException{
+		out = new BufferedWriter(new FileWriter(fileName));
+		out.write(HEADER);
+		out.write('\n');
+		out.flush();
+	}
+
+	@Override
+	public synchronized void generationEvolved(GenerationMetrics metrics){
+		if(error != null){
+			return;
+		}
+		StringBuilder line = new StringBuilder();
+		line.append(metrics.getIsland()).append(',')
+			.append(metrics.getGeneration()).append(',')
+			.append(metrics.getBreedingTime()).append(',')
+			.append(metrics.getEvaluationTime()).append(',')
+			.append(metrics.getSortingTime()).append(',')
+			.append(metrics.getOptimizationTime()).append(',')
+			.append(metrics.getTotalTime()).append(',')
+			.append(metrics.getEvaluations()).append(',')
+			.append(metrics.getEvaluationsPerSecond()).append(',')
+			.append(metrics.getNodeEvaluations()).append(',')
+			.append(metrics.getNodeEvaluationsPerSecond()).append(',')
+			.append(metrics.getMeanSize()).append(',')
+			.append(metrics.getMaxSize()).append(',')
+			.append(metrics.getRejected()).append(',')
+			.append(metrics.getAborted()).append(',')
+			.append(metrics.getOptimized()).append(',')
+			.append(metrics.getAllocatedBytes()).append(',')
+			.append(metrics.getAllocationRate()).append('\n');
+		try{
+			out.write(line.toString());
+			out.flush();
+		}
+		catch(IOException err){
+			//A failing log must not stop the run
+			error = err;
+			System.out.println("Could not write metrics: " + err.getMessage());
+		}
+	}
+
+	/**
+	 * @return the first error writing the log, or null if there was none
+	 */
+	public synchronized IOException getError(){
+		return error;
+	}
+
+	@Override
+	public synchronized void close() throws IOException{
+		out.close();
+	}
+}
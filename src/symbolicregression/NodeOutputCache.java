@@ -0,0 +1,297 @@
+package symbolicregression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the value of every operator node of chosen trees over the training rows of a data
+ * set, keyed by a hash of the subtree the node roots. An offspring bred from a cached tree
+ * by crossover or mutation shares most of its subtrees with that tree, so it can be scored
+ * by a program in which each cached subtree is read like an extra column. Only the nodes on
+ * the changed paths are then evaluated. The values are computed exactly as Program computes
+ * them, so the fitness found is the same as without the cache.
+ * The cache is filled before a batch of trees is scored and only read while scoring.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class NodeOutputCache {
+	private final DataSet data;
+	//Greatest number of values kept
+	private final long capacity;
+	private long size;
+	private final Map<Long, double[]> outputs = new HashMap<Long, double[]>();
+
+	/**
+	 * Constructs an empty cache
+	 * @param data the data set over whose training rows the nodes are evaluated, with its rows held in memory
+	 * @param capacity the greatest number of values kept, each cached node taking one per row
+	 */
+	public NodeOutputCache(DataSet data, long capacity){
+		this.data = data;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return the data set over whose training rows the nodes are evaluated
+	 */
+	public DataSet getDataSet(){
+		return data;
+	}
+
+	/**
+	 * @return the number of subtrees whose values are kept
+	 */
+	public int getNodeCount(){
+		return outputs.size();
+	}
+
+	/**
+	 * Evaluates every operator node of a tree and keeps the values of the nodes not already
+	 * cached while there is room for them
+	 * @param tree the tree to cache
+	 * @param previous a cache over the same data set whose values are reused instead of being
+	 * evaluated again, or null
+	 */
+	public void add(ExpressionTree tree, NodeOutputCache previous){
+		if(previous != null && previous.data != data){
+			previous = null;
+		}
+		Program program = tree.getProgram();
+		int[] opcodes = program.getOpcodes();
+		double[] operands = program.getOperands();
+		int rows = data.getTrainingSize();
+		double[][] columns = data.getColumns();
+		//The value of each stack entry, or null for a coefficient whose value is in constants
+		double[][] values = new double[program.getMaxDepth()][];
+		double[] constants = new double[values.length];
+		long[] hashes = new long[values.length];
+		int top = -1;
+		for(int pc = 0; pc < opcodes.length; pc++){
+			int opcode = opcodes[pc];
+			if(opcode == Program.PUSH_COEFFICIENT){
+				top++;
+				values[top] = null;
+				constants[top] = operands[pc];
+				hashes[top] = leafHash(opcode, operands[pc]);
+				continue;
+			}
+			if(opcode == Program.PUSH_VARIABLE){
+				int variable = (int) operands[pc];
+				if(variable < 0 || variable >= columns.length){
+					return;
+				}
+				top++;
+				values[top] = columns[variable];
+				hashes[top] = leafHash(opcode, operands[pc]);
+				continue;
+			}
+			long hash = combine(opcode, hashes[top - 1], hashes[top]);
+			double[] output = outputs.get(hash);
+			if(output == null && previous != null){
+				output = previous.outputs.get(hash);
+				if(output != null && size + rows <= capacity){
+					outputs.put(hash, output);
+					size += rows;
+				}
+			}
+			if(output == null){
+				output = apply(opcode, values[top - 1], constants[top - 1], values[top], constants[top], rows);
+				if(size + rows <= capacity){
+					outputs.put(hash, output);
+					size += rows;
+				}
+			}
+			top--;
+			values[top] = output;
+			hashes[top] = hash;
+		}
+	}
+
+	/**
+	 * Applies an operator to every row the same way Program does
+	 * @param opcode the operator's instruction
+	 * @param left the values of the left operand, or null if it is the coefficient leftValue
+	 * @param leftValue the left coefficient
+	 * @param right the values of the right operand, or null if it is the coefficient rightValue
+	 * @param rightValue the right coefficient
+	 * @param rows the number of rows
+	 * @return the values of the operator node
+	 */
+	private static double[] apply(int opcode, double[] left, double leftValue, double[] right, double rightValue, int rows){
+		double[] output = new double[rows];
+		for(int row = 0; row < rows; row++){
+			double a = left == null ? leftValue : left[row];
+			double b = right == null ? rightValue : right[row];
+			switch(opcode){
+			case Program.ADD:
+				output[row] = a + b;
+				break;
+			case Program.SUBTRACT:
+				output[row] = a - b;
+				break;
+			case Program.MULTIPLY:
+				output[row] = a * b;
+				break;
+			default:
+				output[row] = b == 0.0 ? 1000000000 : a / b;
+				break;
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * Lets a tree be scored by reading the cached values of its subtrees until detach is called.
+	 * Nothing is done if none of the tree's subtrees are cached.
+	 * @param tree the tree to be scored on the cache's data set
+	 */
+	public void attach(ExpressionTree tree){
+		Program program = tree.getProgram();
+		int[] opcodes = program.getOpcodes();
+		double[] operands = program.getOperands();
+		int[] newOpcodes = new int[opcodes.length];
+		double[] newOperands = new double[opcodes.length];
+		//Position in the new program where each stack entry's code starts
+		int[] starts = new int[program.getMaxDepth()];
+		long[] hashes = new long[starts.length];
+		double[][] source = data.getColumns();
+		List<double[]> columns = new ArrayList<double[]>();
+		Map<Long, Integer> indices = new HashMap<Long, Integer>();
+		int length = 0;
+		int top = -1;
+		for(int pc = 0; pc < opcodes.length; pc++){
+			int opcode = opcodes[pc];
+			if(opcode == Program.PUSH_COEFFICIENT || opcode == Program.PUSH_VARIABLE){
+				top++;
+				starts[top] = length;
+				hashes[top] = leafHash(opcode, operands[pc]);
+				newOpcodes[length] = opcode;
+				newOperands[length++] = operands[pc];
+				continue;
+			}
+			long hash = combine(opcode, hashes[top - 1], hashes[top]);
+			top--;
+			hashes[top] = hash;
+			double[] output = outputs.get(hash);
+			if(output == null){
+				newOpcodes[length] = opcode;
+				newOperands[length++] = 0;
+				continue;
+			}
+			//Replace the subtree's code with a read of its cached values
+			Integer index = indices.get(hash);
+			if(index == null){
+				index = source.length + columns.size();
+				indices.put(hash, index);
+				columns.add(output);
+			}
+			length = starts[top];
+			newOpcodes[length] = Program.PUSH_VARIABLE;
+			newOperands[length++] = index;
+		}
+		if(columns.isEmpty()){
+			return;
+		}
+		double[][] extended = new double[source.length + columns.size()][];
+		System.arraycopy(source, 0, extended, 0, source.length);
+		for(int i = 0; i < columns.size(); i++){
+			extended[source.length + i] = columns.get(i);
+		}
+		Program incremental = new Program(Arrays.copyOf(newOpcodes, length), Arrays.copyOf(newOperands, length));
+		tree.setIncrementalExpression(new Incremental(incremental, extended, source, program));
+	}
+
+	/**
+	 * Makes a tree attached to the cache be scored by its own program again, releasing the
+	 * cached values it refers to
+	 * @param tree the tree
+	 */
+	public static void detach(ExpressionTree tree){
+		tree.setIncrementalExpression(null);
+	}
+
+	private static long leafHash(int opcode, double operand){
+		return mix(opcode * 31L + Double.doubleToLongBits(operand));
+	}
+
+	private static long combine(int opcode, long left, long right){
+		return mix((opcode * 31L + left) * 31L + right);
+	}
+
+	private static long mix(long h){
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * A tree's program with its cached subtrees read as extra columns. The extra columns only
+	 * hold the training rows of one data set, so other rows are scored by the full program.
+	 */
+	static class Incremental implements CompiledExpression {
+		private final Program program;
+		private final double[][] columns;
+		//Columns of the data set the cached values were found on
+		private final double[][] source;
+		private final Program full;
+
+		public Incremental(Program program, double[][] columns, double[][] source, Program full){
+			this.program = program;
+			this.columns = columns;
+			this.source = source;
+			this.full = full;
+		}
+
+		/**
+		 * @return the number of instructions run for each row
+		 */
+		public int getSize(){
+			return program.getOpcodes().length;
+		}
+
+		/**
+		 * @param columns the columns passed to the expression
+		 * @param to the last row to evaluate, exclusive
+		 * @return true if the rows have cached values
+		 */
+		private boolean covers(double[][] columns, int to){
+			return columns == source && to <= this.columns[this.columns.length - 1].length;
+		}
+
+		@Override
+		public void evaluate(double[][] columns, int from, int to, double[] output) throws IllegalArgumentException{
+			if(covers(columns, to)){
+				program.evaluate(this.columns, from, to, output);
+			}
+			else{
+				full.evaluate(columns, from, to, output);
+			}
+		}
+
+		@Override
+		public double squaredError(double[][] columns, double[] target, int from, int to) throws IllegalArgumentException{
+			if(covers(columns, to)){
+				return program.squaredError(this.columns, target, from, to);
+			}
+			return full.squaredError(columns, target, from, to);
+		}
+
+		@Override
+		public void moments(double[][] columns, double[] target, int from, int to, double[] moments, int at)
+				throws IllegalArgumentException{
+			if(covers(columns, to)){
+				program.moments(this.columns, target, from, to, moments, at);
+			}
+			else{
+				full.moments(columns, target, from, to, moments, at);
+			}
+		}
+	}
+}
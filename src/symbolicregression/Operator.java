@@ -1,3 +1,4 @@
+package symbolicregression;
 
 public enum Operator {
 	ADD, SUBTRACT, MULTIPLY, DIVIDE;
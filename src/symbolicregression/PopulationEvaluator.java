@@ -0,0 +1,130 @@
+package symbolicregression;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores a batch of expression trees concurrently. The data set is only read while
+ * scoring, so one data set is shared by every worker. A streaming data set scores the
+ * whole batch in one pass over its file instead, sharing each block of rows among the workers.
+ * 
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class PopulationEvaluator {
+	//Greatest number of trees scored by a single task
+	public static final int BATCH_SIZE = 4;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructs an evaluator with its own pool of worker threads
+	 * @param threads the number of worker threads
+	 */
+	public PopulationEvaluator(int threads){
+		this(new ForkJoinPool(threads));
+	}
+
+	/**
+	 * Constructs an evaluator running on an existing pool
+	 * @param pool the pool running the evaluation tasks
+	 */
+	public PopulationEvaluator(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the pool running the evaluation tasks
+	 */
+	public ForkJoinPool getPool(){
+		return pool;
+	}
+
+	/**
+	 * Sets the fitness of every tree in a list. Trees whose fitness is -1 contain an illegal
+	 * operation and are not scored.
+	 * @param trees the trees to score
+	 * @param data the data set used to calculate fitness
+	 * @param testing whether the test set is included in the fitness
+	 */
+	public void evaluate(List<ExpressionTree> trees, DataSet data, boolean testing){
+		if(data instanceof StreamingDataSet){
+			((StreamingDataSet) data).evaluate(trees, testing, Double.NaN);
+			return;
+		}
+		pool.invoke(new EvaluationTask(trees, data, testing, Double.NaN, 0, trees.size()));
+	}
+
+	/**
+	 * Sets the training set fitness of every tree in a list that can beat a bound. Trees
+	 * that cannot are rejected as soon as their partial error proves it, keeping a lower
+	 * bound of their fitness. Trees whose fitness is -1 are not scored.
+	 * @param trees the trees to score
+	 * @param data the data set used to calculate fitness
+	 * @param bound the fitness a tree must not exceed to be accepted
+	 */
+	public void evaluate(List<ExpressionTree> trees, DataSet data, double bound){
+		if(data instanceof StreamingDataSet){
+			((StreamingDataSet) data).evaluate(trees, false, bound);
+			return;
+		}
+		pool.invoke(new EvaluationTask(trees, data, false, bound, 0, trees.size()));
+	}
+
+	/**
+	 * Stops the worker threads once the submitted tasks are done
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	/**
+	 * Task scoring a range of a list of trees, split in half until the range is a single batch
+	 */
+	private static class EvaluationTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<ExpressionTree> trees;
+		private final DataSet data;
+		private final boolean testing;
+		//Rejection bound, or NaN to score every tree fully
+		private final double bound;
+		private final int from;
+		private final int to;
+
+		public EvaluationTask(List<ExpressionTree> trees, DataSet data, boolean testing, double bound, int from, int to){
+			this.trees = trees;
+			this.data = data;
+			this.testing = testing;
+			this.bound = bound;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from <= BATCH_SIZE){
+				for(int i = from; i < to; i++){
+					ExpressionTree tree = trees.get(i);
+					if(tree.getFitness() == -1){
+						continue;
+					}
+					if(Double.isNaN(bound)){
+						tree.setFitness(data.fitness(tree, testing));
+						continue;
+					}
+					double fitness = data.fitness(tree, bound);
+					if(fitness > bound){
+						tree.reject(fitness);
+					}
+					else{
+						tree.setFitness(fitness);
+					}
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new EvaluationTask(trees, data, testing, bound, from, middle),
+					new EvaluationTask(trees, data, testing, bound, middle, to));
+		}
+	}
+}
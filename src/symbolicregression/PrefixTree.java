@@ -0,0 +1,331 @@
+package symbolicregression;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Stores an expression in flat arrays in prefix order, each node being described by its
+ * type, its value and the size of the subtree it roots. Crossover and mutation splice
+ * slices of the arrays instead of copying linked nodes. A prefix tree is never changed
+ * once constructed, so trees can share one.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class PrefixTree {
+	public static final byte OPERATOR = (byte) Type.OPERATOR.ordinal();
+	public static final byte VARIABLE = (byte) Type.VARIABLE.ordinal();
+	public static final byte COEFFICIENT = (byte) Type.COEFFICIENT.ordinal();
+	private static final Operator[] OPERATORS = Operator.values();
+
+	private final byte[] types;
+	//Operator ordinal, variable column index or coefficient of each node
+	private final double[] values;
+	private final int[] sizes;
+
+	/**
+	 * Constructs a prefix tree from its arrays, which must not be changed afterwards
+	 * @param types the type of each node
+	 * @param values the operator ordinal, variable column index or coefficient of each node
+	 * @param sizes the size of the subtree rooted at each node
+	 */
+	public PrefixTree(byte[] types, double[] values, int[] sizes){
+		this.types = types;
+		this.values = values;
+		this.sizes = sizes;
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size(){
+		return types.length;
+	}
+
+	/**
+	 * @param position the position of a node
+	 * @return the type of the node
+	 */
+	public byte getType(int position){
+		return types[position];
+	}
+
+	/**
+	 * @param position the position of an operator node
+	 * @return the operator of the node
+	 */
+	public Operator getOperator(int position){
+		return OPERATORS[(int) values[position]];
+	}
+
+	/**
+	 * @param position the position of a variable or coefficient node
+	 * @return the variable column index or coefficient of the node
+	 */
+	public double getValue(int position){
+		return values[position];
+	}
+
+	/**
+	 * @param position the position of a node
+	 * @return the number of nodes in the subtree rooted at the node
+	 */
+	public int getSubtreeSize(int position){
+		return sizes[position];
+	}
+
+	/**
+	 * @param random a random number generator
+	 * @return the position of a random node other than the root
+	 */
+	public int getRandomPosition(Random random){
+		return 1 + random.nextInt(types.length - 1);
+	}
+
+	/**
+	 * Returns a tree with the subtree at a position replaced by another tree
+	 * @param position the position of the subtree to replace
+	 * @param subtree the tree to put in its place
+	 * @return the new tree
+	 */
+	public PrefixTree replace(int position, PrefixTree subtree){
+		int removed = sizes[position];
+		int added = subtree.types.length;
+		int length = types.length - removed + added;
+		int tail = position + removed;
+		byte[] newTypes = new byte[length];
+		double[] newValues = new double[length];
+		int[] newSizes = new int[length];
+		System.arraycopy(types, 0, newTypes, 0, position);
+		System.arraycopy(values, 0, newValues, 0, position);
+		System.arraycopy(sizes, 0, newSizes, 0, position);
+		System.arraycopy(subtree.types, 0, newTypes, position, added);
+		System.arraycopy(subtree.values, 0, newValues, position, added);
+		System.arraycopy(subtree.sizes, 0, newSizes, position, added);
+		System.arraycopy(types, tail, newTypes, position + added, types.length - tail);
+		System.arraycopy(values, tail, newValues, position + added, types.length - tail);
+		System.arraycopy(sizes, tail, newSizes, position + added, types.length - tail);
+		//Nodes before the position whose subtree covers it are its ancestors
+		for(int i = 0; i < position; i++){
+			if(i + sizes[i] > position){
+				newSizes[i] += added - removed;
+			}
+		}
+		return new PrefixTree(newTypes, newValues, newSizes);
+	}
+
+	/**
+	 * @param position the position of a node
+	 * @return a tree holding a copy of the subtree rooted at the node
+	 */
+	public PrefixTree subtree(int position){
+		int end = position + sizes[position];
+		return new PrefixTree(Arrays.copyOfRange(types, position, end), Arrays.copyOfRange(values, position, end),
+				Arrays.copyOfRange(sizes, position, end));
+	}
+
+	/**
+	 * Changes each coefficient by a value between minMutation and maxMutation with the
+	 * probability of mutationRate, visiting the coefficients in the same order as
+	 * ExpressionTreeNode.mutate
+	 * @param mutationRate the probability to mutate each coefficient
+	 * @param minMutation the smallest mutation amount
+	 * @param maxMutation the largest mutation amount
+	 * @param random a random number generator
+	 * @return the mutated tree, which shares the type and size arrays of this tree
+	 */
+	public PrefixTree mutate(double mutationRate, int minMutation, int maxMutation, Random random){
+		double[] newValues = null;
+		for(int i = 0; i < types.length; i++){
+			if(types[i] == COEFFICIENT && random.nextDouble() < mutationRate){
+				if(newValues == null){
+					newValues = values.clone();
+				}
+				newValues[i] += (double) (random.nextDouble() * (maxMutation - minMutation + 1) + minMutation);
+			}
+		}
+		if(newValues == null){
+			return this;
+		}
+		return new PrefixTree(types, newValues, sizes);
+	}
+
+	/**
+	 * @return the coefficients of the tree from left to right
+	 */
+	public double[] getCoefficients(){
+		int count = 0;
+		for(byte type : types){
+			if(type == COEFFICIENT){
+				count++;
+			}
+		}
+		double[] coefficients = new double[count];
+		int next = 0;
+		for(int i = 0; i < types.length; i++){
+			if(types[i] == COEFFICIENT){
+				coefficients[next++] = values[i];
+			}
+		}
+		return coefficients;
+	}
+
+	/**
+	 * Returns a tree of the same shape with different coefficients
+	 * @param coefficients the new coefficients from left to right
+	 * @return the new tree, which shares the type and size arrays of this tree
+	 */
+	public PrefixTree setCoefficients(double[] coefficients){
+		double[] newValues = values.clone();
+		int next = 0;
+		for(int i = 0; i < types.length; i++){
+			if(types[i] == COEFFICIENT){
+				newValues[i] = coefficients[next++];
+			}
+		}
+		return new PrefixTree(types, newValues, sizes);
+	}
+
+	/**
+	 * Simplifies the tree with TermRewriter
+	 * @return the simplified tree, this tree if nothing could be simplified, or null if the
+	 * tree contains an illegal operation
+	 */
+	public PrefixTree simplify(){
+		return TermRewriter.simplify(this);
+	}
+
+	/**
+	 * @return the tree compiled to a postfix program
+	 */
+	public Program compile(){
+		int[] opcodes = new int[types.length];
+		double[] operands = new double[types.length];
+		compile(0, opcodes, operands, 0);
+		return new Program(opcodes, operands);
+	}
+
+	private int compile(int position, int[] opcodes, double[] operands, int pc){
+		if(types[position] == COEFFICIENT){
+			opcodes[pc] = Program.PUSH_COEFFICIENT;
+			operands[pc] = values[position];
+			return pc + 1;
+		}
+		if(types[position] == VARIABLE){
+			opcodes[pc] = Program.PUSH_VARIABLE;
+			operands[pc] = values[position];
+			return pc + 1;
+		}
+		int left = position + 1;
+		pc = compile(left, opcodes, operands, pc);
+		pc = compile(left + sizes[left], opcodes, operands, pc);
+		opcodes[pc] = Program.ADD + (int) values[position];
+		return pc + 1;
+	}
+
+	/**
+	 * Writes the tree in a compact binary form: the number of nodes followed by each node's
+	 * type and its operator byte, variable column short or coefficient double
+	 * @param out the output to write to
+	 * @throws IOException if the output cannot be written
+	 */
+	public void write(DataOutput out) throws IOException{
+		out.writeInt(types.length);
+		for(int i = 0; i < types.length; i++){
+			out.writeByte(types[i]);
+			if(types[i] == OPERATOR){
+				out.writeByte((int) values[i]);
+			}
+			else if(types[i] == VARIABLE){
+				out.writeShort((int) values[i]);
+			}
+			else{
+				out.writeDouble(values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a tree written by write
+	 * @param in the input to read from
+	 * @return the tree
+	 * @throws IOException if the input cannot be read or does not hold a valid tree
+	 */
+	public static PrefixTree read(DataInput in) throws IOException{
+		int length = in.readInt();
+		if(length < 1 || length > Short.MAX_VALUE){
+			throw new IOException("Invalid tree size " + length);
+		}
+		byte[] types = new byte[length];
+		double[] values = new double[length];
+		int[] sizes = new int[length];
+		for(int i = 0; i < length; i++){
+			types[i] = in.readByte();
+			if(types[i] == OPERATOR){
+				values[i] = in.readByte();
+				if(values[i] < 0 || values[i] >= OPERATORS.length){
+					throw new IOException("Invalid operator");
+				}
+			}
+			else if(types[i] == VARIABLE){
+				values[i] = in.readShort();
+				if(values[i] < 0){
+					throw new IOException("Invalid variable");
+				}
+			}
+			else if(types[i] == COEFFICIENT){
+				values[i] = in.readDouble();
+			}
+			else{
+				throw new IOException("Invalid node type");
+			}
+		}
+		fillSizes(types, sizes);
+		return new PrefixTree(types, values, sizes);
+	}
+
+	/**
+	 * Computes the subtree sizes of a tree from its types. The nodes are visited from the
+	 * last, keeping a stack of the sizes of the subtrees not yet joined to an operator, so
+	 * deeply nested input cannot overflow the call stack.
+	 * @param types the type of each node in prefix order
+	 * @param sizes receives the size of the subtree rooted at each node
+	 * @throws IOException if the types are not exactly one tree
+	 */
+	private static void fillSizes(byte[] types, int[] sizes) throws IOException{
+		int[] stack = new int[types.length];
+		int top = 0;
+		for(int position = types.length - 1; position >= 0; position--){
+			int size = 1;
+			if(types[position] == OPERATOR){
+				if(top < 2){
+					throw new IOException("Invalid tree");
+				}
+				size += stack[--top] + stack[--top];
+			}
+			sizes[position] = size;
+			stack[top++] = size;
+		}
+		if(top != 1){
+			throw new IOException("Invalid tree");
+		}
+	}
+
+	/**
+	 * Rounds coefficients within EPSILON of an integer to that integer
+	 * @param value the coefficient
+	 * @return the rounded coefficient
+	 */
+	static double round(double value){
+		if(value - ExpressionTree.EPSILON < Math.floor(value)){
+			return Math.floor(value);
+		}
+		else if(value + ExpressionTree.EPSILON > Math.ceil(value)){
+			return Math.ceil(value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,216 @@
+package symbolicregression;
+
+import java.util.Arrays;
+
+/**
+ * Stores an expression as a postfix program for a stack machine that evaluates
+ * the expression over a block of data set rows at a time
+ * 
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class Program implements CompiledExpression {
+	public static final int PUSH_COEFFICIENT = 0;
+	public static final int PUSH_VARIABLE = 1;
+	public static final int ADD = 2;
+	public static final int SUBTRACT = 3;
+	public static final int MULTIPLY = 4;
+	public static final int DIVIDE = 5;
+	//Number of rows evaluated by each pass over the program
+	public static final int BLOCK_SIZE = 256;
+	//Applies each instruction and the error sums to a block of rows
+	private static final ColumnKernel KERNEL = ColumnKernel.get();
+	//Stack buffer of each evaluating thread, grown to the deepest program it has run
+	private static final ThreadLocal<double[][]> STACKS = new ThreadLocal<double[][]>(){
+		@Override
+		protected double[][] initialValue(){
+			return new double[0][];
+		}
+	};
+
+	private final int[] opcodes;
+	//Coefficient value or variable column index of each push instruction
+	private final double[] operands;
+	private final int maxDepth;
+
+	/**
+	 * Constructs a program
+	 * @param opcodes the instructions of the program in postfix order
+	 * @param operands the coefficient or variable column index used by each push instruction
+	 * @throws IllegalArgumentException if the program does not leave exactly one value on the stack
+	 */
+	public Program(int[] opcodes, double[] operands) throws IllegalArgumentException{
+		this.opcodes = opcodes;
+		this.operands = operands;
+		int depth = 0;
+		int max = 0;
+		for(int opcode : opcodes){
+			if(opcode == PUSH_COEFFICIENT || opcode == PUSH_VARIABLE){
+				depth++;
+			}
+			else{
+				depth--;
+			}
+			if(depth < 1){
+				throw new IllegalArgumentException("Invalid program");
+			}
+			max = Math.max(max, depth);
+		}
+		if(depth != 1){
+			throw new IllegalArgumentException("Invalid program");
+		}
+		this.maxDepth = max;
+	}
+
+	/**
+	 * @return the instructions of the program in postfix order
+	 */
+	public int[] getOpcodes(){
+		return opcodes;
+	}
+
+	/**
+	 * @return the coefficient or variable column index used by each push instruction
+	 */
+	public double[] getOperands(){
+		return operands;
+	}
+
+	/**
+	 * @return the greatest number of values on the stack while running the program
+	 */
+	public int getMaxDepth(){
+		return maxDepth;
+	}
+
+	/**
+	 * Runs the program for a single row, one value at a time
+	 * @param columns the column of values for each variable
+	 * @param row the row to evaluate
+	 * @return the value of the expression for the row
+	 * @throws IllegalArgumentException if a variable has no column
+	 */
+	public double evaluate(double[][] columns, int row) throws IllegalArgumentException{
+		double[] stack = new double[maxDepth];
+		int top = -1;
+		for(int pc = 0; pc < opcodes.length; pc++){
+			int opcode = opcodes[pc];
+			if(opcode == PUSH_COEFFICIENT){
+				stack[++top] = operands[pc];
+				continue;
+			}
+			if(opcode == PUSH_VARIABLE){
+				int variable = (int) operands[pc];
+				if(variable < 0 || variable >= columns.length){
+					throw new IllegalArgumentException("Undefined variable");
+				}
+				stack[++top] = columns[variable][row];
+				continue;
+			}
+			double right = stack[top--];
+			switch(opcode){
+			case ADD:
+				stack[top] += right;
+				break;
+			case SUBTRACT:
+				stack[top] -= right;
+				break;
+			case MULTIPLY:
+				stack[top] *= right;
+				break;
+			default:
+				stack[top] = right == 0.0 ? ColumnKernel.DIVISION_BY_ZERO : stack[top] / right;
+				break;
+			}
+		}
+		return stack[0];
+	}
+
+	@Override
+	public void evaluate(double[][] columns, int from, int to, double[] output) throws IllegalArgumentException{
+		double[][] stack = getStack();
+		for(int start = from; start < to; start += BLOCK_SIZE){
+			int length = Math.min(BLOCK_SIZE, to - start);
+			run(columns, start, length, stack);
+			System.arraycopy(stack[0], 0, output, start - from, length);
+		}
+	}
+
+	@Override
+	public double squaredError(double[][] columns, double[] target, int from, int to) throws IllegalArgumentException{
+		double[][] stack = getStack();
+		double sum = 0;
+		for(int start = from; start < to; start += BLOCK_SIZE){
+			int length = Math.min(BLOCK_SIZE, to - start);
+			sum += KERNEL.squaredError(target, start, run(columns, start, length, stack), length);
+		}
+		return sum;
+	}
+
+	@Override
+	public void moments(double[][] columns, double[] target, int from, int to, double[] moments, int at) throws IllegalArgumentException{
+		double[][] stack = getStack();
+		for(int start = from; start < to; start += BLOCK_SIZE){
+			int length = Math.min(BLOCK_SIZE, to - start);
+			LinearScaling.add(run(columns, start, length, stack), 0, target, start, length, moments, at);
+		}
+	}
+
+	/**
+	 * @return the calling thread's stack buffer, with at least maxDepth rows of BLOCK_SIZE values
+	 */
+	private double[][] getStack(){
+		double[][] stack = STACKS.get();
+		if(stack.length < maxDepth){
+			stack = new double[maxDepth][BLOCK_SIZE];
+			STACKS.set(stack);
+		}
+		return stack;
+	}
+
+	/**
+	 * Runs the program over one block of rows, each instruction being applied to every row
+	 * of the block by the column kernel before moving to the next instruction
+	 * @param columns the column of values for each variable
+	 * @param start the first row of the block
+	 * @param length the number of rows in the block
+	 * @param stack a buffer of at least maxDepth rows of BLOCK_SIZE values for the stack
+	 * @return the row buffer holding the value of each row
+	 */
+	private double[] run(double[][] columns, int start, int length, double[][] stack){
+		int top = -1;
+		for(int pc = 0; pc < opcodes.length; pc++){
+			int opcode = opcodes[pc];
+			if(opcode == PUSH_COEFFICIENT){
+				Arrays.fill(stack[++top], 0, length, operands[pc]);
+				continue;
+			}
+			if(opcode == PUSH_VARIABLE){
+				int variable = (int) operands[pc];
+				if(variable < 0 || variable >= columns.length){
+					throw new IllegalArgumentException("Undefined variable");
+				}
+				System.arraycopy(columns[variable], start, stack[++top], 0, length);
+				continue;
+			}
+			double[] left = stack[top - 1];
+			double[] right = stack[top];
+			top--;
+			switch(opcode){
+			case ADD:
+				KERNEL.add(left, right, length);
+				break;
+			case SUBTRACT:
+				KERNEL.subtract(left, right, length);
+				break;
+			case MULTIPLY:
+				KERNEL.multiply(left, right, length);
+				break;
+			default:
+				KERNEL.divide(left, right, length);
+				break;
+			}
+		}
+		return stack[0];
+	}
+}
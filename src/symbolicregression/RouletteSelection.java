@@ -0,0 +1,66 @@
+package symbolicregression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Selects trees in proportion to the weight (total - fitness) / total, where total is the
+ * sum of the fitness of the population. The cumulative weights are computed once per
+ * generation and each selection is a binary search for the first cumulative weight above
+ * a random number between 0 and 1. Illegal trees and trees without a finite fitness have
+ * no weight and do not count towards the total.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class RouletteSelection implements Selection {
+	private List<ExpressionTree> trees = new ArrayList<ExpressionTree>();
+	private double[] cumulative = new double[0];
+
+	@Override
+	public void prepare(List<ExpressionTree> trees, DataSet data, Random random){
+		this.trees = trees;
+		double total = 0;
+		for(ExpressionTree tree : trees){
+			if(hasWeight(tree)){
+				total += tree.getFitness();
+			}
+		}
+		cumulative = new double[trees.size()];
+		double sum = 0;
+		for(int i = 0; i < cumulative.length; i++){
+			if(hasWeight(trees.get(i))){
+				//Every legal tree weighs the same when all of them fit exactly
+				sum += total > 0 ? (total - trees.get(i).getFitness()) / total : 1;
+			}
+			cumulative[i] = sum;
+		}
+	}
+
+	@Override
+	public ExpressionTree select(Random random){
+		double target = random.nextDouble();
+		//Binary search for the first cumulative weight above the target
+		int low = 0;
+		int high = cumulative.length;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(cumulative[middle] > target){
+				high = middle;
+			}
+			else{
+				low = middle + 1;
+			}
+		}
+		if(low == cumulative.length){
+			//No weight above the target, which happens when every tree is illegal
+			return trees.get(random.nextInt(trees.size()));
+		}
+		return trees.get(low);
+	}
+
+	private static boolean hasWeight(ExpressionTree tree){
+		return tree.getFitness() != -1 && !Double.isInfinite(tree.getFitness()) && !Double.isNaN(tree.getFitness());
+	}
+}
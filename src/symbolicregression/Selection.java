@@ -0,0 +1,56 @@
+package symbolicregression;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Chooses parents for crossover from a population. A selection is prepared once per
+ * generation so that each parent is then chosen without scanning the whole population.
+ * Trees with a fitness of -1 contain an illegal operation and are never chosen unless
+ * every tree does.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public interface Selection {
+	/**
+	 * The available selection methods
+	 */
+	public enum Method {
+		//Fitness proportionate selection with the original weights
+		ROULETTE,
+		//Best of TOURNAMENT_SIZE random trees
+		TOURNAMENT,
+		//Filters the population one training row at a time
+		LEXICASE;
+
+		/**
+		 * @return a new selection using this method
+		 */
+		public Selection create(){
+			switch(this){
+			case TOURNAMENT:
+				return new TournamentSelection(ExpressionTreeTester.TOURNAMENT_SIZE);
+			case LEXICASE:
+				return new LexicaseSelection(ExpressionTreeTester.LEXICASE_CASES);
+			default:
+				return new RouletteSelection();
+			}
+		}
+	}
+
+	/**
+	 * Prepares to select from a population
+	 * @param trees the population sorted from best to worst fitness
+	 * @param data the data set the population was scored on
+	 * @param random a random number generator
+	 */
+	void prepare(List<ExpressionTree> trees, DataSet data, Random random);
+
+	/**
+	 * Selects a tree from the prepared population
+	 * @param random a random number generator
+	 * @return the selected tree
+	 */
+	ExpressionTree select(Random random);
+}
@@ -0,0 +1,444 @@
+package symbolicregression;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Random;
+
+/**
+ * Stores an expression as immutable nodes that are interned: every subtree is held by a
+ * single node for as long as a tree uses it, so identical subtrees are shared by the whole
+ * population. Crossover and mutation build new nodes only on the path from the changed
+ * position to the root, and an offspring shares every other node with its parents.
+ * Positions are counted in prefix order, as in PrefixTree, so both forms of a tree make the
+ * same random choices.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public final class SharedTree {
+	private static final Operator[] OPERATORS = Operator.values();
+	//Number of segments, chosen by the top four bits of a node's hash
+	private static final int SEGMENTS = 16;
+	//Interned nodes, held weakly so that nodes no tree uses any more can be collected
+	private static final Segment[] TABLE = new Segment[SEGMENTS];
+	static{
+		for(int i = 0; i < SEGMENTS; i++){
+			TABLE[i] = new Segment();
+		}
+	}
+
+	private final byte type;
+	//Operator ordinal, variable column index or coefficient
+	private final double value;
+	private final SharedTree left;
+	private final SharedTree right;
+	private final int size;
+	private final int hash;
+	//Set once TermRewriter has left the subtree unchanged below another node, so that it is
+	//not rewritten again. Every node interned for the same subtree would be left unchanged,
+	//so a thread that does not yet see the flag only repeats the work.
+	private boolean stable;
+
+	private SharedTree(byte type, double value, SharedTree left, SharedTree right, int hash){
+		this.type = type;
+		this.value = value;
+		this.left = left;
+		this.right = right;
+		this.size = left == null ? 1 : 1 + left.size + right.size;
+		this.hash = hash;
+	}
+
+	/**
+	 * @param type PrefixTree.VARIABLE or PrefixTree.COEFFICIENT
+	 * @param value the variable column index or coefficient
+	 * @return the interned leaf
+	 */
+	public static SharedTree leaf(byte type, double value){
+		return intern(type, value, null, null);
+	}
+
+	/**
+	 * @param operator the operator
+	 * @param left the left operand
+	 * @param right the right operand
+	 * @return the interned operator node
+	 */
+	public static SharedTree operator(Operator operator, SharedTree left, SharedTree right){
+		return intern(PrefixTree.OPERATOR, operator.ordinal(), left, right);
+	}
+
+	/**
+	 * Returns the interned node with a type, value and children, creating it if there is none
+	 * @param type the type of the node
+	 * @param value the operator ordinal, variable column index or coefficient
+	 * @param left the interned left operand, or null for a leaf
+	 * @param right the interned right operand, or null for a leaf
+	 * @return the interned node
+	 */
+	private static SharedTree intern(byte type, double value, SharedTree left, SharedTree right){
+		long h = type * 31L + Double.doubleToLongBits(value);
+		if(left != null){
+			h = (h * 31 + left.hash) * 31 + right.hash;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		int hash = (int) h;
+		Segment segment = TABLE[hash >>> 28];
+		synchronized(segment){
+			return segment.intern(type, value, left, right, hash);
+		}
+	}
+
+	/**
+	 * @return the number of interned nodes still in use or not yet collected
+	 */
+	public static int getInternedCount(){
+		int count = 0;
+		for(Segment segment : TABLE){
+			synchronized(segment){
+				segment.expunge();
+				count += segment.count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param tree a flat tree
+	 * @return the interned form of the tree
+	 */
+	public static SharedTree of(PrefixTree tree){
+		return of(tree, 0);
+	}
+
+	private static SharedTree of(PrefixTree tree, int position){
+		if(tree.getType(position) != PrefixTree.OPERATOR){
+			return leaf(tree.getType(position), tree.getValue(position));
+		}
+		int left = position + 1;
+		return operator(tree.getOperator(position), of(tree, left), of(tree, left + tree.getSubtreeSize(left)));
+	}
+
+	/**
+	 * @return the tree in flat arrays
+	 */
+	public PrefixTree toPrefixTree(){
+		byte[] types = new byte[size];
+		double[] values = new double[size];
+		int[] sizes = new int[size];
+		flatten(types, values, sizes, 0);
+		return new PrefixTree(types, values, sizes);
+	}
+
+	private int flatten(byte[] types, double[] values, int[] sizes, int position){
+		types[position] = type;
+		values[position] = value;
+		sizes[position] = size;
+		if(left == null){
+			return position + 1;
+		}
+		return right.flatten(types, values, sizes, left.flatten(types, values, sizes, position + 1));
+	}
+
+	/**
+	 * @return the number of nodes in the tree
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return the type of the root
+	 */
+	public byte getType(){
+		return type;
+	}
+
+	/**
+	 * @return the operator of the root, which must be an operator node
+	 */
+	public Operator getOperator(){
+		return OPERATORS[(int) value];
+	}
+
+	/**
+	 * @return the variable column index or coefficient of the root, which must be a leaf
+	 */
+	public double getValue(){
+		return value;
+	}
+
+	/**
+	 * @return the left operand, or null for a leaf
+	 */
+	public SharedTree getLeft(){
+		return left;
+	}
+
+	/**
+	 * @return the right operand, or null for a leaf
+	 */
+	public SharedTree getRight(){
+		return right;
+	}
+
+	/**
+	 * @param random a random number generator
+	 * @return the position of a random node other than the root
+	 */
+	public int getRandomPosition(Random random){
+		return 1 + random.nextInt(size - 1);
+	}
+
+	/**
+	 * @param position the position of a node
+	 * @return the subtree rooted at the node, which is shared rather than copied
+	 */
+	public SharedTree subtree(int position){
+		SharedTree node = this;
+		while(position > 0){
+			position--;
+			if(position < node.left.size){
+				node = node.left;
+			}
+			else{
+				position -= node.left.size;
+				node = node.right;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Returns a tree with the subtree at a position replaced by another tree. Only the nodes
+	 * on the path from the position to the root are new.
+	 * @param position the position of the subtree to replace
+	 * @param subtree the tree to put in its place
+	 * @return the new tree
+	 */
+	public SharedTree replace(int position, SharedTree subtree){
+		if(position == 0){
+			return subtree;
+		}
+		position--;
+		if(position < left.size){
+			return operator(getOperator(), left.replace(position, subtree), right);
+		}
+		return operator(getOperator(), left, right.replace(position - left.size, subtree));
+	}
+
+	/**
+	 * Changes each coefficient by a value between minMutation and maxMutation with the
+	 * probability of mutationRate, visiting the coefficients in the same order as
+	 * PrefixTree.mutate
+	 * @param mutationRate the probability to mutate each coefficient
+	 * @param minMutation the smallest mutation amount
+	 * @param maxMutation the largest mutation amount
+	 * @param random a random number generator
+	 * @return the mutated tree, or this tree if no coefficient changed
+	 */
+	public SharedTree mutate(double mutationRate, int minMutation, int maxMutation, Random random){
+		if(left == null){
+			if(type == PrefixTree.COEFFICIENT && random.nextDouble() < mutationRate){
+				return leaf(type, value + (double) (random.nextDouble() * (maxMutation - minMutation + 1) + minMutation));
+			}
+			return this;
+		}
+		SharedTree newLeft = left.mutate(mutationRate, minMutation, maxMutation, random);
+		SharedTree newRight = right.mutate(mutationRate, minMutation, maxMutation, random);
+		if(newLeft == left && newRight == right){
+			return this;
+		}
+		return operator(getOperator(), newLeft, newRight);
+	}
+
+	/**
+	 * @return the coefficients of the tree from left to right
+	 */
+	public double[] getCoefficients(){
+		double[] coefficients = new double[countCoefficients()];
+		getCoefficients(coefficients, 0);
+		return coefficients;
+	}
+
+	private int countCoefficients(){
+		if(left == null){
+			return type == PrefixTree.COEFFICIENT ? 1 : 0;
+		}
+		return left.countCoefficients() + right.countCoefficients();
+	}
+
+	private int getCoefficients(double[] coefficients, int next){
+		if(left == null){
+			if(type == PrefixTree.COEFFICIENT){
+				coefficients[next++] = value;
+			}
+			return next;
+		}
+		return right.getCoefficients(coefficients, left.getCoefficients(coefficients, next));
+	}
+
+	/**
+	 * Returns a tree of the same shape with different coefficients
+	 * @param coefficients the new coefficients from left to right
+	 * @return the new tree
+	 */
+	public SharedTree setCoefficients(double[] coefficients){
+		return setCoefficients(coefficients, new int[1]);
+	}
+
+	/**
+	 * @param coefficients the new coefficients from left to right
+	 * @param next holds the index of the next coefficient to use
+	 * @return the subtree with its coefficients replaced
+	 */
+	private SharedTree setCoefficients(double[] coefficients, int[] next){
+		if(left == null){
+			return type == PrefixTree.COEFFICIENT ? leaf(type, coefficients[next[0]++]) : this;
+		}
+		SharedTree newLeft = left.setCoefficients(coefficients, next);
+		SharedTree newRight = right.setCoefficients(coefficients, next);
+		if(newLeft == left && newRight == right){
+			return this;
+		}
+		return operator(getOperator(), newLeft, newRight);
+	}
+
+	/**
+	 * Simplifies the tree with TermRewriter. Subtrees that do not change are kept rather
+	 * than rebuilt, and subtrees already simplified are not rewritten again.
+	 * @return the simplified tree or null if the tree contains an illegal operation
+	 */
+	public SharedTree simplify(){
+		return TermRewriter.simplify(this);
+	}
+
+	/**
+	 * @return whether TermRewriter has left the subtree unchanged
+	 */
+	boolean isStable(){
+		return stable;
+	}
+
+	/**
+	 * Records that TermRewriter left the subtree unchanged
+	 */
+	void setStable(){
+		stable = true;
+	}
+
+	/**
+	 * @return the tree compiled to a postfix program
+	 */
+	public Program compile(){
+		int[] opcodes = new int[size];
+		double[] operands = new double[size];
+		compile(opcodes, operands, 0);
+		return new Program(opcodes, operands);
+	}
+
+	private int compile(int[] opcodes, double[] operands, int pc){
+		if(left == null){
+			opcodes[pc] = type == PrefixTree.COEFFICIENT ? Program.PUSH_COEFFICIENT : Program.PUSH_VARIABLE;
+			operands[pc] = value;
+			return pc + 1;
+		}
+		pc = right.compile(opcodes, operands, left.compile(opcodes, operands, pc));
+		opcodes[pc] = Program.ADD + (int) value;
+		return pc + 1;
+	}
+
+	/**
+	 * Hash table holding one part of the interned nodes. Each entry refers to its node weakly
+	 * and is removed once the node has been collected.
+	 */
+	private static class Segment {
+		private Entry[] table = new Entry[16];
+		private int count;
+		private final ReferenceQueue<SharedTree> collected = new ReferenceQueue<SharedTree>();
+
+		/**
+		 * @return the interned node with a type, value and children, created if there is none
+		 */
+		public SharedTree intern(byte type, double value, SharedTree left, SharedTree right, int hash){
+			expunge();
+			int index = hash & (table.length - 1);
+			for(Entry entry = table[index]; entry != null; entry = entry.next){
+				if(entry.hash != hash){
+					continue;
+				}
+				SharedTree node = entry.get();
+				if(node != null && node.type == type && node.left == left && node.right == right
+						&& Double.doubleToLongBits(node.value) == Double.doubleToLongBits(value)){
+					return node;
+				}
+			}
+			SharedTree node = new SharedTree(type, value, left, right, hash);
+			table[index] = new Entry(node, hash, table[index], collected);
+			if(++count > table.length * 3 / 4){
+				resize(table.length * 2);
+			}
+			return node;
+		}
+
+		/**
+		 * Removes the entries of collected nodes, shrinking the table once it is mostly empty
+		 */
+		public void expunge(){
+			boolean removed = false;
+			for(Entry entry = (Entry) collected.poll(); entry != null; entry = (Entry) collected.poll()){
+				int index = entry.hash & (table.length - 1);
+				Entry previous = null;
+				for(Entry current = table[index]; current != null; previous = current, current = current.next){
+					if(current == entry){
+						if(previous == null){
+							table[index] = current.next;
+						}
+						else{
+							previous.next = current.next;
+						}
+						count--;
+						removed = true;
+						break;
+					}
+				}
+			}
+			if(removed && table.length > 16 && count < table.length / 8){
+				int length = table.length;
+				while(length > 16 && count < length / 8){
+					length /= 2;
+				}
+				resize(length);
+			}
+		}
+
+		private void resize(int length){
+			Entry[] resized = new Entry[length];
+			for(Entry entry : table){
+				while(entry != null){
+					Entry next = entry.next;
+					int index = entry.hash & (length - 1);
+					entry.next = resized[index];
+					resized[index] = entry;
+					entry = next;
+				}
+			}
+			table = resized;
+		}
+	}
+
+	/**
+	 * Entry of a segment, chained with the other entries in its bucket
+	 */
+	private static class Entry extends WeakReference<SharedTree> {
+		final int hash;
+		Entry next;
+
+		public Entry(SharedTree node, int hash, Entry next, ReferenceQueue<SharedTree> queue){
+			super(node, queue);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+}
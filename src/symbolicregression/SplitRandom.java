@@ -0,0 +1,69 @@
+package symbolicregression;
+
+import java.util.Random;
+
+/**
+ * Fast random number generator using the SplitMix64 algorithm. A run starts from one seeded
+ * generator and splits off an independent generator for each island, data set split and
+ * worker, so a fixed seed gives the same run whatever the thread count. Unlike Random, a
+ * SplitRandom is not synchronized and must be used by one thread at a time. Its whole
+ * state is a single long, so it can be saved and restored.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class SplitRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	//Set by setSeed, which the superclass constructor calls
+	private long state;
+
+	/**
+	 * Constructs a generator
+	 * @param seed the initial state
+	 */
+	public SplitRandom(long seed){
+		super(seed);
+	}
+
+	/**
+	 * @return a new generator whose sequence is independent of this generator's
+	 */
+	public SplitRandom split(){
+		return new SplitRandom(mix(nextLong()));
+	}
+
+	/**
+	 * @return the state of the generator, which restores it when passed to the constructor
+	 */
+	public long getState(){
+		return state;
+	}
+
+	@Override
+	public void setSeed(long seed){
+		state = seed;
+	}
+
+	@Override
+	public long nextLong(){
+		state += GOLDEN_GAMMA;
+		return mix(state);
+	}
+
+	@Override
+	protected int next(int bits){
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public double nextDouble(){
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	private static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,590 @@
+package symbolicregression;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data set read from its file a block of rows at a time instead of being loaded, for files
+ * larger than the heap. Each pass reads the file once from the start and scores a whole
+ * batch of trees against every block before reading the next, so only one block of rows
+ * and the running error of each tree are held in memory. Whether a row is in the training
+ * set follows from a hash of its index and the data set's seed, so the split needs no
+ * memory either and the same seed always gives the same split.
+ * Subsamples are read into memory, so selection, coefficient fitting and scoring on a
+ * subsample work as they do for a loaded data set. A generation is scored in a single pass
+ * that also draws the subsample the next generation reads in memory, so the file is read
+ * once a generation. The rows of the data set itself are not in memory, so getColumns,
+ * getTarget and fx throw UnsupportedOperationException.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class StreamingDataSet extends DataSet {
+	//Rows held in memory by a pass over the file
+	public static final int BLOCK_ROWS = 1 << 16;
+
+	private final String fileName;
+	private final long seed;
+	private final int variables;
+	private final int rows;
+	private final int trainingRows;
+	//Passes made over the file
+	private final AtomicLong passes = new AtomicLong();
+
+	/**
+	 * Opens a CSV file or a columnar file written by ColumnarFile, reading it once to count its rows
+	 * @param fileName the name of the file
+	 * @param seed the seed deciding which rows are in the training set
+	 * @throws IOException if the file cannot be read or has more rows than a data set can index
+	 */
+	public StreamingDataSet(String fileName, long seed) throws IOException{
+		this.fileName = fileName;
+		this.seed = seed;
+		Reader reader = new Reader();
+		long count = 0;
+		long training = 0;
+		try{
+			while(reader.next()){
+				if(isTraining(reader.row)){
+					training++;
+				}
+				count++;
+			}
+		}
+		finally{
+			reader.close();
+		}
+		if(count > Integer.MAX_VALUE){
+			throw new IOException(fileName + " has more than " + Integer.MAX_VALUE + " rows");
+		}
+		variables = Math.max(reader.width - 1, 0);
+		rows = (int) count;
+		trainingRows = (int) training;
+	}
+
+	/**
+	 * @return the seed deciding which rows are in the training set
+	 */
+	public long getSeed(){
+		return seed;
+	}
+
+	/**
+	 * @param row the index of a row of the file
+	 * @return true if the row is in the training set
+	 */
+	public boolean isTraining(long row){
+		long h = seed + row * 0x9e3779b97f4a7c15L;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		//The top 53 bits as a uniform double in [0, 1), like Random.nextDouble
+		return (h >>> 11) * 0x1.0p-53 < PERCENT_TEST;
+	}
+
+	@Override
+	public int getNumberOfVariables(){
+		return variables;
+	}
+
+	/**
+	 * @return null, since the split follows from the seed
+	 */
+	@Override
+	public boolean[] getSplit(){
+		return null;
+	}
+
+	@Override
+	public int getTrainingSize(){
+		return trainingRows;
+	}
+
+	@Override
+	public int getTestSize(){
+		return rows - trainingRows;
+	}
+
+	/**
+	 * @return the number of passes made over the file, including the one counting its rows
+	 */
+	long getPasses(){
+		return passes.get();
+	}
+
+	/**
+	 * Reads a random subsample of the training set into memory in one pass, keeping a
+	 * reservoir of rows. The whole training set is read into memory if size is at least its
+	 * size, since this data set holds no rows to return instead.
+	 * @param size the number of rows in the subsample
+	 * @param random a random number generator
+	 * @return the subsample of the smaller of size and the training set size
+	 */
+	@Override
+	public DataSet subsample(int size, Random random){
+		Reservoir reservoir = new Reservoir(size, random);
+		if(reservoir.size == 0){
+			//No row is kept, so the file is not read
+			return reservoir.getRows();
+		}
+		try{
+			Reader reader = new Reader();
+			try{
+				while(reader.next()){
+					if(isTraining(reader.row)){
+						reservoir.offer(reader.values);
+					}
+				}
+			}
+			finally{
+				reader.close();
+			}
+		}
+		catch(IOException err){
+			throw new UncheckedIOException(err);
+		}
+		return reservoir.getRows();
+	}
+
+	@Override
+	public double fitness(ExpressionTree expression, boolean testing){
+		return score(Collections.singletonList(expression), testing, new double[]{Double.NaN}, null)[0];
+	}
+
+	@Override
+	public double fitness(ExpressionTree expression, double bound){
+		return score(Collections.singletonList(expression), false, new double[]{bound}, null)[0];
+	}
+
+	/**
+	 * Sets the fitness of every tree in a list in a single pass over the file, the way
+	 * PopulationEvaluator does for a loaded data set. Trees whose fitness is -1 contain an
+	 * illegal operation and are not scored.
+	 * @param trees the trees to score
+	 * @param testing whether the test set is included in the fitness
+	 * @param bound the fitness a tree must not exceed to be accepted, or NaN to score every tree
+	 * fully; trees that cannot beat it stop being scored once a block proves it
+	 */
+	public void evaluate(List<ExpressionTree> trees, boolean testing, double bound){
+		evaluate(trees, bound, Collections.<ExpressionTree>emptyList(), testing, null);
+	}
+
+	/**
+	 * Sets the training set fitness of the trees of a generation in a single pass over the
+	 * file, drawing a random subsample of the training set in the same pass, so the rows the
+	 * next generation reads in memory cost no pass of their own. Trees whose fitness is -1
+	 * are not scored.
+	 * @param bounded the trees that stop being scored once they cannot beat the bound
+	 * @param bound the fitness a bounded tree must not exceed to be accepted, or NaN to
+	 * score every tree fully
+	 * @param exact the trees scored fully
+	 * @param size the number of rows in the subsample
+	 * @param random a random number generator
+	 * @return the subsample, held in memory, of the smaller of size and the training set size
+	 */
+	public DataSet evaluate(List<ExpressionTree> bounded, double bound, List<ExpressionTree> exact, int size, Random random){
+		Reservoir reservoir = new Reservoir(size, random);
+		evaluate(bounded, bound, exact, false, reservoir);
+		return reservoir.getRows();
+	}
+
+	/**
+	 * Scores the legal trees of two lists in one pass and sets their fitness
+	 * @param reservoir the reservoir offered each training row read, or null
+	 */
+	private void evaluate(List<ExpressionTree> bounded, double bound, List<ExpressionTree> exact, boolean testing,
+			Reservoir reservoir){
+		List<ExpressionTree> legal = new ArrayList<ExpressionTree>();
+		double[] bounds = new double[bounded.size() + exact.size()];
+		for(ExpressionTree tree : bounded){
+			if(tree.getFitness() != -1){
+				bounds[legal.size()] = bound;
+				legal.add(tree);
+			}
+		}
+		for(ExpressionTree tree : exact){
+			if(tree.getFitness() != -1){
+				bounds[legal.size()] = Double.NaN;
+				legal.add(tree);
+			}
+		}
+		double[] fitness = score(legal, testing, bounds, reservoir);
+		for(int i = 0; i < legal.size(); i++){
+			ExpressionTree tree = legal.get(i);
+			if(fitness[i] > bounds[i]){
+				tree.reject(fitness[i]);
+			}
+			else{
+				tree.setFitness(fitness[i]);
+			}
+		}
+	}
+
+	/**
+	 * Scores a list of trees in one pass over the file. Each tree's error is accumulated a
+	 * chunk at a time in row order, so the result does not depend on how the trees are shared
+	 * among threads. With linear scaling the test set is scored with the offset and scale
+	 * that fit the training set best.
+	 * @param trees the trees to score
+	 * @param testing whether the test set is included in the fitness
+	 * @param bounds the rejection bound of each tree, or NaN to score the tree fully
+	 * @param reservoir the reservoir offered each training row read, or null
+	 * @return the fitness of each tree, or a lower bound above its bound for a rejected tree
+	 */
+	private double[] score(List<ExpressionTree> trees, boolean testing, double[] bounds, Reservoir reservoir){
+		boolean scaled = isLinearScaling();
+		FitnessCache cache = getCache();
+		//Training error and then test error, each a sum of squared errors or the moments of LinearScaling
+		int width = scaled ? LinearScaling.SIZE : 1;
+		double[] fitness = new double[trees.size()];
+		//Errors of the trees still being scored, null for the others
+		double[][] errors = new double[trees.size()][];
+		CompiledExpression[] compiled = new CompiledExpression[trees.size()];
+		int scoring = 0;
+		for(int i = 0; i < trees.size(); i++){
+			ExpressionTree tree = trees.get(i);
+			if(!testing && cache != null){
+				double[] cached = cache.get(tree.getStructuralHash());
+				//Above the bound the same lower bound must be returned whether or not the fitness is cached
+				if(cached != null && !(cached[FitnessCache.FITNESS] > bounds[i])){
+					if(scaled){
+						tree.setScaling(cached[FitnessCache.SCALE], cached[FitnessCache.OFFSET]);
+					}
+					fitness[i] = cached[FitnessCache.FITNESS];
+					continue;
+				}
+			}
+			errors[i] = new double[2 * width];
+			compiled[i] = tree.getCompiledExpression();
+			scoring++;
+		}
+		if(scoring == 0 && (reservoir == null || reservoir.size == 0)){
+			return fitness;
+		}
+		//Training rows fill the block from the front and test rows from the back
+		double[][] columns = new double[variables][BLOCK_ROWS];
+		double[] target = new double[BLOCK_ROWS];
+		int trainingRead = 0;
+		try{
+			Reader reader = new Reader();
+			try{
+				while(true){
+					int training = 0;
+					int test = 0;
+					while(training + test < BLOCK_ROWS && reader.next()){
+						int at;
+						if(isTraining(reader.row)){
+							if(reservoir != null){
+								reservoir.offer(reader.values);
+							}
+							at = training++;
+						}
+						else if(testing){
+							at = BLOCK_ROWS - ++test;
+						}
+						else{
+							continue;
+						}
+						for(int i = 0; i < variables; i++){
+							columns[i][at] = reader.values[i];
+						}
+						target[at] = reader.values[variables];
+					}
+					if(training + test == 0){
+						break;
+					}
+					BlockTask task = new BlockTask(compiled, errors, width, columns, target, training, test, 0, trees.size());
+					if(ForkJoinTask.inForkJoinPool()){
+						task.invoke();
+					}
+					else{
+						getPool().invoke(task);
+					}
+					trainingRead += training;
+					if(trainingRead == trainingRows){
+						continue;
+					}
+					for(int i = 0; i < trees.size(); i++){
+						if(errors[i] == null){
+							continue;
+						}
+						double sum = scaled ? LinearScaling.squaredError(errors[i], 0) : errors[i][0];
+						if(sum > bounds[i] * bounds[i] * trainingRows){
+							//Not cached since it is only a lower bound
+							trees.get(i).countEvaluations(trainingRead);
+							fitness[i] = Math.sqrt(sum / trainingRows);
+							errors[i] = null;
+						}
+					}
+				}
+			}
+			finally{
+				reader.close();
+			}
+		}
+		catch(IOException err){
+			throw new UncheckedIOException(err);
+		}
+		for(int i = 0; i < trees.size(); i++){
+			if(errors[i] == null){
+				continue;
+			}
+			ExpressionTree tree = trees.get(i);
+			double sum = 0;
+			if(trainingRows > 0){
+				if(scaled){
+					tree.setScaling(LinearScaling.scale(errors[i], 0), LinearScaling.offset(errors[i], 0));
+					sum += LinearScaling.squaredError(errors[i], 0) / trainingRows;
+				}
+				else{
+					sum += errors[i][0] / trainingRows;
+				}
+			}
+			if(testing && getTestSize() > 0){
+				sum += (scaled ? LinearScaling.squaredError(errors[i], width, tree.getScale(), tree.getOffset())
+						: errors[i][width]) / getTestSize();
+			}
+			tree.countEvaluations(testing ? rows : trainingRows);
+			fitness[i] = Math.sqrt(sum);
+			if(!testing && cache != null){
+				cache.put(tree.getStructuralHash(), fitness[i], tree.getScale(), tree.getOffset());
+			}
+		}
+		return fitness;
+	}
+
+	/**
+	 * Random subsample of the training rows read by a pass, keeping each row offered with
+	 * the same chance
+	 */
+	private class Reservoir {
+		final int size;
+		private final Random random;
+		private final double[][] columns;
+		private final double[] target;
+		//Training rows offered so far
+		private int seen;
+
+		/**
+		 * @param size the number of rows to keep, at most the training set size
+		 * @param random a random number generator
+		 */
+		Reservoir(int size, Random random){
+			this.size = Math.min(size, trainingRows);
+			this.random = random;
+			columns = new double[variables][this.size];
+			target = new double[this.size];
+		}
+
+		/**
+		 * Offers the next training row
+		 * @param values the row's values, the output last
+		 */
+		void offer(double[] values){
+			int at = seen < size ? seen : random.nextInt(seen + 1);
+			seen++;
+			if(at < size){
+				for(int i = 0; i < variables; i++){
+					columns[i][at] = values[i];
+				}
+				target[at] = values[variables];
+			}
+		}
+
+		/**
+		 * @return the rows kept, once every training row has been offered
+		 */
+		DataSet getRows(){
+			return new DataSet(columns, target, StreamingDataSet.this);
+		}
+	}
+
+	/**
+	 * Task adding one block's rows to the errors of a range of trees, split in half until the
+	 * range is a single batch
+	 */
+	private static class BlockTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final CompiledExpression[] compiled;
+		private final double[][] errors;
+		private final int width;
+		private final double[][] columns;
+		private final double[] target;
+		//Training rows at the front of the block and test rows at its back
+		private final int training;
+		private final int test;
+		private final int from;
+		private final int to;
+
+		public BlockTask(CompiledExpression[] compiled, double[][] errors, int width, double[][] columns, double[] target,
+				int training, int test, int from, int to){
+			this.compiled = compiled;
+			this.errors = errors;
+			this.width = width;
+			this.columns = columns;
+			this.target = target;
+			this.training = training;
+			this.test = test;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from <= PopulationEvaluator.BATCH_SIZE){
+				for(int i = from; i < to; i++){
+					if(errors[i] != null){
+						add(compiled[i], errors[i], 0, 0, training);
+						add(compiled[i], errors[i], width, target.length - test, target.length);
+					}
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new BlockTask(compiled, errors, width, columns, target, training, test, from, middle),
+					new BlockTask(compiled, errors, width, columns, target, training, test, middle, to));
+		}
+
+		/**
+		 * Adds a range of the block's rows to an error, a chunk at a time
+		 */
+		private void add(CompiledExpression compiled, double[] error, int at, int from, int to){
+			for(int start = from; start < to; start += CHUNK_SIZE){
+				int end = Math.min(start + CHUNK_SIZE, to);
+				if(width == 1){
+					error[at] += compiled.squaredError(columns, target, start, end);
+				}
+				else{
+					compiled.moments(columns, target, start, end, error, at);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the numeric rows of the file one at a time, from a columnar file's mapped columns
+	 * or from a CSV file through a buffer, skipping the rows CsvReader skips
+	 */
+	private class Reader {
+		//Index of the row read last
+		long row = -1;
+		//Values of the row read last, the output last
+		double[] values = new double[16];
+		//Number of values in each row, 0 until the first row is read
+		int width;
+		private DoubleBuffer[] mapped;
+		private int mappedRows;
+		private FileChannel channel;
+		private byte[] bytes;
+		private int position;
+		private int limit;
+		private boolean end;
+
+		/**
+		 * Opens the file at its first row
+		 * @throws IOException if the file cannot be opened
+		 */
+		public Reader() throws IOException{
+			passes.incrementAndGet();
+			if(ColumnarFile.isColumnarFile(fileName)){
+				ColumnarFile file = new ColumnarFile(fileName);
+				mapped = file.getColumns();
+				mappedRows = file.getRows();
+				width = mapped.length;
+				values = new double[width];
+			}
+			else{
+				channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+				bytes = new byte[CsvReader.BUFFER_SIZE];
+			}
+		}
+
+		/**
+		 * Reads the next row into values
+		 * @return false if there are no more rows
+		 * @throws IOException if the file cannot be read
+		 */
+		public boolean next() throws IOException{
+			if(mapped != null){
+				if(row + 1 >= mappedRows){
+					return false;
+				}
+				row++;
+				for(int i = 0; i < width; i++){
+					values[i] = mapped[i].get((int) row);
+				}
+				return true;
+			}
+			while(true){
+				int newline = position;
+				while(newline < limit && bytes[newline] != '\n'){
+					newline++;
+				}
+				if(newline == limit && !end){
+					fill();
+					continue;
+				}
+				if(position == limit){
+					return false;
+				}
+				int count = CsvReader.parseValues(bytes, position, newline, values);
+				if(width == 0 && count > values.length){
+					values = new double[count];
+					count = CsvReader.parseValues(bytes, position, newline, values);
+				}
+				position = Math.min(newline + 1, limit);
+				if(count > 0 && width == 0){
+					width = count;
+					values = Arrays.copyOf(values, width);
+				}
+				if(count > 0 && count == width){
+					row++;
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Moves the unfinished line to the start of the buffer and reads more of the file after it
+		 */
+		private void fill() throws IOException{
+			if(position == 0 && limit == bytes.length){
+				//The line is longer than the buffer
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			}
+			else{
+				System.arraycopy(bytes, position, bytes, 0, limit - position);
+				limit -= position;
+				position = 0;
+			}
+			int read = channel.read(ByteBuffer.wrap(bytes, limit, bytes.length - limit));
+			if(read < 0){
+				end = true;
+			}
+			else{
+				limit += read;
+			}
+		}
+
+		public void close() throws IOException{
+			if(channel != null){
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,549 @@
+package symbolicregression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Simplifies expressions by rewriting them into a canonical form, one subtree at a time from
+ * the leaves up. A chain of additions and subtractions is read as a sum of terms, each a
+ * constant times a product of factors, and a chain of multiplications as a constant times
+ * its factors. Constants are merged across the chain, like terms are added together, terms
+ * that cancel are dropped, and the chain is rebuilt with its terms or factors in a fixed
+ * order. A subtree is only replaced by its rewritten form if that does not cost more to
+ * evaluate. The tree is rewritten until it stops changing.
+ * Besides these, constant operations are folded, x / x becomes 1, 0 / x and 0 * x become 0,
+ * and division by a constant becomes multiplication. Dividing constants by 0 is illegal.
+ * The root is never replaced by a leaf, so a tree that simplifies to a leaf becomes the leaf
+ * plus 0.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public final class TermRewriter {
+	//Cost of evaluating a leaf, an addition, subtraction or multiplication, and a division
+	public static final int LEAF_COST = 1;
+	public static final int OPERATOR_COST = 1;
+	public static final int DIVISION_COST = 4;
+	//Greatest number of passes over a tree
+	public static final int MAX_PASSES = 4;
+	private static final Operator[] OPERATORS = Operator.values();
+	//Returned by canonical for an illegal operation
+	private static final Term ILLEGAL = new Term(PrefixTree.COEFFICIENT, Double.NaN, null, null);
+
+	private TermRewriter(){
+	}
+
+	/**
+	 * Simplifies a tree
+	 * @param tree the tree to simplify
+	 * @return the simplified tree, the same tree if nothing could be simplified, or null if the
+	 * tree contains an illegal operation
+	 */
+	public static PrefixTree simplify(PrefixTree tree){
+		Term original = read(tree, 0);
+		Term term = rewrite(original);
+		if(term == null){
+			return null;
+		}
+		if(term == original){
+			return tree;
+		}
+		byte[] types = new byte[term.size];
+		double[] values = new double[term.size];
+		int[] sizes = new int[term.size];
+		term.write(types, values, sizes, 0);
+		return new PrefixTree(types, values, sizes);
+	}
+
+	/**
+	 * Simplifies an interned tree. Nodes the rewriter has left unchanged are marked stable
+	 * and are not rewritten again, so after crossover or mutation only the new nodes on the
+	 * path to the changed subtree are rewritten, and only the nodes that change are interned.
+	 * @param tree the tree to simplify
+	 * @return the simplified tree, the same tree if nothing could be simplified, or null if the
+	 * tree contains an illegal operation
+	 */
+	public static SharedTree simplify(SharedTree tree){
+		Term term = rewrite(read(tree));
+		return term == null ? null : share(term);
+	}
+
+	/**
+	 * Rewrites a tree until it stops changing or MAX_PASSES passes have been made
+	 * @param original the tree
+	 * @return the rewritten tree, the same tree if nothing changed, or null if the tree
+	 * contains an illegal operation
+	 */
+	private static Term rewrite(Term original){
+		Term term = original;
+		for(int pass = 0; pass < MAX_PASSES; pass++){
+			Term next = rewrite(term, null);
+			if(next == null){
+				return null;
+			}
+			if(next == term || next.equals(term)){
+				break;
+			}
+			term = next;
+		}
+		return term;
+	}
+
+	/**
+	 * @param tree a flat tree
+	 * @return the cost of evaluating the tree for one row
+	 */
+	public static int cost(PrefixTree tree){
+		int cost = 0;
+		for(int i = 0; i < tree.size(); i++){
+			cost += tree.getType(i) == PrefixTree.OPERATOR ? cost(tree.getOperator(i)) : LEAF_COST;
+		}
+		return cost;
+	}
+
+	private static int cost(Operator operator){
+		return operator == Operator.DIVIDE ? DIVISION_COST : OPERATOR_COST;
+	}
+
+	private static Term read(PrefixTree tree, int position){
+		if(tree.getType(position) != PrefixTree.OPERATOR){
+			return new Term(tree.getType(position), tree.getValue(position), null, null);
+		}
+		int left = position + 1;
+		return operator(tree.getOperator(position), read(tree, left), read(tree, left + tree.getSubtreeSize(left)));
+	}
+
+	private static Term read(SharedTree node){
+		Term term = node.getLeft() == null ? new Term(node.getType(), node.getValue(), null, null)
+				: operator(node.getOperator(), read(node.getLeft()), read(node.getRight()));
+		term.source = node;
+		term.stable = node.isStable();
+		return term;
+	}
+
+	/**
+	 * @param term a rewritten subtree
+	 * @return the interned subtree, reusing the node a subtree was read from if it is unchanged
+	 */
+	private static SharedTree share(Term term){
+		SharedTree node = term.source;
+		if(node == null){
+			node = term.left == null ? SharedTree.leaf(term.type, term.value)
+					: SharedTree.operator(term.getOperator(), share(term.left), share(term.right));
+		}
+		if(term.stable){
+			node.setStable();
+		}
+		return node;
+	}
+
+	/**
+	 * Rewrites a subtree, its children first
+	 * @param term the subtree
+	 * @param parent the parent of the subtree, or null if the subtree is the whole tree
+	 * @return the rewritten subtree, or null if it contains an illegal operation
+	 */
+	private static Term rewrite(Term term, Term parent){
+		if(term.stable){
+			return term;
+		}
+		if(term.left == null){
+			if(term.type == PrefixTree.COEFFICIENT){
+				double rounded = PrefixTree.round(term.value);
+				if(Double.compare(rounded, term.value) != 0){
+					return coefficient(rounded);
+				}
+			}
+			term.stable = true;
+			return term;
+		}
+		Term left = rewrite(term.left, term);
+		if(left == null){
+			return null;
+		}
+		Term right = rewrite(term.right, term);
+		if(right == null){
+			return null;
+		}
+		Term plain = left == term.left && right == term.right ? term : operator(term.getOperator(), left, right);
+		boolean root = parent == null;
+		//A link inside a chain is only folded, since the chain is rewritten as a whole from its top
+		if(!root && chain(parent) != 0 && chain(parent) == chain(term)){
+			if(left.type == PrefixTree.COEFFICIENT && right.type == PrefixTree.COEFFICIENT){
+				return fold(term.getOperator(), left.value, right.value);
+			}
+			return plain;
+		}
+		Term canonical = canonical(term.getOperator(), left, right);
+		if(canonical == ILLEGAL){
+			//The root is never replaced, so it may divide by 0
+			return root ? plain : null;
+		}
+		if(root && canonical.left == null){
+			//The root keeps an operator by adding 0 to the leaf
+			canonical = operator(Operator.ADD, canonical, coefficient(0.0));
+		}
+		if(canonical.cost > plain.cost || canonical.equals(plain)){
+			//A subtree left as it was is not rewritten again in later passes. The root is
+			//rewritten differently from other subtrees, so it is checked again in case it
+			//becomes one.
+			if(plain == term && !root){
+				term.stable = true;
+			}
+			return plain;
+		}
+		return canonical;
+	}
+
+	/**
+	 * @param term a subtree
+	 * @return 1 if the subtree is an addition or subtraction, 2 if it is a multiplication and 0
+	 * otherwise
+	 */
+	private static int chain(Term term){
+		if(term.type != PrefixTree.OPERATOR){
+			return 0;
+		}
+		Operator operator = term.getOperator();
+		if(operator == Operator.ADD || operator == Operator.SUBTRACT){
+			return 1;
+		}
+		return operator == Operator.MULTIPLY ? 2 : 0;
+	}
+
+	/**
+	 * Returns the canonical form of an operation on two rewritten subtrees
+	 * @param operator the operation
+	 * @param left the left operand
+	 * @param right the right operand
+	 * @return the canonical form, or ILLEGAL if the operation is illegal
+	 */
+	private static Term canonical(Operator operator, Term left, Term right){
+		boolean leftConstant = left.type == PrefixTree.COEFFICIENT;
+		boolean rightConstant = right.type == PrefixTree.COEFFICIENT;
+		if(leftConstant && rightConstant){
+			return fold(operator, left.value, right.value);
+		}
+		if(operator == Operator.ADD || operator == Operator.SUBTRACT){
+			Sum sum = new Sum();
+			sum.add(left, 1);
+			sum.add(right, operator == Operator.ADD ? 1 : -1);
+			return sum.build();
+		}
+		if(operator == Operator.MULTIPLY){
+			Product product = new Product();
+			product.multiply(left);
+			product.multiply(right);
+			return product.build();
+		}
+		//Replaces 0 divided by anything with 0 and anything divided by itself with 1
+		if(leftConstant && left.value == 0.0){
+			return coefficient(0.0);
+		}
+		if(left.equals(right)){
+			return coefficient(1.0);
+		}
+		//Division by a constant is multiplication by its inverse, which can merge with other constants
+		if(rightConstant && right.value != 0.0){
+			Product product = new Product();
+			product.multiply(left);
+			product.constant /= right.value;
+			return product.build();
+		}
+		return operator(operator, left, right);
+	}
+
+	/**
+	 * @return the coefficient an operation on two coefficients gives, or ILLEGAL for division by 0
+	 */
+	private static Term fold(Operator operator, double left, double right){
+		switch(operator){
+		case ADD:
+			return coefficient(PrefixTree.round(left + right));
+		case SUBTRACT:
+			return coefficient(PrefixTree.round(left - right));
+		case MULTIPLY:
+			return coefficient(PrefixTree.round(left * right));
+		default:
+			return right == 0.0 ? ILLEGAL : coefficient(PrefixTree.round(left / right));
+		}
+	}
+
+	private static Term coefficient(double value){
+		return new Term(PrefixTree.COEFFICIENT, value, null, null);
+	}
+
+	private static Term operator(Operator operator, Term left, Term right){
+		return new Term(PrefixTree.OPERATOR, operator.ordinal(), left, right);
+	}
+
+	/**
+	 * A chain of additions and subtractions as a constant plus a weighted sum of terms
+	 */
+	private static class Sum {
+		private double constant;
+		private final List<Term> terms = new ArrayList<Term>();
+		private final List<Double> weights = new ArrayList<Double>();
+
+		/**
+		 * Adds a subtree to the sum
+		 * @param term the subtree
+		 * @param sign 1 to add the subtree, -1 to subtract it
+		 */
+		public void add(Term term, double sign){
+			if(term.type == PrefixTree.OPERATOR){
+				Operator operator = term.getOperator();
+				if(operator == Operator.ADD || operator == Operator.SUBTRACT){
+					add(term.left, sign);
+					add(term.right, operator == Operator.ADD ? sign : -sign);
+					return;
+				}
+			}
+			else if(term.type == PrefixTree.COEFFICIENT){
+				constant += sign * term.value;
+				return;
+			}
+			//Like terms differ only in their constant factor
+			Product product = new Product();
+			product.multiply(term);
+			Term factors = product.factors();
+			if(factors == null){
+				constant += sign * product.constant;
+				return;
+			}
+			int index = terms.indexOf(factors);
+			if(index < 0){
+				terms.add(factors);
+				weights.add(sign * product.constant);
+			}
+			else{
+				weights.set(index, weights.get(index) + sign * product.constant);
+			}
+		}
+
+		/**
+		 * Builds the sum with the terms added in order, then the terms subtracted in order,
+		 * then the constant
+		 * @return the sum
+		 */
+		public Term build(){
+			List<Term> added = new ArrayList<Term>();
+			//Terms with a negative weight and the weight they are subtracted with
+			List<Term> subtracted = new ArrayList<Term>();
+			List<Double> subtractedWeights = new ArrayList<Double>();
+			List<Term> sorted = new ArrayList<Term>(terms);
+			Collections.sort(sorted);
+			for(Term term : sorted){
+				double weight = PrefixTree.round(weights.get(terms.indexOf(term)));
+				if(weight == 0.0){
+					continue;
+				}
+				if(weight < 0){
+					subtracted.add(term);
+					subtractedWeights.add(-weight);
+				}
+				else{
+					added.add(scale(term, weight));
+				}
+			}
+			double total = PrefixTree.round(constant);
+			Term result = null;
+			for(Term term : added){
+				result = result == null ? term : operator(Operator.ADD, result, term);
+			}
+			int first = 0;
+			if(result == null && !subtracted.isEmpty()){
+				//A constant is subtracted from rather than a term negated
+				if(total != 0.0){
+					result = coefficient(total);
+					total = 0.0;
+				}
+				else{
+					result = scale(subtracted.get(0), -subtractedWeights.get(0));
+					first = 1;
+				}
+			}
+			for(int i = first; i < subtracted.size(); i++){
+				result = operator(Operator.SUBTRACT, result, scale(subtracted.get(i), subtractedWeights.get(i)));
+			}
+			if(result == null){
+				return coefficient(total);
+			}
+			if(total < 0){
+				return operator(Operator.SUBTRACT, result, coefficient(-total));
+			}
+			//A constant that is not a number is kept too
+			if(total != 0.0){
+				return operator(Operator.ADD, result, coefficient(total));
+			}
+			return result;
+		}
+
+		/**
+		 * @param factors a product of factors without a constant
+		 * @param weight the constant to multiply the product by
+		 * @return the weighted product
+		 */
+		private static Term scale(Term factors, double weight){
+			if(weight == 1.0){
+				return factors;
+			}
+			Product product = new Product();
+			product.multiply(factors);
+			product.constant *= weight;
+			return product.build();
+		}
+	}
+
+	/**
+	 * A chain of multiplications as a constant times a product of factors
+	 */
+	private static class Product {
+		private double constant = 1;
+		private final List<Term> factors = new ArrayList<Term>();
+
+		/**
+		 * Multiplies the product by a subtree
+		 * @param term the subtree
+		 */
+		public void multiply(Term term){
+			if(term.type == PrefixTree.OPERATOR && term.getOperator() == Operator.MULTIPLY){
+				multiply(term.left);
+				multiply(term.right);
+			}
+			else if(term.type == PrefixTree.COEFFICIENT){
+				constant *= term.value;
+			}
+			else{
+				factors.add(term);
+			}
+		}
+
+		/**
+		 * @return the factors multiplied in order without the constant, or null if there are none
+		 */
+		public Term factors(){
+			Collections.sort(factors);
+			Term result = null;
+			for(Term factor : factors){
+				result = result == null ? factor : operator(Operator.MULTIPLY, result, factor);
+			}
+			return result;
+		}
+
+		/**
+		 * Builds the product with the constant first, followed by the factors in order
+		 * @return the product
+		 */
+		public Term build(){
+			double total = PrefixTree.round(constant);
+			//Replaces anything times 0 with 0
+			if(total == 0.0 || factors.isEmpty()){
+				return coefficient(total);
+			}
+			Term result = total == 1.0 ? null : coefficient(total);
+			Collections.sort(factors);
+			for(Term factor : factors){
+				result = result == null ? factor : operator(Operator.MULTIPLY, result, factor);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * An immutable subtree compared by structure. Subtrees are ordered by type, coefficients
+	 * before variables before operators, then by value and then by operands.
+	 */
+	private static final class Term implements Comparable<Term> {
+		private final byte type;
+		//Operator ordinal, variable column index or coefficient
+		private final double value;
+		private final Term left;
+		private final Term right;
+		private final int size;
+		private final int cost;
+		private final int hash;
+		//Set once rewriting the subtree has left it unchanged
+		private boolean stable;
+		//The interned node the subtree was read from, or null if it was built by rewriting
+		private SharedTree source;
+
+		public Term(byte type, double value, Term left, Term right){
+			this.type = type;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			long h = type * 31L + Double.doubleToLongBits(value);
+			if(left == null){
+				size = 1;
+				cost = LEAF_COST;
+			}
+			else{
+				size = 1 + left.size + right.size;
+				cost = TermRewriter.cost(OPERATORS[(int) value]) + left.cost + right.cost;
+				h = (h * 31 + left.hash) * 31 + right.hash;
+			}
+			hash = (int) (h ^ (h >>> 32));
+		}
+
+		public Operator getOperator(){
+			return OPERATORS[(int) value];
+		}
+
+		/**
+		 * Writes the subtree in prefix order
+		 * @return the position after the subtree
+		 */
+		public int write(byte[] types, double[] values, int[] sizes, int position){
+			types[position] = type;
+			values[position] = value;
+			sizes[position] = size;
+			if(left == null){
+				return position + 1;
+			}
+			return right.write(types, values, sizes, left.write(types, values, sizes, position + 1));
+		}
+
+		@Override
+		public boolean equals(Object other){
+			if(this == other){
+				return true;
+			}
+			if(!(other instanceof Term)){
+				return false;
+			}
+			Term term = (Term) other;
+			return hash == term.hash && compareTo(term) == 0;
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+
+		@Override
+		public int compareTo(Term other){
+			if(this == other){
+				return 0;
+			}
+			if(type != other.type){
+				//Coefficients sort first, then variables, then operators
+				return rank() - other.rank();
+			}
+			int compare = Double.compare(value, other.value);
+			if(compare != 0 || left == null){
+				return compare;
+			}
+			compare = left.compareTo(other.left);
+			return compare != 0 ? compare : right.compareTo(other.right);
+		}
+
+		private int rank(){
+			if(type == PrefixTree.COEFFICIENT){
+				return 0;
+			}
+			return type == PrefixTree.VARIABLE ? 1 : 2;
+		}
+	}
+}
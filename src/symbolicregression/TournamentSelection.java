@@ -0,0 +1,49 @@
+package symbolicregression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Selects the fittest of a number of trees drawn at random from the legal trees of the
+ * population. Each selection takes time proportional to the tournament size.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class TournamentSelection implements Selection {
+	private final int size;
+	private List<ExpressionTree> trees = new ArrayList<ExpressionTree>();
+	//Number of illegal trees, which sort before every legal tree
+	private int illegal;
+
+	/**
+	 * Constructs a tournament selection
+	 * @param size the number of trees in each tournament
+	 */
+	public TournamentSelection(int size){
+		this.size = size;
+	}
+
+	@Override
+	public void prepare(List<ExpressionTree> trees, DataSet data, Random random){
+		this.trees = trees;
+		illegal = 0;
+		while(illegal < trees.size() && trees.get(illegal).getFitness() == -1){
+			illegal++;
+		}
+		if(illegal == trees.size()){
+			illegal = 0;
+		}
+	}
+
+	@Override
+	public ExpressionTree select(Random random){
+		//The population is sorted, so the fittest entrant is the one with the lowest index
+		int best = trees.size();
+		for(int i = 0; i < size; i++){
+			best = Math.min(best, illegal + random.nextInt(trees.size() - illegal));
+		}
+		return trees.get(best);
+	}
+}
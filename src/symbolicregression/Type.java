@@ -1,3 +1,4 @@
+package symbolicregression;
 
 public enum Type {
 	OPERATOR, VARIABLE, COEFFICIENT;
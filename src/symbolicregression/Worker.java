@@ -0,0 +1,176 @@
+package symbolicregression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Links an island model to a coordinator. The coordinator first sends the split of the
+ * data set into training and test rows, so that every worker scores trees on the same
+ * training set. Reports and migrants are sent at every migration while a background thread
+ * collects the migrants and the stop message sent back, so the islands never wait on the
+ * network. Losing the coordinator stops the worker.
+ *
+ * @author Chris Lamb
+ * @author James Ni
+ */
+public class Worker implements IslandLink, Runnable {
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	//Split of the data set sent by the coordinator
+	private final boolean[] split;
+	//Migrants received since the previous exchange
+	private List<ExpressionTree> arrived = new ArrayList<ExpressionTree>();
+	private volatile boolean stopped = false;
+
+	/**
+	 * Connects to a coordinator and receives the split of the data set
+	 * @param host the host of the coordinator
+	 * @param port the port the coordinator listens on
+	 * @throws IOException if the coordinator cannot be reached or does not send a split
+	 */
+	public Worker(String host, int port) throws IOException{
+		this.socket = new Socket(host, port);
+		try{
+			socket.setTcpNoDelay(true);
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			byte type = in.readByte();
+			if(type != Coordinator.SPLIT){
+				throw new IOException("Unexpected message " + type);
+			}
+			int rows = in.readInt();
+			if(rows < 0){
+				throw new IOException("Invalid split");
+			}
+			this.split = DataSet.readSplit(in, rows);
+		}
+		catch(IOException err){
+			socket.close();
+			throw err;
+		}
+		Thread reader = new Thread(this, "worker-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Reads messages from the coordinator until it asks the worker to stop or disconnects
+	 */
+	@Override
+	public void run(){
+		try{
+			while(true){
+				byte type = in.readByte();
+				if(type == Coordinator.STOP){
+					System.out.println("Stopped by the coordinator");
+					break;
+				}
+				if(type != Coordinator.MIGRANTS){
+					throw new IOException("Unexpected message " + type);
+				}
+				List<ExpressionTree> migrants = ExpressionTree.readList(in);
+				synchronized(this){
+					arrived.addAll(migrants);
+				}
+			}
+		}
+		catch(IOException err){
+			System.out.println("Lost connection to the coordinator: " + err.getMessage());
+		}
+		stopped = true;
+	}
+
+	@Override
+	public List<ExpressionTree> exchange(int generation, ExpressionTree best, List<ExpressionTree> found,
+			List<ExpressionTree> migrants) throws IOException{
+		out.writeByte(Coordinator.REPORT);
+		out.writeInt(generation);
+		best.write(out);
+		ExpressionTree.writeList(out, found);
+		ExpressionTree.writeList(out, migrants);
+		out.flush();
+		List<ExpressionTree> result;
+		synchronized(this){
+			result = arrived;
+			arrived = new ArrayList<ExpressionTree>();
+		}
+		return result;
+	}
+
+	/**
+	 * @return whether each row of the data set is in the training set, as decided by the coordinator
+	 */
+	public boolean[] getSplit(){
+		return split;
+	}
+
+	@Override
+	public boolean isStopped(){
+		return stopped;
+	}
+
+	/**
+	 * Closes the connection to the coordinator
+	 */
+	public void close(){
+		try{
+			socket.close();
+		}
+		catch(IOException err){
+			//Nothing left to release
+		}
+	}
+
+	/**
+	 * Evolves ISLANDS islands linked to a coordinator until the coordinator stops the worker
+	 * @param args the host and port of the coordinator and the seed of the worker, which must
+	 * differ between workers
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException{
+		if(args.length < 1){
+			System.out.println("Usage: java symbolicregression.Worker <host> [port] [seed]");
+			return;
+		}
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : Coordinator.PORT;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+		System.out.println("Seed: " + seed);
+		SplitRandom random = new SplitRandom(seed);
+		Worker worker = new Worker(args[0], port);
+		DataSet data;
+		try{
+			data = new DataSet(ExpressionTreeTester.FILE_Name, worker.getSplit());
+		}
+		catch(IllegalArgumentException err){
+			System.out.println("The coordinator's data set does not match: " + err.getMessage());
+			worker.close();
+			return;
+		}
+		PopulationEvaluator evaluator = new PopulationEvaluator(ExpressionTreeTester.THREADS);
+		data.setPool(evaluator.getPool());
+		data.setLinearScaling(ExpressionTreeTester.LINEAR_SCALING);
+		if(ExpressionTreeTester.FITNESS_CACHE_SIZE > 0){
+			data.setCache(new FitnessCache(ExpressionTreeTester.FITNESS_CACHE_SIZE));
+		}
+		try{
+			System.out.println("Generating initial populations...");
+			IslandModel model = new IslandModel(data, evaluator, ExpressionTreeTester.ISLANDS,
+					ExpressionTreeTester.POPULATION_SIZE / ExpressionTreeTester.ISLANDS,
+					ExpressionTreeTester.MIGRATION_INTERVAL, ExpressionTreeTester.MIGRANTS,
+					ExpressionTreeTester.TOPOLOGY, random.split());
+			model.setLink(worker);
+			//Only the coordinator decides when enough trees have been found
+			model.run(Integer.MAX_VALUE);
+		}
+		finally{
+			worker.close();
+			evaluator.shutdown();
+		}
+	}
+}